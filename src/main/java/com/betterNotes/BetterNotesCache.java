@@ -1,50 +1,378 @@
 package com.betterNotes;
 
+import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
 import lombok.Getter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * The notes model: the ordered sections plus hash indexes from section and note ids to their objects, owning section
+ * and position. Every structural change goes through this class so the indexes stay consistent with the lists.
+ * <p>
+ * Changes are serialized by the cache's lock and are copy-on-write: note lists are immutable and replaced, never
+ * modified, and each change publishes a new {@link Snapshot}. Readers on any thread (EDT, client thread, writer) take
+ * the current snapshot without locking and can iterate it while the model keeps changing.
+ * <p>
+ * Section and note fields (names, icons, expanded state) are not copied into snapshots. They are also only changed
+ * here, under the lock and followed by a publish, but a reader holding an older snapshot may see a newer field value.
+ */
 public class BetterNotesCache {
 
+    /**
+     * Immutable view of the section order and of each section's notes at one point in time. Unchanged note lists are
+     * shared between snapshots.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), null, Collections.emptyMap(), 0);
+
+        @Getter
+        private final List<BetterNotesSection> sections;
+
+        @Getter
+        private final BetterNotesSection unassignedNotesSection;
+
+        // Each section's note list as it was when the snapshot was published, by section id
+        private final Map<String, List<BetterNotesNote>> notes;
+
+        @Getter
+        private final long version;
+
+        private Snapshot(final List<BetterNotesSection> sections, final BetterNotesSection unassignedNotesSection,
+                         final Map<String, List<BetterNotesNote>> notes, final long version) {
+            this.sections = sections;
+            this.unassignedNotesSection = unassignedNotesSection;
+            this.notes = notes;
+            this.version = version;
+        }
+
+        /**
+         * The section's notes in this snapshot, which may differ from its current ones.
+         */
+        public List<BetterNotesNote> getNotes(final BetterNotesSection section) {
+            final List<BetterNotesNote> sectionNotes = notes.get(section.getId());
+            return sectionNotes != null ? sectionNotes : Collections.emptyList();
+        }
+    }
+
+    // Working list, only touched under the lock (or while loading, before the first snapshot is published)
     @Getter
     private final List<BetterNotesSection> sections;
 
     @Getter
     private BetterNotesSection unassignedNotesSection;
 
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+    private final Map<String, BetterNotesSection> sectionsById = new ConcurrentHashMap<>();
+    private final Map<String, BetterNotesNote> notesById = new ConcurrentHashMap<>();
+    private final Map<String, BetterNotesSection> noteOwners = new ConcurrentHashMap<>();
+
+    // Positions are rebuilt lazily after a structural change, so a burst of changes costs one pass
+    private final Map<String, Integer> sectionPositions = new HashMap<>();
+    private final Map<String, Integer> notePositions = new HashMap<>();
+    private boolean sectionPositionsValid;
+    private final Map<String, Boolean> notePositionsValid = new HashMap<>();
+
     public BetterNotesCache() {
         this.sections = new ArrayList<>();
         this.unassignedNotesSection = null; // Initialize as null
     }
 
-    public void addSection(final BetterNotesSection section) {
+    /**
+     * The latest published model. Never blocks.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Rebuilds every index from the lists, e.g. after loading or replaying the journal, and publishes the result.
+     */
+    public synchronized void reindex() {
+        sectionsById.clear();
+        notesById.clear();
+        noteOwners.clear();
+        notePositionsValid.clear();
+        sectionPositionsValid = false;
+
+        for (final BetterNotesSection section : sections) {
+            indexSection(section);
+        }
+        if (unassignedNotesSection != null) {
+            indexSection(unassignedNotesSection);
+        }
+        publish();
+    }
+
+    public BetterNotesSection getSection(final String sectionId) {
+        return sectionsById.get(sectionId);
+    }
+
+    public BetterNotesNote getNote(final String noteId) {
+        return notesById.get(noteId);
+    }
+
+    /**
+     * @return the section holding the note, or null if the note is unknown
+     */
+    public BetterNotesSection getOwner(final String noteId) {
+        return noteOwners.get(noteId);
+    }
+
+    /**
+     * @return the section's position in the section list, -1 for the unassigned notes section or unknown ids
+     */
+    public synchronized int getSectionPosition(final String sectionId) {
+        if (!sectionPositionsValid) {
+            sectionPositions.clear();
+            for (int i = 0; i < sections.size(); i++) {
+                sectionPositions.put(sections.get(i).getId(), i);
+            }
+            sectionPositionsValid = true;
+        }
+
+        final Integer position = sectionPositions.get(sectionId);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @return the note's position within its owning section, -1 for unknown ids
+     */
+    public synchronized int getNotePosition(final String noteId) {
+        final BetterNotesSection owner = noteOwners.get(noteId);
+        if (owner == null) {
+            return -1;
+        }
+
+        if (!notePositionsValid.getOrDefault(owner.getId(), false)) {
+            final List<BetterNotesNote> notes = owner.getNotes();
+            for (int i = 0; i < notes.size(); i++) {
+                notePositions.put(notes.get(i).getId(), i);
+            }
+            notePositionsValid.put(owner.getId(), true);
+        }
+        return notePositions.get(noteId);
+    }
+
+    public synchronized void addSection(final BetterNotesSection section) {
         sections.add(section);
+        indexSection(section);
+        publish();
     }
 
-    public void removeSection(final String idToRemove) {
-        sections.removeIf(section -> section.getId().equals(idToRemove));
+    /**
+     * Removes the section from the list and the indexes. Its notes are left in the section object, for the caller to
+     * move or drop.
+     *
+     * @return the removed section, or null if the id is unknown
+     */
+    public synchronized BetterNotesSection removeSection(final String idToRemove) {
+        final BetterNotesSection section = sectionsById.get(idToRemove);
+        if (section == null || section == unassignedNotesSection) {
+            return null;
+        }
+
+        sections.remove(getSectionPosition(idToRemove));
+        sectionsById.remove(idToRemove);
+        sectionPositionsValid = false;
+        notePositionsValid.remove(idToRemove);
+        for (final BetterNotesNote note : section.getNotes()) {
+            notesById.remove(note.getId());
+            noteOwners.remove(note.getId());
+        }
+        publish();
+        return section;
     }
 
-    public void changeSectionName(String newName, String sectionIdToChange) {
-        sections.stream()
-                .filter(section -> section.getId().equals(sectionIdToChange))
-                .findFirst().ifPresent(found -> found.setName(newName));
+    public synchronized void changeSectionName(String newName, String sectionIdToChange) {
+        final BetterNotesSection section = sectionsById.get(sectionIdToChange);
+        if (section != null) {
+            section.setName(newName);
+            publish();
+        }
     }
 
-    public void changeIsExpanded(Boolean isExpanded, String sectionIdToChange) {
-        sections.stream()
-                .filter(section -> section.getId().equals(sectionIdToChange))
-                .findFirst().ifPresent(found -> found.setMaximized(isExpanded));
+    public synchronized void changeIsExpanded(Boolean isExpanded, String sectionIdToChange) {
+        final BetterNotesSection section = sectionsById.get(sectionIdToChange);
+        if (section != null) {
+            section.setMaximized(isExpanded);
+            publish();
+        }
     }
 
-    public void clearAll() {
+    public synchronized void setSectionIcon(final String sectionId, final int itemId, final int spriteId) {
+        final BetterNotesSection section = sectionsById.get(sectionId);
+        if (section != null) {
+            section.setItemId(itemId);
+            section.setSpriteId(spriteId);
+            publish();
+        }
+    }
+
+    public synchronized void renameNote(final String noteId, final String name) {
+        final BetterNotesNote note = notesById.get(noteId);
+        if (note != null) {
+            note.setName(name);
+            publish();
+        }
+    }
+
+    public synchronized void setNoteExpanded(final String noteId, final boolean expanded) {
+        final BetterNotesNote note = notesById.get(noteId);
+        if (note != null) {
+            note.setMaximized(expanded);
+            publish();
+        }
+    }
+
+    public synchronized void setNoteIcon(final String noteId, final int itemId, final int spriteId) {
+        final BetterNotesNote note = notesById.get(noteId);
+        if (note != null) {
+            note.setItemId(itemId);
+            note.setSpriteId(spriteId);
+            publish();
+        }
+    }
+
+    /**
+     * Appends the note to the section. A note already held by another section is moved.
+     */
+    public synchronized void addNote(final String sectionId, final BetterNotesNote note) {
+        final BetterNotesSection section = sectionsById.get(sectionId);
+        if (section == null) {
+            return;
+        }
+
+        // Moved in one step, so no snapshot shows the note outside every section
+        detachNote(note.getId());
+        final List<BetterNotesNote> notes = new ArrayList<>(section.getNotes());
+        notes.add(note);
+        section.setNotes(Collections.unmodifiableList(notes));
+        notesById.put(note.getId(), note);
+        noteOwners.put(note.getId(), section);
+        // Appending does not shift any existing position
+        if (notePositionsValid.getOrDefault(sectionId, false)) {
+            notePositions.put(note.getId(), notes.size() - 1);
+        }
+        publish();
+    }
+
+    /**
+     * @return the removed note, or null if the id is unknown
+     */
+    public synchronized BetterNotesNote removeNote(final String noteId) {
+        final BetterNotesNote note = detachNote(noteId);
+        if (note != null) {
+            publish();
+        }
+        return note;
+    }
+
+    // Caller holds the lock and publishes
+    private BetterNotesNote detachNote(final String noteId) {
+        final BetterNotesSection owner = noteOwners.get(noteId);
+        if (owner == null) {
+            return null;
+        }
+
+        final List<BetterNotesNote> notes = new ArrayList<>(owner.getNotes());
+        final BetterNotesNote note = notes.remove(getNotePosition(noteId));
+        owner.setNotes(Collections.unmodifiableList(notes));
+        notesById.remove(noteId);
+        noteOwners.remove(noteId);
+        notePositions.remove(noteId);
+        notePositionsValid.put(owner.getId(), false);
+        return note;
+    }
+
+    /**
+     * Replaces the section order, e.g. after a drag and drop in the reorder view.
+     */
+    public synchronized void setSectionOrder(final List<BetterNotesSection> newOrder) {
+        sections.clear();
+        sections.addAll(newOrder);
+        sectionPositionsValid = false;
+        publish();
+    }
+
+    /**
+     * Replaces the notes of a section, taking over notes that were held by other sections.
+     */
+    public synchronized void setNoteOrder(final String sectionId, final List<BetterNotesNote> newOrder) {
+        final BetterNotesSection section = sectionsById.get(sectionId);
+        if (section == null) {
+            return;
+        }
+
+        for (final BetterNotesNote note : newOrder) {
+            final BetterNotesSection owner = noteOwners.get(note.getId());
+            if (owner != null && owner != section) {
+                detachNote(note.getId());
+            }
+        }
+        for (final BetterNotesNote note : section.getNotes()) {
+            notesById.remove(note.getId());
+            noteOwners.remove(note.getId());
+        }
+
+        section.setNotes(Collections.unmodifiableList(new ArrayList<>(newOrder)));
+        for (final BetterNotesNote note : newOrder) {
+            notesById.put(note.getId(), note);
+            noteOwners.put(note.getId(), section);
+        }
+        notePositionsValid.put(sectionId, false);
+        publish();
+    }
+
+    public synchronized void clearAll() {
         sections.clear();
         unassignedNotesSection = null; // Clear the unassigned notes section as well
+        reindex();
     }
 
-    public void setUnassignedNotesSection(BetterNotesSection section) {
+    public synchronized void setUnassignedNotesSection(BetterNotesSection section) {
+        if (unassignedNotesSection != null) {
+            sectionsById.remove(unassignedNotesSection.getId());
+        }
         this.unassignedNotesSection = section;
+        if (section != null) {
+            indexSection(section);
+        }
+        publish();
+    }
+
+    // Caller holds the lock
+    private void publish() {
+        final Map<String, List<BetterNotesNote>> notes = new HashMap<>();
+        for (final BetterNotesSection section : sections) {
+            notes.put(section.getId(), section.getNotes());
+        }
+        if (unassignedNotesSection != null) {
+            notes.put(unassignedNotesSection.getId(), unassignedNotesSection.getNotes());
+        }
+
+        final Snapshot current = snapshot.get();
+        snapshot.set(new Snapshot(Collections.unmodifiableList(new ArrayList<>(sections)), unassignedNotesSection,
+            Collections.unmodifiableMap(notes), current.getVersion() + 1));
+    }
+
+    // Caller holds the lock
+    private void indexSection(final BetterNotesSection section) {
+        // Lists loaded from storage are mutable, from here on they are only ever replaced
+        section.setNotes(Collections.unmodifiableList(new ArrayList<>(section.getNotes())));
+        sectionsById.put(section.getId(), section);
+        sectionPositionsValid = false;
+        notePositionsValid.put(section.getId(), false);
+        for (final BetterNotesNote note : section.getNotes()) {
+            notesById.put(note.getId(), note);
+            noteOwners.put(note.getId(), section);
+        }
     }
 }
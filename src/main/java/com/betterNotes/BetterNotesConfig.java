@@ -3,9 +3,47 @@ package com.betterNotes;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Keybind;
+import net.runelite.client.config.Units;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 
 @ConfigGroup(BetterNotesPlugin.CONFIG_GROUP)
 public interface BetterNotesConfig extends Config
 {
+	@ConfigItem(
+		keyName = "quickSwitcherHotkey",
+		name = "Quick switcher",
+		description = "Opens a popup to jump to any note or section by typing part of its name",
+		position = 0
+	)
+	default Keybind quickSwitcherHotkey()
+	{
+		return new Keybind(KeyEvent.VK_K, InputEvent.CTRL_DOWN_MASK);
+	}
+
+	@ConfigItem(
+		keyName = "editorReleaseDelay",
+		name = "Free collapsed editors after",
+		description = "How long a collapsed note keeps its editor before it is freed. 0 keeps editors until the note is scrolled away",
+		position = 1
+	)
+	@Units(Units.SECONDS)
+	default int editorReleaseDelay()
+	{
+		return 60;
+	}
 
+	@ConfigItem(
+		keyName = "maxSaveDelay",
+		name = "Save while typing every",
+		description = "Notes are saved after a short pause in typing, or at the latest this long after an edit when typing goes on",
+		position = 2
+	)
+	@Units(Units.MILLISECONDS)
+	default int maxSaveDelay()
+	{
+		return 2000;
+	}
 }
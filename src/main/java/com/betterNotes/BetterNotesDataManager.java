@@ -1,16 +1,47 @@
 package com.betterNotes;
 
+import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.search.NotesSearchService;
+import com.betterNotes.storage.JournalEntry;
+import com.betterNotes.storage.NoteShard;
+import com.betterNotes.storage.NotesBinaryCodec;
+import com.betterNotes.storage.NotesIndexShard;
+import com.betterNotes.storage.NotesJournal;
+import com.betterNotes.storage.NotesSnapshot;
+import com.betterNotes.storage.SectionShard;
+import com.betterNotes.storage.SectionStreamReader;
+import com.betterNotes.storage.ShardedConfigStore;
+import com.betterNotes.utility.ContentCompression;
+import com.betterNotes.utility.LatencyStats;
 import com.google.gson.Gson;
 import joptsimple.internal.Strings;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.config.ConfigManager;
-import com.google.gson.reflect.TypeToken;
 
 import javax.inject.Inject;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.betterNotes.BetterNotesPlugin.CONFIG_GROUP;
 
@@ -20,113 +51,906 @@ public class BetterNotesDataManager {
     private final BetterNotesPlugin plugin;
     private final ConfigManager configManager;
     private final BetterNotesCache cache;
+    private final NotesSearchService searchService;
     private final Gson gson;
+    private final ShardedConfigStore store;
+    private final NotesBinaryCodec codec = new NotesBinaryCodec();
 
+    // Single background writer, so shard writes never race and never run on the EDT or client thread
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "better-notes-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object pendingLock = new Object();
+    private NotesSnapshot pendingSnapshot;
+    private final Map<String, BetterNotesNote> pendingNotes = new LinkedHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    @Getter
+    private final LatencyStats writeLatency = new LatencyStats();
+
+    @Getter
+    private final LatencyStats compressLatency = new LatencyStats();
+
+    @Getter
+    private final LatencyStats inflateLatency = new LatencyStats();
+
+    // Chars of body content encoded by this session, and the chars it took in storage
+    private final AtomicLong bodyContentChars = new AtomicLong();
+    private final AtomicLong bodyStoredChars = new AtomicLong();
+
+    // Writer thread state: the model as persisted (shards plus journal) that new saves are diffed against
+    private List<SectionShard> baseSections;
+    private SectionShard baseUnassigned;
+    private final Map<String, BetterNotesNote> baseNotes = new HashMap<>();
+    // Only the last journal chunk is held and rewritten on append, earlier chunks are left as stored
+    private final StringBuilder journal = new StringBuilder();
+    private int journalChunk;
+    private int journalLength;
+    private long journalSequence;
+    private boolean lastWriteFailed;
+
+    // Notes whose body is in memory, least recently used first
+    private final Map<String, BetterNotesNote> residentBodies = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Content version of each body as last written to or read from its own key, so a note (or a base copy) at that
+    // version can drop its body and read it back
+    private final Map<String, Long> storedVersions = new ConcurrentHashMap<>();
+
+    // The cache's working list, only filled here while loading; everything else reads the cache snapshot
     private final List<BetterNotesSection> sections;
 
     private BetterNotesSection unassignedNotesSection;
 
+    // Legacy single-blob keys, only read once to migrate to the sharded layout
     public static final String CONFIG_KEY_SECTIONS = "sections";
     public static final String CONFIG_KEY_UNASSIGNED_NOTES = "unassigned_notes";
 
+    public static final String CONFIG_KEY_INDEX = "index";
+    public static final String CONFIG_KEY_SECTION_PREFIX = "section_";
+    public static final String CONFIG_KEY_NOTE_PREFIX = "note_";
+    public static final String CONFIG_KEY_BODY_PREFIX = "body_";
+    public static final String CONFIG_KEY_UNASSIGNED_SECTION = CONFIG_KEY_SECTION_PREFIX + NotesSnapshot.UNASSIGNED_SECTION_ID;
+    public static final String CONFIG_KEY_JOURNAL = "journal";
+    public static final String CONFIG_KEY_QUARANTINE = "quarantine";
+
+    // Short delay before a write so bursts of mutations (drag-drop, typing) collapse into one
+    private static final long WRITE_DELAY_MS = 100;
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    // Journal size (chars) past which it is folded back into the shards
+    private static final int JOURNAL_COMPACT_THRESHOLD = 64 * 1024;
+
+    // Journal chunk size (chars) past which appends start a new chunk key, so an append rewrites at most this much.
+    // Compaction still rewrites every changed shard, which bounds the journal but is O(model) when it runs
+    private static final int JOURNAL_CHUNK_CHARS = 4 * 1024;
+
+    // Note bodies kept in memory (chars of plain bodies plus bytes of compressed ones) before the least recently used
+    // are dropped
+    private static final int MAX_RESIDENT_CONTENT_SIZE = 512 * 1024;
+
+    // Collapsed notes whose large bodies are kept inflated before the least recently used are compressed
+    private static final int MAX_INFLATED_BODIES = 8;
+
     @Inject
     public BetterNotesDataManager(final BetterNotesPlugin plugin,
                                   final ConfigManager manager,
                                   final Gson gson,
                                   final BetterNotesCache cache,
+                                  final NotesSearchService searchService,
                                   final List<BetterNotesSection> sections,
                                   final BetterNotesSection unassignedNotesSection) {
         this.plugin = plugin;
         this.configManager = manager;
         this.cache = cache;
+        this.searchService = searchService;
         this.gson = gson;
         this.sections = sections;
         this.unassignedNotesSection = unassignedNotesSection;
+        this.store = new ShardedConfigStore(manager, CONFIG_GROUP);
     }
 
     public void loadConfig() {
-        sections.clear();
         cache.clearAll();
+        store.clear();
+        storedVersions.clear();
+        synchronized (residentBodies) {
+            residentBodies.clear();
+        }
 
-        Type dataType = new TypeToken<ArrayList<BetterNotesSection>>() {}.getType();
-        sections.addAll(loadData(CONFIG_KEY_SECTIONS, dataType));
+        if (unassignedNotesSection == null) {
+            unassignedNotesSection = new BetterNotesSection("Unassigned notes");
+            unassignedNotesSection.setUnassignedNotesSection(true);
+        }
+        // Loading and journal replay fill the lists in place, before the cache makes them immutable
+        unassignedNotesSection.setNotes(new ArrayList<>());
 
-        // Load unassigned notes section
-        BetterNotesSection loadedUnassignedNotes = loadSingleData(CONFIG_KEY_UNASSIGNED_NOTES, BetterNotesSection.class);
+        boolean migrated = false;
+        boolean rewrite = false;
+        long journalSequence = -1;
 
-        if (loadedUnassignedNotes != null) {
-            // Update the existing unassignedNotesSection if it exists
-            if (unassignedNotesSection == null) {
-                unassignedNotesSection = new BetterNotesSection("Unassigned notes");
+        final String storedIndex = store.read(CONFIG_KEY_INDEX);
+        if (Strings.isNullOrEmpty(storedIndex)) {
+            // No base for the journal yet, so the first save writes every shard
+            migrated = migrateLegacyConfig();
+            rewrite = migrated;
+        } else {
+            final NotesIndexShard index = loadShards(storedIndex);
+            if (index != null) {
+                journalSequence = replayJournal(index.getJournalSequence());
+                if (index.getVersion() < NotesIndexShard.CURRENT_VERSION) {
+                    // Older layout, rewrite every shard
+                    rewrite = true;
+                    log.info("Upgrading notes storage from version {}", index.getVersion());
+                }
+            } else {
+                // Sections were recovered without the index; everything left in the journal is newer than them, and
+                // the first save writes a new index rather than one built from an empty model
+                replayJournal(-1);
+                rewrite = true;
             }
+        }
 
-            unassignedNotesSection.setName(loadedUnassignedNotes.getName());
-            unassignedNotesSection.setNotes(loadedUnassignedNotes.getNotes());
-            cache.setUnassignedNotesSection(unassignedNotesSection);
-        } else {
-            // Create a new unassignedNotesSection if none exists in the config
-            unassignedNotesSection = new BetterNotesSection("Unassigned notes");
-            cache.setUnassignedNotesSection(unassignedNotesSection);
+        // Sections were loaded straight into the cache's working list; index them and publish the first snapshot,
+        // which the saves below are taken from
+        cache.setUnassignedNotesSection(unassignedNotesSection);
+        cache.reindex();
+
+        // The only full pass over the bodies, on the search thread; searches run against the names until it is done,
+        // and after it the indexes follow each save
+        final BetterNotesCache.Snapshot model = cache.getSnapshot();
+        searchService.rebuild(NotesSnapshot.capture(model.getSections(), model.getUnassignedNotesSection(), model::getNotes));
+
+        if (rewrite) {
+            updateConfigNoRedraw();
+        } else if (journalSequence >= 0) {
+            setWriterBase(journalSequence);
         }
 
-        // Add loaded sections to cache
-        for (final BetterNotesSection section : sections) {
-            cache.addSection(section);
+        if (migrated) {
+            dropLegacyConfigOnceWritten(sections.size());
         }
     }
 
-    public void updateConfig() {
-        // Save sections
-        final String jsonSections = gson.toJson(sections);
-        configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_SECTIONS, jsonSections);
-
-        // Save unassigned notes section from cache
+    /**
+     * Queues the removal of the legacy blobs behind the write of the migrated shards, so the client thread does not
+     * wait for it. The blobs are the only copy until the shards are written, so they are kept if that fails.
+     */
+    private void dropLegacyConfigOnceWritten(final int sectionCount) {
+        try {
+            writer.execute(() -> {
+                if (writePending()) {
+                    configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_SECTIONS);
+                    configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_UNASSIGNED_NOTES);
+                    log.info("Migrated {} sections to the sharded config layout", sectionCount);
+                } else {
+                    log.warn("Keeping the legacy notes config, the migrated shards could not be written");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Keeping the legacy notes config, the writer was already shut down");
+        }
+    }
 
-        final String jsonUnassignedNotes = gson.toJson(unassignedNotesSection);
-        configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_UNASSIGNED_NOTES, jsonUnassignedNotes);
+    public void updateConfig() {
+        updateConfigNoRedraw();
 
         plugin.redrawMainPanel();
     }
 
+    /**
+     * Queues a save of the whole model. The model is snapshotted on the calling thread and written on the background
+     * writer; saves that arrive while a write is pending are merged into it.
+     */
     public void updateConfigNoRedraw() {
-        // Save sections
-        final String jsonSections = gson.toJson(sections);
-        configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_SECTIONS, jsonSections);
+        final BetterNotesCache.Snapshot model = cache.getSnapshot();
+        final NotesSnapshot snapshot = NotesSnapshot.capture(model.getSections(), model.getUnassignedNotesSection(), model::getNotes);
+        searchService.reconcile(snapshot);
+
+        synchronized (pendingLock) {
+            // A full snapshot supersedes any single-note saves captured before it
+            pendingSnapshot = snapshot;
+            pendingNotes.clear();
+            queueDepth.incrementAndGet();
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Queues a save of a single note's shard, e.g. after its content was edited.
+     */
+    public void updateNote(final BetterNotesNote note) {
+        final BetterNotesNote copy = note.copy();
+        searchService.updateNote(copy);
 
-        // Save unassigned notes section from cache
+        synchronized (pendingLock) {
+            pendingNotes.put(copy.getId(), copy);
+            queueDepth.incrementAndGet();
+        }
+        scheduleWrite();
+    }
 
-        final String jsonUnassignedNotes = gson.toJson(unassignedNotesSection);
-        configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_UNASSIGNED_NOTES, jsonUnassignedNotes);
+    /**
+     * Blocks until every queued save has been written, e.g. on plugin shutdown.
+     *
+     * @return true if the saves were written, false if the last write failed or did not finish in time
+     */
+    public boolean flush() {
+        try {
+            return writer.submit(this::writePending).get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while flushing pending note saves");
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            log.error("Exception occurred while flushing pending note saves", e);
+        }
+        return false;
     }
 
-    private <T> List<T> loadData(final String configKey, Type type) {
-        final String storedData = configManager.getConfiguration(CONFIG_GROUP, configKey);
-        if (Strings.isNullOrEmpty(storedData)) {
-            return new ArrayList<>();
-        } else {
+    public void shutDown() {
+        flush();
+        writer.shutdown();
+        log.debug("Note writer stopped, writes: {}", writeLatency);
+    }
+
+    /**
+     * Number of saves requested since the last write started, i.e. how many mutations the next write will merge.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
             try {
-                // Deserialize the internal data structure from the JSON in the configuration
-                return gson.fromJson(storedData, type);
-            } catch (Exception e) {
-                log.error("Exception occurred while loading data", e);
-                return new ArrayList<>();
+                writer.schedule((Runnable) this::writePending, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Writer already shut down, e.g. a late UI event during plugin shutdown
+                writeScheduled.set(false);
+                log.warn("Dropped a note save after the writer was shut down");
+            }
+        }
+    }
+
+    /**
+     * Runs on the writer thread only.
+     *
+     * @return false if this write, or the last one if there was nothing to write, failed
+     */
+    private boolean writePending() {
+        writeScheduled.set(false);
+
+        final NotesSnapshot snapshot;
+        final List<BetterNotesNote> notes;
+        final int merged;
+        synchronized (pendingLock) {
+            snapshot = pendingSnapshot;
+            notes = new ArrayList<>(pendingNotes.values());
+            pendingSnapshot = null;
+            pendingNotes.clear();
+            merged = queueDepth.getAndSet(0);
+        }
+
+        if (snapshot == null && notes.isEmpty()) {
+            return !lastWriteFailed;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final List<JournalEntry> entries = new ArrayList<>();
+            if (snapshot != null) {
+                if (baseSections == null) {
+                    // Nothing persisted to diff against yet
+                    setBase(snapshot);
+                    compact();
+                } else {
+                    entries.addAll(NotesJournal.diff(baseSections, baseUnassigned, baseNotes, snapshot, this::readStoredContent));
+                    setBase(snapshot);
+                }
+            }
+
+            for (final BetterNotesNote note : notes) {
+                final BetterNotesNote base = baseNotes.get(note.getId());
+                // Notes without a base were deleted or are not referenced by a section yet; a full save covers them
+                if (base != null) {
+                    NotesJournal.diffNote(base, note, entries, this::readStoredContent);
+                    baseNotes.put(note.getId(), note);
+                }
             }
+
+            appendJournal(entries);
+            dropWrittenBodies();
+            lastWriteFailed = false;
+        } catch (Exception e) {
+            log.error("Exception occurred while saving notes", e);
+            lastWriteFailed = true;
+        }
+
+        writeLatency.record(System.nanoTime() - start);
+        log.debug("Saved notes, merged {} changes, {}", merged, writeLatency);
+        return !lastWriteFailed;
+    }
+
+    // Writer thread only
+    private void setBase(final NotesSnapshot snapshot) {
+        baseSections = snapshot.getSections();
+        baseUnassigned = snapshot.getUnassignedSection();
+        baseNotes.clear();
+        for (final BetterNotesNote note : snapshot.getNotes()) {
+            baseNotes.put(note.getId(), note);
+        }
+    }
+
+    // Writer thread only
+    private void appendJournal(final List<JournalEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        for (final JournalEntry entry : entries) {
+            entry.setSeq(++journalSequence);
+        }
+        final String encoded = NotesJournal.encode(gson, entries);
+        journalLength += encoded.length();
+
+        if (journalLength > JOURNAL_COMPACT_THRESHOLD) {
+            compact();
+            return;
+        }
+
+        if (journal.length() > 0 && journal.length() + encoded.length() > JOURNAL_CHUNK_CHARS) {
+            journalChunk++;
+            journal.setLength(0);
         }
+        journal.append(encoded);
+        store.write(journalKey(journalChunk), journal.toString());
     }
 
-    private <T> T loadSingleData(final String configKey, Type type) {
-        final String storedData = configManager.getConfiguration(CONFIG_GROUP, configKey);
+    private static String journalKey(final int chunk) {
+        return chunk == 0 ? CONFIG_KEY_JOURNAL : CONFIG_KEY_JOURNAL + "_" + chunk;
+    }
+
+    /**
+     * Reads the stored journal chunks in order, up to the first missing key.
+     */
+    private List<String> readJournalChunks() {
+        final List<String> chunks = new ArrayList<>();
+        String chunk;
+        while ((chunk = store.read(journalKey(chunks.size()))) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Folds the journal into the shards: writes every changed shard of the base state, then drops the journal.
+     * Runs on the writer thread only.
+     */
+    private void compact() {
+        final Set<String> liveKeys = new HashSet<>();
+        final List<String> sectionIds = new ArrayList<>();
+
+        // Notes and sections first, the index last, so the index never points at shards that were not written
+        for (final BetterNotesNote note : baseNotes.values()) {
+            final String noteKey = CONFIG_KEY_NOTE_PREFIX + note.getId();
+            store.write(noteKey, codec.encodeNote(NoteShard.of(note)));
+            liveKeys.add(noteKey);
+
+            // Bodies that were never loaded are unchanged, keep their key as is
+            final String bodyKey = CONFIG_KEY_BODY_PREFIX + note.getId();
+            if (note.isContentLoaded()) {
+                store.write(bodyKey, encodeBody(note));
+                storedVersions.put(note.getId(), note.getContentVersion());
+            }
+            liveKeys.add(bodyKey);
+        }
+        storedVersions.keySet().retainAll(baseNotes.keySet());
+
+        for (final SectionShard section : baseSections) {
+            final String sectionKey = CONFIG_KEY_SECTION_PREFIX + section.getId();
+            store.write(sectionKey, codec.encodeSection(section));
+            liveKeys.add(sectionKey);
+            sectionIds.add(section.getId());
+        }
+
+        store.write(CONFIG_KEY_UNASSIGNED_SECTION, codec.encodeSection(baseUnassigned));
+        liveKeys.add(CONFIG_KEY_UNASSIGNED_SECTION);
+
+        store.write(CONFIG_KEY_INDEX, codec.encodeIndex(new NotesIndexShard(sectionIds, journalSequence)));
+        liveKeys.add(CONFIG_KEY_INDEX);
+
+        // Drops the journal and shards of deleted sections and notes
+        store.retainOnly(liveKeys);
+        journal.setLength(0);
+        journalChunk = 0;
+        journalLength = 0;
+
+        log.debug("Compacted note journal up to entry {}, bodies stored in {} of {} chars", journalSequence,
+            bodyStoredChars.get(), bodyContentChars.get());
+    }
+
+    /**
+     * Drops the bodies of base copies that are already in their own key; only bodies that journaled patches apply to
+     * are kept until the next compaction. Runs on the writer thread only.
+     */
+    private void dropWrittenBodies() {
+        for (final BetterNotesNote base : baseNotes.values()) {
+            if (base.isContentLoaded() && isStored(base)) {
+                base.unloadContent();
+            }
+        }
+    }
+
+    // True if the note holds the body that is in its own key, so it can be dropped and read back
+    private boolean isStored(final BetterNotesNote note) {
+        final Long storedVersion = storedVersions.get(note.getId());
+        return storedVersion != null && storedVersion == note.getContentVersion();
+    }
+
+    // Writer thread only
+    private String encodeBody(final BetterNotesNote note) {
+        if (note.isContentCompressed()) {
+            // Already deflated in memory, only needs wrapping
+            return ContentCompression.encode(note.getCompressedContent());
+        }
+
+        final String content = note.getContent() == null ? "" : note.getContent();
+        final long start = System.nanoTime();
+        final String stored = ContentCompression.encode(content);
+        if (ContentCompression.shouldCompress(content)) {
+            compressLatency.record(System.nanoTime() - start);
+        }
+
+        bodyContentChars.addAndGet(content.length());
+        bodyStoredChars.addAndGet(stored.length());
+        return stored;
+    }
+
+    /**
+     * Returns the note's body, reading it from storage the first time the note is opened.
+     */
+    public String loadContent(final BetterNotesNote note) {
+        synchronized (residentBodies) {
+            if (!note.isContentLoaded() || note.isContentCompressed()) {
+                final long start = System.nanoTime();
+                if (note.isContentLoaded()) {
+                    note.restoreContent(note.getContent());
+                } else {
+                    final String body = readStoredContent(note.getId());
+                    note.restoreContent(body == null ? "" : body);
+                    storedVersions.put(note.getId(), note.getContentVersion());
+                }
+                if (ContentCompression.shouldCompress(note.getContent())) {
+                    inflateLatency.record(System.nanoTime() - start);
+                }
+            }
+
+            residentBodies.put(note.getId(), note);
+            trimResidentBodies();
+            return note.getContent();
+        }
+    }
+
+    /**
+     * Puts back a body read off the EDT from {@link #captureContent}, as {@link #loadContent} would have. Call from the
+     * EDT, and only if the note's content version did not change since the capture.
+     */
+    public void restoreContent(final BetterNotesNote note, final String body) {
+        synchronized (residentBodies) {
+            if (!note.isContentLoaded()) {
+                // Read from its key, or held when captured and evicted since, which only happens once it is stored
+                note.restoreContent(body == null ? "" : body);
+                storedVersions.put(note.getId(), note.getContentVersion());
+            } else if (note.isContentCompressed()) {
+                note.restoreContent(body);
+            }
+
+            residentBodies.put(note.getId(), note);
+            trimResidentBodies();
+        }
+    }
+
+    /**
+     * Called when a note is collapsed or its editor goes away. Its body is the first to be compressed or dropped if
+     * resident bodies are over budget, ahead of the least recently used.
+     */
+    public void releaseContent(final BetterNotesNote note) {
+        synchronized (residentBodies) {
+            trimResidentBodies(note);
+        }
+    }
+
+    public int getResidentBodyCount() {
+        synchronized (residentBodies) {
+            return residentBodies.size();
+        }
+    }
+
+    /**
+     * Memory held by loaded bodies: chars of plain bodies plus bytes of compressed ones.
+     */
+    public long getResidentContentSize() {
+        synchronized (residentBodies) {
+            long size = 0;
+            for (final BetterNotesNote note : residentBodies.values()) {
+                size += note.getResidentContentSize();
+            }
+            return size;
+        }
+    }
+
+    // Caller holds residentBodies
+    private void trimResidentBodies() {
+        trimResidentBodies(null);
+    }
+
+    /**
+     * Caller holds residentBodies.
+     *
+     * @param released a note to evict first, or null to go by least recent use only
+     */
+    private void trimResidentBodies(final BetterNotesNote released) {
+        final List<BetterNotesNote> candidates = new ArrayList<>(residentBodies.size());
+        // containsKey, unlike get, leaves the access order alone
+        if (released != null && residentBodies.containsKey(released.getId())) {
+            candidates.add(released);
+        }
+        for (final BetterNotesNote note : residentBodies.values()) {
+            if (note != released) {
+                candidates.add(note);
+            }
+        }
+
+        int inflated = 0;
+        for (final BetterNotesNote note : candidates) {
+            if (note.isContentLoaded() && !note.isContentCompressed() && !note.isMaximized()
+                    && ContentCompression.shouldCompress(note.getContent())) {
+                inflated++;
+            }
+        }
+
+        // Least recently used first: compress large bodies of collapsed notes beyond the inflated budget
+        for (final BetterNotesNote note : candidates) {
+            if (inflated <= MAX_INFLATED_BODIES) {
+                break;
+            }
+            if (!note.isContentLoaded() || note.isContentCompressed() || note.isMaximized()
+                    || !ContentCompression.shouldCompress(note.getContent())) {
+                continue;
+            }
+
+            final long start = System.nanoTime();
+            note.compressContent(ContentCompression.deflate(note.getContent()));
+            compressLatency.record(System.nanoTime() - start);
+            inflated--;
+        }
+
+        long residentSize = 0;
+        for (final BetterNotesNote note : candidates) {
+            residentSize += note.getResidentContentSize();
+        }
+
+        final Iterator<BetterNotesNote> iterator = candidates.iterator();
+        while (residentSize > MAX_RESIDENT_CONTENT_SIZE && iterator.hasNext()) {
+            final BetterNotesNote note = iterator.next();
+            if (!note.isContentLoaded()) {
+                residentBodies.remove(note.getId());
+                continue;
+            }
+
+            // Expanded notes are on screen, and a body at another version than its stored key has unsaved or journaled
+            // edits
+            if (note.isMaximized() || !isStored(note)) {
+                continue;
+            }
+
+            residentSize -= note.getResidentContentSize();
+            note.unloadContent();
+            residentBodies.remove(note.getId());
+        }
+        log.debug("Resident note bodies: {} ({} chars/bytes), compress {}, inflate {}", residentBodies.size(),
+            residentSize, compressLatency, inflateLatency);
+    }
+
+    /**
+     * Captures where the note's body is now: the body itself, its compressed form, or its key when it is not in memory.
+     * The result reads it on any thread without touching the note, e.g. on the document worker. Call from the EDT.
+     */
+    public Supplier<String> captureContent(final BetterNotesNote note) {
+        synchronized (residentBodies) {
+            if (note.isContentCompressed()) {
+                final byte[] compressed = note.getCompressedContent();
+                return () -> ContentCompression.inflate(compressed);
+            }
+            if (note.isContentLoaded()) {
+                final String content = note.getContent();
+                return () -> content;
+            }
+            final String noteId = note.getId();
+            return () -> readStoredContent(noteId);
+        }
+    }
+
+    /**
+     * The note's body without loading it into the note, e.g. for indexing.
+     */
+    public String peekContent(final BetterNotesNote note) {
+        return note.isContentLoaded() ? note.getContent() : readStoredContent(note.getId());
+    }
+
+    private String readStoredContent(final String noteId) {
+        return ContentCompression.decode(configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_BODY_PREFIX + noteId));
+    }
+
+    /**
+     * Loads the sections listed in the index, or every stored section shard if the index cannot be read.
+     *
+     * @return the index, or null if it could not be read
+     */
+    private NotesIndexShard loadShards(final String storedIndex) {
+        NotesIndexShard index;
+        try {
+            index = NotesBinaryCodec.isBinary(storedIndex)
+                ? codec.decodeIndex(storedIndex)
+                : gson.fromJson(storedIndex, NotesIndexShard.class);
+        } catch (Exception e) {
+            log.error("Exception occurred while loading the notes index", e);
+            quarantine(CONFIG_KEY_INDEX, Collections.singletonList(storedIndex));
+            index = null;
+        }
+
+        final List<String> sectionIds = index != null ? index.getSectionIds() : findStoredSectionIds();
+        if (sectionIds != null) {
+            for (final String sectionId : sectionIds) {
+                final SectionShard shard = loadShard(CONFIG_KEY_SECTION_PREFIX + sectionId, SectionShard.class, codec::decodeSection);
+                if (shard == null) {
+                    log.warn("Section {} is listed in the index but has no stored shard", sectionId);
+                    continue;
+                }
+                sections.add(shard.toSection(loadNotes(shard)));
+            }
+        }
+
+        final SectionShard unassignedShard = loadShard(CONFIG_KEY_UNASSIGNED_SECTION, SectionShard.class, codec::decodeSection);
+        if (unassignedShard != null) {
+            unassignedNotesSection.setName(unassignedShard.getName());
+            unassignedNotesSection.setNotes(loadNotes(unassignedShard));
+        }
+        return index;
+    }
+
+    /**
+     * Applies journal entries written after the last compaction on top of the loaded shards.
+     *
+     * @return the last journal sequence seen
+     */
+    private long replayJournal(final long compactedSequence) {
+        long lastSequence = compactedSequence;
+
+        final List<JournalEntry> pending = new ArrayList<>();
+        for (final String storedJournal : readJournalChunks()) {
+            for (final JournalEntry entry : NotesJournal.decode(gson, storedJournal)) {
+                // Entries up to the compacted sequence are already part of the shards
+                if (entry.getSeq() > compactedSequence) {
+                    pending.add(entry);
+                }
+                lastSequence = Math.max(lastSequence, entry.getSeq());
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            final int applied = NotesJournal.replay(pending, sections, unassignedNotesSection, this::loadContent);
+            log.debug("Replayed {} of {} journal entries", applied, pending.size());
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Hands the loaded state to the writer as the base for future diffs.
+     */
+    private void setWriterBase(final long sequence) {
+        final BetterNotesCache.Snapshot model = cache.getSnapshot();
+        final NotesSnapshot loaded = NotesSnapshot.capture(model.getSections(), model.getUnassignedNotesSection(), model::getNotes);
+        writer.execute(() -> {
+            setBase(loaded);
+            final List<String> chunks = readJournalChunks();
+            journal.setLength(0);
+            journalChunk = Math.max(0, chunks.size() - 1);
+            journalLength = 0;
+            for (final String chunk : chunks) {
+                journalLength += chunk.length();
+            }
+            if (!chunks.isEmpty()) {
+                journal.append(chunks.get(chunks.size() - 1));
+            }
+            journalSequence = sequence;
+        });
+    }
+
+    /**
+     * Ids of every stored section shard, for when the index that orders them is lost. Their order cannot be
+     * recovered, so they are sorted by id.
+     */
+    private List<String> findStoredSectionIds() {
+        final String prefix = CONFIG_GROUP + "." + CONFIG_KEY_SECTION_PREFIX;
+        final List<String> sectionIds = new ArrayList<>();
+        for (final String key : configManager.getConfigurationKeys(prefix)) {
+            final String sectionId = key.substring(prefix.length());
+            if (!sectionId.equals(NotesSnapshot.UNASSIGNED_SECTION_ID)) {
+                sectionIds.add(sectionId);
+            }
+        }
+        Collections.sort(sectionIds);
+
+        log.warn("Recovered {} sections without the notes index", sectionIds.size());
+        return sectionIds;
+    }
+
+    private List<BetterNotesNote> loadNotes(final SectionShard shard) {
+        final List<BetterNotesNote> notes = new ArrayList<>();
+        if (shard.getNoteIds() == null) {
+            return notes;
+        }
+
+        for (final String noteId : shard.getNoteIds()) {
+            final NoteShard noteShard = loadShard(CONFIG_KEY_NOTE_PREFIX + noteId, NoteShard.class, codec::decodeNote);
+            if (noteShard == null) {
+                log.warn("Note {} is listed in section {} but has no stored shard", noteId, shard.getId());
+                continue;
+            }
+
+            // Only the header is read here, the body stays in storage until the note is opened
+            final BetterNotesNote note = noteShard.toNote();
+            if (note.isContentLoaded()) {
+                residentBodies.put(note.getId(), note);
+            } else {
+                store.track(CONFIG_KEY_BODY_PREFIX + noteId);
+            }
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    /**
+     * Reads a binary shard, or a JSON one written before the binary format.
+     */
+    private <T> T loadShard(final String configKey, final Class<T> type, final Function<String, T> binaryDecoder) {
+        final String storedData = store.read(configKey);
         if (Strings.isNullOrEmpty(storedData)) {
-            return null; // Return null if no data exists
+            return null;
+        }
+
+        try {
+            return NotesBinaryCodec.isBinary(storedData) ? binaryDecoder.apply(storedData) : gson.fromJson(storedData, type);
+        } catch (Exception e) {
+            log.error("Exception occurred while loading shard {}", configKey, e);
+            quarantine(configKey, Collections.singletonList(storedData));
+            return null;
+        }
+    }
+
+    /**
+     * Reads the old single-blob "sections" / "unassigned_notes" keys into the model. Records that cannot be read are
+     * quarantined rather than dropped.
+     *
+     * @return true if there was anything to migrate, in which case the caller rewrites it as shards
+     */
+    private boolean migrateLegacyConfig() {
+        final String storedSections = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_SECTIONS);
+        final String storedUnassigned = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_UNASSIGNED_NOTES);
+        if (Strings.isNullOrEmpty(storedSections) && Strings.isNullOrEmpty(storedUnassigned)) {
+            // Nothing to migrate, fresh install
+            return false;
+        }
+
+        if (!Strings.isNullOrEmpty(storedSections)) {
+            final SectionStreamReader.Result result = SectionStreamReader.readSections(gson, storedSections);
+            sections.addAll(result.getSections());
+            reportRecovery(CONFIG_KEY_SECTIONS, storedSections, result);
+        }
+
+        // Load unassigned notes section
+        if (!Strings.isNullOrEmpty(storedUnassigned)) {
+            final SectionStreamReader.Result result = SectionStreamReader.readSection(gson, storedUnassigned);
+            if (!result.getSections().isEmpty()) {
+                final BetterNotesSection loadedUnassignedNotes = result.getSections().get(0);
+                unassignedNotesSection.setName(loadedUnassignedNotes.getName());
+                unassignedNotesSection.setNotes(loadedUnassignedNotes.getNotes());
+            }
+            reportRecovery(CONFIG_KEY_UNASSIGNED_NOTES, storedUnassigned, result);
+        }
+
+        // Legacy blobs carry every body inline, so they are all in memory already
+        for (final BetterNotesSection section : sections) {
+            markContentLoaded(section);
+        }
+        markContentLoaded(unassignedNotesSection);
+        return true;
+    }
+
+    private void reportRecovery(final String configKey, final String storedData, final SectionStreamReader.Result result) {
+        log.info("Read {} sections and {} notes from {}", result.getSections().size(), result.getRecoveredNotes(), configKey);
+        if (result.isClean()) {
+            return;
+        }
+
+        if (result.isTruncated()) {
+            // Everything after the break is unreadable, keep the whole blob so nothing is lost
+            quarantine(configKey, Collections.singletonList(storedData));
         } else {
-            try {
-                // Deserialize the single object from JSON
-                return gson.fromJson(storedData, type);
-            } catch (Exception e) {
-                log.error("Exception occurred while loading single data", e);
-                return null;
+            quarantine(configKey, result.getQuarantined());
+        }
+    }
+
+    /**
+     * Appends unreadable records to the quarantine key, one JSON line each, so they can be recovered by hand.
+     * Written straight to the config manager so shard compaction never removes it.
+     */
+    private void quarantine(final String source, final List<String> records) {
+        final String existing = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_QUARANTINE);
+        final StringBuilder quarantined = new StringBuilder(existing == null ? "" : existing);
+        for (final String record : records) {
+            final Map<String, String> line = new LinkedHashMap<>();
+            line.put("source", source);
+            line.put("data", record);
+            final String json = gson.toJson(line);
+            // A shard that fails on every load is only recorded once
+            if (quarantined.indexOf(json) < 0) {
+                quarantined.append(json).append('\n');
             }
         }
+        configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_QUARANTINE, quarantined.toString());
+
+        log.warn("Quarantined {} unreadable records from {}", records.size(), source);
+    }
+
+    private void markContentLoaded(final BetterNotesSection section) {
+        if (section.getNotes() == null) {
+            return;
+        }
+
+        for (final BetterNotesNote note : section.getNotes()) {
+            note.setContent(note.getContent() == null ? "" : note.getContent());
+            residentBodies.put(note.getId(), note);
+        }
+    }
+
+    /**
+     * Serializes the whole model, bodies included, as JSON for exporting. Storage itself uses the binary shards.
+     */
+    public String exportJson() {
+        final BetterNotesCache.Snapshot model = cache.getSnapshot();
+        final List<BetterNotesSection> exported = new ArrayList<>();
+        for (final BetterNotesSection section : model.getSections()) {
+            exported.add(exportSection(section, model.getNotes(section)));
+        }
+
+        final Map<String, Object> export = new LinkedHashMap<>();
+        export.put("sections", exported);
+        export.put("unassignedNotes", exportSection(model.getUnassignedNotesSection(),
+            model.getNotes(model.getUnassignedNotesSection())));
+        return gson.toJson(export);
+    }
+
+    private BetterNotesSection exportSection(final BetterNotesSection section, final List<BetterNotesNote> notes) {
+        final BetterNotesSection copy = new BetterNotesSection(section.getName());
+        copy.setId(section.getId());
+        copy.setMaximized(section.isMaximized());
+        copy.setItemId(section.getItemId());
+        copy.setSpriteId(section.getSpriteId());
+        copy.setUnassignedNotesSection(section.isUnassignedNotesSection());
+        copy.setNewSection(false);
+
+        for (final BetterNotesNote note : notes) {
+            // Copies, so bodies loaded for the export can be evicted again without touching it
+            final BetterNotesNote noteCopy = note.copy();
+            noteCopy.setContent(loadContent(note));
+            copy.getNotes().add(noteCopy);
+        }
+        return copy;
     }
 
     public BetterNotesSection getUnassignedNotesSection() {
@@ -2,8 +2,18 @@ package com.betterNotes;
 
 import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.icons.IconCache;
+import com.betterNotes.icons.IconCatalog;
+import com.betterNotes.icons.ThumbnailStore;
+import com.betterNotes.icons.UiIconRegistry;
+import com.betterNotes.search.NotesSearchIndex;
+import com.betterNotes.search.NotesSearchService;
+import com.betterNotes.search.TitleTrigramIndex;
 import com.betterNotes.ui.GridDialog;
 import com.betterNotes.ui.MainPanel;
+import com.betterNotes.ui.NoteDocumentCache;
+import com.betterNotes.ui.NoteDocumentWorker;
+import com.betterNotes.ui.NoteSaveScheduler;
 import com.betterNotes.ui.NoteOverviewPanel;
 import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
@@ -17,13 +27,14 @@ import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
 import net.runelite.api.events.GameStateChanged;
+import net.runelite.client.RuneLite;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.game.ItemManager;
 import net.runelite.client.game.SpriteManager;
 import net.runelite.client.game.chatbox.ChatboxItemSearch;
-import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.input.KeyManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
@@ -31,16 +42,20 @@ import net.runelite.client.ui.NavigationButton;
 import net.runelite.client.ui.components.colorpicker.ColorPickerManager;
 import net.runelite.client.ui.components.colorpicker.RuneliteColorPicker;
 import net.runelite.client.util.AsyncBufferedImage;
+import net.runelite.client.util.HotkeyListener;
 import net.runelite.client.util.ImageUtil;
 
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -72,6 +87,7 @@ public class BetterNotesPlugin extends Plugin
 	@Inject
 	private Gson gson;
 	@Inject
+	@Getter
 	private BetterNotesConfig config;
 
 	@Inject
@@ -83,11 +99,45 @@ public class BetterNotesPlugin extends Plugin
 	private MainPanel panel;
 	private NavigationButton navButton;
 
+	@Getter
 	private BetterNotesCache cache;
 
 	@Getter
 	private BetterNotesDataManager dataManager;
 
+	@Getter
+	private NotesSearchIndex searchIndex;
+
+	@Getter
+	private NotesSearchService searchService;
+
+	@Getter
+	private TitleTrigramIndex titleIndex;
+
+	// Parsed note bodies kept for editors that are built again, by estimated heap use
+	private static final long DOCUMENT_CACHE_BUDGET = 32L * 1024 * 1024;
+
+	@Getter
+	private NoteDocumentCache documentCache;
+
+	@Getter
+	private NoteDocumentWorker documentWorker;
+
+	@Getter
+	private NoteSaveScheduler saveScheduler;
+
+	@Inject
+	private KeyManager keyManager;
+
+	private final HotkeyListener quickSwitcherHotkey = new HotkeyListener(() -> config.quickSwitcherHotkey())
+	{
+		@Override
+		public void hotkeyPressed()
+		{
+			SwingUtilities.invokeLater(() -> openQuickSwitcher());
+		}
+	};
+
 	@Inject
 	@Getter
 	private ColorPickerManager colorPickerManager;
@@ -96,9 +146,6 @@ public class BetterNotesPlugin extends Plugin
 	@Getter
 	private ClientThread clientThread;
 
-	@Getter
-	private List<BetterNotesSection> sections;
-
 	@Getter
 	private BetterNotesSection unassignedNotesSection;
 
@@ -107,17 +154,35 @@ public class BetterNotesPlugin extends Plugin
 		return panel;
 	}
 
-	private final Map<Integer, BufferedImage> spriteCache = new HashMap<>();
-	private final Map<Integer, BufferedImage> itemCache = new HashMap<>();
+	// Scaled icons of notes and sections, about 4 KB each
+	private static final long ICON_CACHE_BUDGET = 4L * 1024 * 1024;
+
+	@Getter
+	private final IconCache iconCache = new IconCache(ICON_CACHE_BUDGET);
+
+	// Icons of the last session, shown before their sprites and items can be loaded
+	private static final File THUMBNAIL_FILE = new File(new File(RuneLite.RUNELITE_DIR, "better-notes"), "thumbnails.dat");
+
+	private ThumbnailStore thumbnailStore;
+
+	// Set once the notes are loaded; until then no icon is known to be in use
+	private volatile boolean notesLoaded;
+
+	private GridDialog iconPickerDialog;
 
 	@Override
 	protected void startUp() throws Exception
 	{
-		sections = new ArrayList<>();
+		// The cache owns the model
+		this.cache = new BetterNotesCache();
 
 		unassignedNotesSection = new BetterNotesSection("Unassigned notes");
 		unassignedNotesSection.setUnassignedNotesSection(true);
 
+		notesLoaded = false;
+		thumbnailStore = new ThumbnailStore(THUMBNAIL_FILE);
+		thumbnailStore.load(iconCache);
+
 		panel = new MainPanel(this);
 
 		final BufferedImage icon = ImageUtil.loadImageResource(getClass(), "/notes_icon.png");
@@ -131,11 +196,18 @@ public class BetterNotesPlugin extends Plugin
 
 		clientToolbar.addNavigation(navButton);
 
-		this.cache = new BetterNotesCache();
-		this.dataManager = new BetterNotesDataManager(this, configManager, gson, cache, sections, unassignedNotesSection);
+		this.searchIndex = new NotesSearchIndex();
+		this.titleIndex = new TitleTrigramIndex();
+		this.documentCache = new NoteDocumentCache(DOCUMENT_CACHE_BUDGET);
+		this.searchService = new NotesSearchService(searchIndex, titleIndex, cache, note -> dataManager.peekContent(note));
+		this.dataManager = new BetterNotesDataManager(this, configManager, gson, cache, searchService, cache.getSections(), unassignedNotesSection);
+		this.documentWorker = new NoteDocumentWorker();
+		this.saveScheduler = new NoteSaveScheduler(() -> config.maxSaveDelay());
+		keyManager.registerKeyListener(quickSwitcherHotkey);
 
 		clientThread.invokeLater(() -> {
 			dataManager.loadConfig();
+			notesLoaded = true;
 			SwingUtilities.invokeLater(() -> {
 				unassignedNotesSection = dataManager.getUnassignedNotesSection();
 				panel.rebuild();
@@ -147,6 +219,26 @@ public class BetterNotesPlugin extends Plugin
 	@Override
 	protected void shutDown() throws Exception
 	{
+		keyManager.unregisterKeyListener(quickSwitcherHotkey);
+		searchService.shutDown();
+		saveScheduler.flushAll();
+		log.debug("Editor saves: {}", saveScheduler);
+		log.debug("Icons: {}", iconCache);
+		log.debug("Sidebar icons: {}", UiIconRegistry.describe());
+		// Shut down before the notes were loaded, keep the icons rather than prune them all
+		thumbnailStore.save(notesLoaded ? getIconKeysInUse() : null);
+		if (iconPickerDialog != null)
+		{
+			iconPickerDialog.dispose();
+			iconPickerDialog = null;
+		}
+		// Background saves of large notes go into the model before it is flushed
+		documentWorker.shutDown();
+		log.debug("Note documents: {}", documentCache);
+		documentCache.clear();
+
+		// Make sure debounced and queued saves reach the config before the plugin goes away
+		dataManager.shutDown();
 		log.info("Example stopped!");
 	}
 
@@ -154,7 +246,6 @@ public class BetterNotesPlugin extends Plugin
 	{
 		BetterNotesSection newSection = new BetterNotesSection("New section");
 
-		sections.add(newSection);
 		cache.addSection(newSection);
 
 		dataManager.updateConfig();
@@ -193,11 +284,12 @@ public class BetterNotesPlugin extends Plugin
 
 		// Proceed only if the user confirms
 		if (choice == JOptionPane.YES_OPTION) {
-			if (!sectionToDelete.getNotes().isEmpty()) {
-				unassignedNotesSection.getNotes().addAll(sectionToDelete.getNotes());
+			final BetterNotesSection removed = cache.removeSection(sectionToDelete.getId());
+			if (removed != null) {
+				for (final BetterNotesNote note : removed.getNotes()) {
+					cache.addNote(unassignedNotesSection.getId(), note);
+				}
 			}
-			sections.removeIf(section -> section.getId().equals(sectionToDelete.getId()));
-			cache.removeSection(sectionToDelete.getId());
 
 			dataManager.updateConfig();
 		}
@@ -211,16 +303,8 @@ public class BetterNotesPlugin extends Plugin
 				JOptionPane.YES_NO_OPTION);
 
 		if (choice == JOptionPane.YES_OPTION) {
-			if (section.isUnassignedNotesSection()) {
-				// Remove from unassignedNotesSection
-				unassignedNotesSection.getNotes().removeIf(note -> note.getId().equals(noteToDelete.getId()));
-			} else {
-				// Search for the section and remove the note
-				sections.stream()
-						.filter(sec -> sec.getId().equals(section.getId()))
-						.findFirst()
-						.ifPresent(foundSection -> foundSection.getNotes().removeIf(note -> note.getId().equals(noteToDelete.getId())));
-			}
+			// The cache knows the owning section, whether it is the unassigned one or not
+			cache.removeNote(noteToDelete.getId());
 
 			// Update configuration to persist changes
 			getDataManager().updateConfig();
@@ -231,16 +315,30 @@ public class BetterNotesPlugin extends Plugin
 	}
 
 	public void changeSectionName(String newName, String sectionIdToChange) {
-		sections.stream()
-				.filter(section -> section.getId().equals(sectionIdToChange))
-				.findFirst().ifPresent(found -> found.setName(newName));
-
 		cache.changeSectionName(newName, sectionIdToChange);
+		titleIndex.rename(sectionIdToChange, newName);
+
+		dataManager.updateConfig();
+	}
+
+	public void renameNote(BetterNotesNote note, String newName) {
+		cache.renameNote(note.getId(), newName);
+		titleIndex.rename(note.getId(), newName);
 
 		dataManager.updateConfig();
 	}
 
+	/**
+	 * Shows the side panel with the quick switcher open.
+	 */
+	public void openQuickSwitcher() {
+		clientToolbar.openPanel(navButton);
+		panel.openQuickSwitcher();
+	}
+
 	public void addNote() {
+		final List<BetterNotesSection> sections = getSections();
+
 		// Check if there are no sections
 		if (sections.isEmpty()) {
 			// Directly add the note to the unassigned section
@@ -288,9 +386,7 @@ public class BetterNotesPlugin extends Plugin
 
 		BetterNotesNote newNote = new BetterNotesNote("New note");
 
-		sections.stream()
-				.filter(section -> section.getId().equals(sectionId))
-				.findFirst().ifPresent(sectionToAddTo -> sectionToAddTo.getNotes().add(newNote));
+		cache.addNote(sectionId, newNote);
 
 		dataManager.updateConfig();
 	}
@@ -298,11 +394,10 @@ public class BetterNotesPlugin extends Plugin
 	public void openSectionIconPickerDialog(BetterNotesSection section) {
 		SwingUtilities.invokeLater(() -> {
 
-			HiscoreSkill selectedSkill = openIconPickerDialog(section, null);
+			IconCatalog.Entry selectedIcon = openIconPickerDialog(section, null);
 
-			if (selectedSkill != null) {
-				removeSectionIcon(section, true);
-				section.setSpriteId(selectedSkill.getSpriteId());
+			if (selectedIcon != null) {
+				cache.setSectionIcon(section.getId(), -1, selectedIcon.getSpriteId());
 				dataManager.updateConfig();
 			} else {
 				System.out.println("No selection made.");
@@ -313,11 +408,10 @@ public class BetterNotesPlugin extends Plugin
 	public void openNoteIconPickerDialog(BetterNotesNote note) {
 		SwingUtilities.invokeLater(() -> {
 
-			HiscoreSkill selectedSkill = openIconPickerDialog(null, note);
+			IconCatalog.Entry selectedIcon = openIconPickerDialog(null, note);
 
-			if (selectedSkill != null) {
-				removeNoteIcon(note, true);
-				note.setSpriteId(selectedSkill.getSpriteId());
+			if (selectedIcon != null) {
+				cache.setNoteIcon(note.getId(), -1, selectedIcon.getSpriteId());
 				dataManager.updateConfig();
 			} else {
 				System.out.println("No selection made.");
@@ -326,56 +420,52 @@ public class BetterNotesPlugin extends Plugin
 	}
 
 	public void removeSectionIcon(BetterNotesSection section, Boolean skipSave) {
-		section.setSpriteId(-1);
-		section.setItemId(-1);
+		cache.setSectionIcon(section.getId(), -1, -1);
 		if (!skipSave) {
 			dataManager.updateConfig();
 		}
 	}
 
 	public void removeNoteIcon(BetterNotesNote note, Boolean skipSave) {
-		note.setSpriteId(-1);
-		note.setItemId(-1);
+		cache.setNoteIcon(note.getId(), -1, -1);
 		if (!skipSave) {
 			dataManager.updateConfig();
 		}
 	}
 
-	public HiscoreSkill openIconPickerDialog(BetterNotesSection section, BetterNotesNote note) {
+	public IconCatalog.Entry openIconPickerDialog(BetterNotesSection section, BetterNotesNote note) {
 
-		GridDialog dialog = new GridDialog(null, spriteManager, this, note, section); // Pass `null` as the owner if there's no parent frame
-		dialog.setVisible(true);
+		// Built on first use and kept, so later picks open instantly
+		if (iconPickerDialog == null) {
+			iconPickerDialog = new GridDialog(null, spriteManager, this); // Pass `null` as the owner if there's no parent frame
+		}
 
 		// Handle the result
-		return dialog.getSelectedSkill();
+		return iconPickerDialog.pick(note, section);
+	}
+
+	public void copyNotesToClipboard() {
+		Toolkit.getDefaultToolkit()
+				.getSystemClipboard()
+				.setContents(new StringSelection(dataManager.exportJson()), null);
 	}
 
 	public void addNoteToUnassignedSection() {
 		BetterNotesNote newNote = new BetterNotesNote("New note");
 
-		unassignedNotesSection.getNotes().add(newNote);
+		cache.addNote(unassignedNotesSection.getId(), newNote);
 
 		dataManager.updateConfig();
 	}
 
 	public void deleteNoteFromSection(String noteId, String sectionId) {
-		// 1) Find the matching section
-		BetterNotesSection targetSection = sections.stream()
-				.filter(section -> section.getId().equals(sectionId))
-				.findFirst()
-				.orElse(null);
-
-		// If no section found, just return
-		if (targetSection == null)
+		// Only remove the note if it is still in the given section
+		if (cache.getOwner(noteId) != cache.getSection(sectionId))
 		{
 			return;
 		}
 
-		// 2) Remove the matching note from that section's list
-		// If note IDs are unique, this removes just one
-		targetSection.getNotes().removeIf(note -> note.getId().equals(noteId));
-
-		// 3) (Optional) Persist changes or refresh UI
+		cache.removeNote(noteId);
 		dataManager.updateConfig();
 	}
 
@@ -397,8 +487,7 @@ public class BetterNotesPlugin extends Plugin
 					clientThread.invokeLater(() ->
 					{
 						int finalId = itemManager.canonicalize(itemId);
-						removeNoteIcon(note, true);
-						note.setItemId(finalId);
+						cache.setNoteIcon(note.getId(), finalId, -1);
 
 						// Optionally save right away
 						dataManager.updateConfig();
@@ -426,8 +515,7 @@ public class BetterNotesPlugin extends Plugin
 					clientThread.invokeLater(() ->
 					{
 						int finalId = itemManager.canonicalize(itemId);
-						removeSectionIcon(section, true);
-						section.setItemId(finalId);
+						cache.setSectionIcon(section.getId(), finalId, -1);
 
 						// Optionally save right away
 						dataManager.updateConfig();
@@ -436,8 +524,20 @@ public class BetterNotesPlugin extends Plugin
 				.build();
 	}
 
+	/**
+	 * Current section order, safe to iterate from any thread.
+	 */
+	public List<BetterNotesSection> getSections() {
+		return cache.getSnapshot().getSections();
+	}
+
 	public void redrawMainPanel() {
-		panel.rebuild();
+		// Saves can come from the client thread, e.g. after picking an item icon
+		if (SwingUtilities.isEventDispatchThread()) {
+			panel.rebuild();
+		} else {
+			SwingUtilities.invokeLater(panel::rebuild);
+		}
 	}
 
 	@Provides
@@ -448,65 +548,85 @@ public class BetterNotesPlugin extends Plugin
 
 	public void getSpriteAsync(int spriteId, Consumer<BufferedImage> callback)
 	{
-		if (spriteCache.containsKey(spriteId))
+		// Panels asking for the same sprite while it loads share one request and one resize
+		iconCache.get(IconCache.spriteKey(spriteId), () ->
 		{
-			callback.accept(spriteCache.get(spriteId));
-			return;
-		}
-
-		spriteManager.getSpriteAsync(spriteId, 0, (img) ->
-		{
-			if (img != null)
+			CompletableFuture<BufferedImage> loaded = new CompletableFuture<>();
+			spriteManager.getSpriteAsync(spriteId, 0, (img) ->
 			{
+				if (img == null)
+				{
+					loaded.complete(null);
+					return;
+				}
+
 				BufferedImage scaled = ImageUtil.resizeImage(ImageUtil.resizeCanvas(img, 35, 35), 32, 32);
-				spriteCache.put(spriteId, scaled);
-				callback.accept(scaled);
-			}
-			else
-			{
-				callback.accept(null);
-			}
-		});
+				thumbnailStore.putSprite(spriteId, scaled);
+				loaded.complete(scaled);
+			});
+			return loaded;
+		}).whenComplete((img, error) -> callback.accept(img));
 	}
 
 	public void getItemAsync(int itemId, Consumer<BufferedImage> callback)
 	{
-		if (itemCache.containsKey(itemId))
+		iconCache.get(IconCache.itemKey(itemId), () ->
 		{
-			callback.accept(itemCache.get(itemId));
-			return;
+			CompletableFuture<BufferedImage> loaded = new CompletableFuture<>();
+			AsyncBufferedImage asyncImg = itemManager.getImage(itemId, 0, false);
+			asyncImg.onLoaded(() ->
+			{
+				thumbnailStore.putItem(itemId, asyncImg);
+				loaded.complete(asyncImg);
+			});
+			return loaded;
+		}).whenComplete((img, error) -> callback.accept(img));
+	}
+
+	// Icons shown by any section or note, the thumbnails worth keeping
+	private Set<String> getIconKeysInUse()
+	{
+		BetterNotesCache.Snapshot model = cache.getSnapshot();
+		List<BetterNotesSection> sections = new ArrayList<>(model.getSections());
+		if (model.getUnassignedNotesSection() != null)
+		{
+			sections.add(model.getUnassignedNotesSection());
 		}
 
-		AsyncBufferedImage asyncImg = itemManager.getImage(itemId, 0, false);
-		asyncImg.onLoaded(() ->
+		Set<String> keys = new HashSet<>();
+		for (BetterNotesSection section : sections)
 		{
-			itemCache.put(itemId, asyncImg);
-			callback.accept(asyncImg);
-		});
+			addIconKeys(keys, section.getSpriteId(), section.getItemId());
+			for (BetterNotesNote note : model.getNotes(section))
+			{
+				addIconKeys(keys, note.getSpriteId(), note.getItemId());
+			}
+		}
+		return keys;
 	}
 
-	public BufferedImage getSprite(int spriteId)
+	private static void addIconKeys(Set<String> keys, int spriteId, int itemId)
 	{
-		// Check cache first
-		if (spriteCache.containsKey(spriteId))
+		if (spriteId != -1)
 		{
-			return spriteCache.get(spriteId);
+			keys.add(IconCache.spriteKey(spriteId));
 		}
+		if (itemId != -1)
+		{
+			keys.add(IconCache.itemKey(itemId));
+		}
+	}
 
-		// Return null immediately if not cached (since this is synchronous)
-		return null;
+	public BufferedImage getSprite(int spriteId)
+	{
+		// Null if not loaded yet, since this is synchronous
+		return iconCache.getIfPresent(IconCache.spriteKey(spriteId));
 	}
 
 	public BufferedImage getItem(int itemId)
 	{
-		// Check cache first
-		if (itemCache.containsKey(itemId))
-		{
-			return itemCache.get(itemId);
-		}
-
-		// Return null immediately if not cached (since this is synchronous)
-		return null;
+		// Null if not loaded yet, since this is synchronous
+		return iconCache.getIfPresent(IconCache.itemKey(itemId));
 	}
 
 }
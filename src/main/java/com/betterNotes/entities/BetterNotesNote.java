@@ -1,12 +1,16 @@
 package com.betterNotes.entities;
 
+import com.betterNotes.utility.ContentCompression;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BetterNotesNote
 {
+    private static final AtomicLong CONTENT_VERSIONS = new AtomicLong();
+
     @Getter
     @Setter
     private String id;
@@ -14,9 +18,19 @@ public class BetterNotesNote
     @Getter @Setter
     private String name;
 
-    @Getter @Setter
     private String content;
 
+    // Bodies are loaded on demand, see BetterNotesDataManager.loadContent
+    @Getter
+    private transient boolean contentLoaded;
+
+    // Deflated body of a large note that is not open, held instead of content
+    @Getter
+    private transient byte[] compressedContent;
+
+    // Changes on every edit of the body, but not when it is unloaded and read back; 0 until first asked for
+    private transient long contentVersion;
+
     @Getter @Setter
     private int itemId;
 
@@ -34,12 +48,130 @@ public class BetterNotesNote
         this.id = UUID.randomUUID().toString();
         this.name = name;
         this.content = "";
+        this.contentLoaded = true;
         this.itemId = -1;
         this.spriteId = -1;
         this.isMaximized = true;
         this.isNewNote = true;
     }
 
+    private BetterNotesNote(final BetterNotesNote other)
+    {
+        this.id = other.id;
+        this.name = other.name;
+        this.content = other.content;
+        this.contentLoaded = other.contentLoaded;
+        this.compressedContent = other.compressedContent;
+        // Fixed here so the copy and the note still match if either body is dropped and read back
+        this.contentVersion = other.getContentVersion();
+        this.itemId = other.itemId;
+        this.spriteId = other.spriteId;
+        this.isMaximized = other.isMaximized;
+        this.isNewNote = other.isNewNote;
+    }
+
+    /**
+     * Detached copy of this note, e.g. for handing a consistent state to the background writer.
+     */
+    public BetterNotesNote copy()
+    {
+        return new BetterNotesNote(this);
+    }
+
+    public String getContent()
+    {
+        if (compressedContent != null)
+        {
+            // Inflated copy for the caller, the note itself stays compressed
+            return ContentCompression.inflate(compressedContent);
+        }
+        return content;
+    }
+
+    public void setContent(final String content)
+    {
+        this.content = content;
+        this.compressedContent = null;
+        this.contentLoaded = true;
+        this.contentVersion = 0;
+    }
+
+    /**
+     * Puts back a body that was read from storage or inflated, keeping the content version.
+     */
+    public void restoreContent(final String content)
+    {
+        this.content = content;
+        this.compressedContent = null;
+        this.contentLoaded = true;
+    }
+
+    /**
+     * Identifies the current body, so anything derived from it (e.g. a parsed document) can tell when it is stale.
+     * Unique across notes and loads.
+     */
+    public long getContentVersion()
+    {
+        if (contentVersion == 0)
+        {
+            contentVersion = CONTENT_VERSIONS.incrementAndGet();
+        }
+        return contentVersion;
+    }
+
+    /**
+     * True if both notes hold the same version of the body, even if one of them no longer has it in memory.
+     */
+    public boolean hasSameContentVersion(final BetterNotesNote other)
+    {
+        return contentVersion != 0 && contentVersion == other.contentVersion;
+    }
+
+    public boolean isContentCompressed()
+    {
+        return compressedContent != null;
+    }
+
+    /**
+     * Replaces the in-memory body with its deflated form until the note is opened again.
+     */
+    public void compressContent(final byte[] compressed)
+    {
+        this.compressedContent = compressed;
+        this.content = null;
+    }
+
+    /**
+     * True if both notes hold the very same body instance, so comparing can skip inflating or a full equals.
+     */
+    public boolean hasSameContentInstance(final BetterNotesNote other)
+    {
+        return contentLoaded && other.contentLoaded
+                && content == other.content && compressedContent == other.compressedContent;
+    }
+
+    /**
+     * Size of the body as held in memory: chars when plain, bytes when compressed.
+     */
+    public int getResidentContentSize()
+    {
+        if (compressedContent != null)
+        {
+            return compressedContent.length;
+        }
+        return content == null ? 0 : content.length();
+    }
+
+    /**
+     * Drops the body from memory; it is read back from storage the next time it is needed.
+     */
+    public void unloadContent()
+    {
+        this.content = null;
+        this.compressedContent = null;
+        this.contentLoaded = false;
+    }
+
     public boolean hasItemIcon() {
         return this.getItemId() != -1;
     }
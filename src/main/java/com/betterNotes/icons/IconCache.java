@@ -0,0 +1,236 @@
+package com.betterNotes.icons;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Scaled note and section icons by key, e.g. {@code sprite:123} or {@code item:456}, shared by every panel. Least
+ * recently used icons are dropped once their pixels go over the memory budget.
+ * <p>
+ * Safe to use from any thread: icons are filled in from game callbacks and read on the EDT. A key that is already
+ * being loaded is not loaded again; every caller asking for it meanwhile gets the same pending result.
+ */
+public class IconCache
+{
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static final class Entry
+    {
+        final BufferedImage image;
+        final long bytes;
+
+        Entry(final BufferedImage image)
+        {
+            this.image = image;
+            this.bytes = (long) image.getWidth() * image.getHeight() * BYTES_PER_PIXEL;
+        }
+    }
+
+    private final long budgetBytes;
+
+    // Guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long estimatedBytes;
+    private long evictions;
+
+    private final Map<String, CompletableFuture<BufferedImage>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public IconCache(final long budgetBytes)
+    {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static String spriteKey(final int spriteId)
+    {
+        return "sprite:" + spriteId;
+    }
+
+    public static String itemKey(final int itemId)
+    {
+        return "item:" + itemId;
+    }
+
+    /**
+     * @return the icon if it is loaded, or null
+     */
+    public BufferedImage getIfPresent(final String key)
+    {
+        final Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(key);
+        }
+
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.image;
+    }
+
+    /**
+     * Returns the icon, loading it if needed. A load already running for the key is shared instead of starting another.
+     *
+     * @param loader starts loading the icon, completing with null if there is none; only called on a miss
+     */
+    public CompletableFuture<BufferedImage> get(final String key, final Supplier<CompletableFuture<BufferedImage>> loader)
+    {
+        final BufferedImage cached = getIfPresent(key);
+        if (cached != null)
+        {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        final CompletableFuture<BufferedImage> pending = inFlight.putIfAbsent(key, created);
+        if (pending != null)
+        {
+            coalesced.incrementAndGet();
+            return pending;
+        }
+
+        // Another load may have finished between the miss and claiming the key
+        final BufferedImage loaded = peek(key);
+        if (loaded != null)
+        {
+            inFlight.remove(key, created);
+            created.complete(loaded);
+            return created;
+        }
+
+        CompletableFuture<BufferedImage> load;
+        try
+        {
+            load = loader.get();
+        }
+        catch (RuntimeException e)
+        {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(e);
+        }
+
+        load.whenComplete((image, error) -> {
+            // Cached before the key is released, so a caller always finds one or the other
+            if (image != null)
+            {
+                put(key, image);
+            }
+            inFlight.remove(key, created);
+
+            if (error != null)
+            {
+                created.completeExceptionally(error);
+            }
+            else
+            {
+                created.complete(image);
+            }
+        });
+        return created;
+    }
+
+    public void put(final String key, final BufferedImage image)
+    {
+        final Entry entry = new Entry(image);
+        synchronized (entries)
+        {
+            final Entry previous = entries.put(key, entry);
+            if (previous != null)
+            {
+                estimatedBytes -= previous.bytes;
+            }
+            estimatedBytes += entry.bytes;
+
+            // The icon just stored is the most recent one and stays even if it alone is over the budget
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (estimatedBytes > budgetBytes && entries.size() > 1)
+            {
+                final Entry eldest = iterator.next();
+                iterator.remove();
+                estimatedBytes -= eldest.bytes;
+                evictions++;
+            }
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            estimatedBytes = 0;
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Requests that found a load of the same icon already running and waited for it.
+     */
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+
+    public int getSize()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    public long getEstimatedBytes()
+    {
+        synchronized (entries)
+        {
+            return estimatedBytes;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        synchronized (entries)
+        {
+            return String.format("%d icons (~%d KB of %d KB), %d hits, %d misses, %d coalesced, %d in flight, %d evicted",
+                entries.size(), estimatedBytes / 1024, budgetBytes / 1024, hits.get(), misses.get(), coalesced.get(),
+                inFlight.size(), evictions);
+        }
+    }
+
+    // Looks the key up without counting a hit or miss
+    private BufferedImage peek(final String key)
+    {
+        synchronized (entries)
+        {
+            final Entry entry = entries.get(key);
+            return entry == null ? null : entry.image;
+        }
+    }
+}
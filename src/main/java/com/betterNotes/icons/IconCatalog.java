@@ -0,0 +1,217 @@
+package com.betterNotes.icons;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.SpriteID;
+import net.runelite.client.hiscore.HiscoreSkill;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Every sprite that can be picked as a note or section icon: all hiscore skills, bosses and activities, plus the
+ * prayer and spell sprites. Entries are sorted by group and name and keep a lower-cased copy of their name, so
+ * filtering as the user types is a cheap pass over a few hundred entries.
+ */
+@Slf4j
+public class IconCatalog
+{
+    public enum Group
+    {
+        BOSSES("Bosses"),
+        SKILLS("Skills"),
+        ACTIVITIES("Activities"),
+        PRAYERS("Prayers"),
+        SPELLS("Spells");
+
+        private final String displayName;
+
+        Group(final String displayName)
+        {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString()
+        {
+            return displayName;
+        }
+    }
+
+    public static final class Entry
+    {
+        @Getter
+        private final String name;
+
+        @Getter
+        private final Group group;
+
+        @Getter
+        private final int spriteId;
+
+        // Lower-cased name, matched against the query
+        @Getter
+        private final String searchKey;
+
+        Entry(final String name, final Group group, final int spriteId)
+        {
+            this.name = name;
+            this.group = group;
+            this.spriteId = spriteId;
+            this.searchKey = name.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // SpriteID constant prefixes read as groups; the disabled variants are greyed-out copies
+    private static final String PRAYER_PREFIX = "PRAYER_";
+    private static final String SPELL_PREFIX = "SPELL_";
+    private static final String DISABLED_SUFFIX = "_DISABLED";
+
+    private final List<Entry> entries;
+
+    private IconCatalog(final List<Entry> entries)
+    {
+        this.entries = entries;
+    }
+
+    /**
+     * Enumerates the icon sources. Takes a millisecond or two, so it is done once, when a picker first needs it.
+     */
+    public static IconCatalog build()
+    {
+        final long start = System.nanoTime();
+        final List<Entry> entries = new ArrayList<>();
+        // Sprites already listed from SpriteID, which has several constants for some of them
+        final Set<Integer> seen = new HashSet<>();
+
+        for (final HiscoreSkill skill : HiscoreSkill.values())
+        {
+            if (skill.getSpriteId() == -1)
+            {
+                continue;
+            }
+
+            final Group group;
+            switch (skill.getType())
+            {
+                case BOSS:
+                    group = Group.BOSSES;
+                    break;
+                case ACTIVITY:
+                    group = Group.ACTIVITIES;
+                    break;
+                default:
+                    group = Group.SKILLS;
+                    break;
+            }
+            entries.add(new Entry(skill.getName(), group, skill.getSpriteId()));
+        }
+
+        for (final Field field : SpriteID.class.getFields())
+        {
+            final String constant = field.getName();
+            if (field.getType() != int.class || !Modifier.isStatic(field.getModifiers())
+                || constant.endsWith(DISABLED_SUFFIX))
+            {
+                continue;
+            }
+
+            final Group group;
+            final String name;
+            if (constant.startsWith(PRAYER_PREFIX))
+            {
+                group = Group.PRAYERS;
+                name = readableName(constant.substring(PRAYER_PREFIX.length()));
+            }
+            else if (constant.startsWith(SPELL_PREFIX))
+            {
+                group = Group.SPELLS;
+                name = readableName(constant.substring(SPELL_PREFIX.length()));
+            }
+            else
+            {
+                continue;
+            }
+
+            try
+            {
+                final int spriteId = field.getInt(null);
+                if (seen.add(spriteId))
+                {
+                    entries.add(new Entry(name, group, spriteId));
+                }
+            }
+            catch (IllegalAccessException e)
+            {
+                log.debug("Skipping sprite {}", constant, e);
+            }
+        }
+
+        entries.sort(Comparator.comparing(Entry::getGroup).thenComparing(Entry::getSearchKey));
+        log.debug("Icon catalog of {} sprites built in {}ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+        return new IconCatalog(Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * Entries of the group (or of every group if null) whose name contains every word of the query. Names with a word
+     * starting with the query's first word come first; otherwise the catalog order is kept.
+     */
+    public List<Entry> search(final Group group, final String query)
+    {
+        final String[] words = query.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        final List<Entry> wordStarts = new ArrayList<>();
+        final List<Entry> others = new ArrayList<>();
+
+        for (final Entry entry : entries)
+        {
+            if (group != null && entry.group != group || !containsAll(entry.searchKey, words))
+            {
+                continue;
+            }
+
+            final int first = entry.searchKey.indexOf(words[0]);
+            if (first == 0 || entry.searchKey.charAt(first - 1) == ' ')
+            {
+                wordStarts.add(entry);
+            }
+            else
+            {
+                others.add(entry);
+            }
+        }
+
+        wordStarts.addAll(others);
+        return wordStarts;
+    }
+
+    public List<Entry> getEntries()
+    {
+        return entries;
+    }
+
+    private static boolean containsAll(final String searchKey, final String[] words)
+    {
+        for (final String word : words)
+        {
+            if (!searchKey.contains(word))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // PROTECT_FROM_MAGIC -> Protect from magic
+    private static String readableName(final String constant)
+    {
+        final String words = constant.replace('_', ' ').toLowerCase(Locale.ROOT);
+        return words.isEmpty() ? words : Character.toUpperCase(words.charAt(0)) + words.substring(1);
+    }
+}
@@ -0,0 +1,190 @@
+package com.betterNotes.icons;
+
+import net.runelite.client.game.SpriteManager;
+
+import javax.swing.Icon;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sprites drawn once into shared pages of fixed-size cells, for pickers that show many of them. Every cell paints its
+ * part of a page, so a sprite is requested and centered once no matter how many pickers or openings show it.
+ * <p>
+ * Only to be used on the EDT.
+ */
+public class SpriteAtlas
+{
+    private static final int PAGE_COLUMNS = 16;
+    private static final int PAGE_ROWS = 16;
+    private static final int CELLS_PER_PAGE = PAGE_COLUMNS * PAGE_ROWS;
+
+    private final SpriteManager spriteManager;
+    private final int cellSize;
+
+    private final List<BufferedImage> pages = new ArrayList<>();
+    // Cell of every drawn sprite, by sprite id
+    private final Map<Integer, Integer> cells = new HashMap<>();
+    private final Set<Integer> missing = new HashSet<>();
+    // Sprites requested and not drawn yet, with who to tell when they are
+    private final Map<Integer, List<Runnable>> loading = new HashMap<>();
+
+    /**
+     * @param cellSize width and height of a cell; sprites are centered in it and cropped to it, like
+     *                 {@code ImageUtil.resizeCanvas}
+     */
+    public SpriteAtlas(final SpriteManager spriteManager, final int cellSize)
+    {
+        this.spriteManager = spriteManager;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * An icon showing the sprite once it is drawn, and nothing before. Cheap to create.
+     */
+    public Icon getIcon(final int spriteId)
+    {
+        return new CellIcon(spriteId);
+    }
+
+    public boolean isLoaded(final int spriteId)
+    {
+        return cells.containsKey(spriteId) || missing.contains(spriteId);
+    }
+
+    /**
+     * Requests the sprite unless it is drawn or already requested.
+     *
+     * @param onLoaded run on the EDT once the sprite is drawn, or right away if it is; may be null
+     */
+    public void load(final int spriteId, final Runnable onLoaded)
+    {
+        if (isLoaded(spriteId))
+        {
+            if (onLoaded != null)
+            {
+                onLoaded.run();
+            }
+            return;
+        }
+
+        final List<Runnable> waiting = loading.get(spriteId);
+        if (waiting != null)
+        {
+            if (onLoaded != null)
+            {
+                waiting.add(onLoaded);
+            }
+            return;
+        }
+
+        final List<Runnable> listeners = new ArrayList<>();
+        if (onLoaded != null)
+        {
+            listeners.add(onLoaded);
+        }
+        loading.put(spriteId, listeners);
+        spriteManager.getSpriteAsync(spriteId, 0, sprite -> SwingUtilities.invokeLater(() -> draw(spriteId, sprite)));
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    public int getLoadedCount()
+    {
+        return cells.size();
+    }
+
+    public long getEstimatedBytes()
+    {
+        return (long) pages.size() * CELLS_PER_PAGE * cellSize * cellSize * 4;
+    }
+
+    private void draw(final int spriteId, final BufferedImage sprite)
+    {
+        if (sprite == null)
+        {
+            missing.add(spriteId);
+        }
+        else
+        {
+            final int cell = cells.size();
+            if (cell / CELLS_PER_PAGE == pages.size())
+            {
+                pages.add(new BufferedImage(PAGE_COLUMNS * cellSize, PAGE_ROWS * cellSize, BufferedImage.TYPE_INT_ARGB));
+            }
+
+            final int x = cellX(cell);
+            final int y = cellY(cell);
+            final Graphics2D graphics = pages.get(cell / CELLS_PER_PAGE).createGraphics();
+            graphics.clipRect(x, y, cellSize, cellSize);
+            graphics.drawImage(sprite, x + (cellSize - sprite.getWidth()) / 2, y + (cellSize - sprite.getHeight()) / 2,
+                null);
+            graphics.dispose();
+            cells.put(spriteId, cell);
+        }
+
+        final List<Runnable> listeners = loading.remove(spriteId);
+        if (listeners != null)
+        {
+            listeners.forEach(Runnable::run);
+        }
+    }
+
+    private int cellX(final int cell)
+    {
+        return (cell % CELLS_PER_PAGE) % PAGE_COLUMNS * cellSize;
+    }
+
+    private int cellY(final int cell)
+    {
+        return (cell % CELLS_PER_PAGE) / PAGE_COLUMNS * cellSize;
+    }
+
+    private class CellIcon implements Icon
+    {
+        private final int spriteId;
+
+        CellIcon(final int spriteId)
+        {
+            this.spriteId = spriteId;
+        }
+
+        @Override
+        public void paintIcon(final Component c, final Graphics g, final int x, final int y)
+        {
+            final Integer cell = cells.get(spriteId);
+            if (cell == null)
+            {
+                return;
+            }
+
+            final int sourceX = cellX(cell);
+            final int sourceY = cellY(cell);
+            g.drawImage(pages.get(cell / CELLS_PER_PAGE), x, y, x + cellSize, y + cellSize,
+                sourceX, sourceY, sourceX + cellSize, sourceY + cellSize, null);
+        }
+
+        @Override
+        public int getIconWidth()
+        {
+            return cellSize;
+        }
+
+        @Override
+        public int getIconHeight()
+        {
+            return cellSize;
+        }
+    }
+}
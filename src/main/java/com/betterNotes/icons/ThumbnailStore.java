@@ -0,0 +1,277 @@
+package com.betterNotes.icons;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scaled note and section icons kept on disk between sessions, so the sidebar shows them as soon as it opens, before
+ * the sprites are loaded and even before login, when item images cannot be made at all.
+ * <p>
+ * The file is one packed block of ints: a header, then per icon its kind, id, width, height and ARGB pixels. It is
+ * read in one go and copied into images in one pass on startup, and rewritten on shutdown with only the icons still in
+ * use. A file that does not read back cleanly is ignored and replaced.
+ */
+@Slf4j
+public class ThumbnailStore
+{
+    // "BNT1"
+    private static final int MAGIC = 0x424E5431;
+    private static final int HEADER_INTS = 2;
+    private static final int RECORD_HEADER_INTS = 4;
+
+    private static final int KIND_SPRITE = 0;
+    private static final int KIND_ITEM = 1;
+
+    // Icons are 32x32 sprites or 36x32 items; anything bigger is not a thumbnail
+    private static final int MAX_SIDE = 64;
+    private static final int MAX_THUMBNAILS = 1024;
+
+    private static final class Thumbnail
+    {
+        final int kind;
+        final int id;
+        final int width;
+        final int height;
+        final int[] pixels;
+
+        Thumbnail(final int kind, final int id, final int width, final int height, final int[] pixels)
+        {
+            this.kind = kind;
+            this.id = id;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        String key()
+        {
+            return kind == KIND_SPRITE ? IconCache.spriteKey(id) : IconCache.itemKey(id);
+        }
+
+        BufferedImage toImage()
+        {
+            final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            // Straight into the raster: setRGB converts every pixel through the color model
+            final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(pixels, 0, data, 0, pixels.length);
+            return image;
+        }
+    }
+
+    private final File file;
+
+    // By icon key, guarded by itself
+    private final Map<String, Thumbnail> thumbnails = new LinkedHashMap<>();
+    private boolean dirty;
+
+    public ThumbnailStore(final File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Reads the stored icons into the cache.
+     *
+     * @return how many were read
+     */
+    public int load(final IconCache cache)
+    {
+        if (!file.isFile())
+        {
+            return 0;
+        }
+
+        final long start = System.nanoTime();
+        final List<Thumbnail> read;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            // Read rather than mapped: a mapping stays open until collected and keeps the file from being replaced on
+            // Windows, so the save on shutdown would fail
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("Thumbnail file too large: " + size + " bytes");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    throw new IOException("Thumbnail file shrank while reading");
+                }
+            }
+            buffer.flip();
+            read = decode(buffer.asIntBuffer());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.warn("Ignoring unreadable icon thumbnails in {}", file, e);
+            return 0;
+        }
+
+        synchronized (thumbnails)
+        {
+            for (final Thumbnail thumbnail : read)
+            {
+                thumbnails.put(thumbnail.key(), thumbnail);
+                cache.put(thumbnail.key(), thumbnail.toImage());
+            }
+        }
+        log.debug("Read {} icon thumbnails in {}ms", read.size(), (System.nanoTime() - start) / 1_000_000);
+        return read.size();
+    }
+
+    public void putSprite(final int spriteId, final BufferedImage image)
+    {
+        put(KIND_SPRITE, spriteId, image);
+    }
+
+    public void putItem(final int itemId, final BufferedImage image)
+    {
+        put(KIND_ITEM, itemId, image);
+    }
+
+    /**
+     * Writes the icons that are still in use, if anything changed since they were read.
+     *
+     * @param inUse keys of the icons notes and sections show, as made by {@link IconCache}, or null to keep them all,
+     *              e.g. when the notes were never loaded
+     */
+    public void save(final Set<String> inUse)
+    {
+        final List<Thumbnail> kept = new ArrayList<>();
+        synchronized (thumbnails)
+        {
+            final boolean pruned = inUse != null && thumbnails.keySet().retainAll(inUse);
+            if (!dirty && !pruned)
+            {
+                return;
+            }
+            for (final Thumbnail thumbnail : thumbnails.values())
+            {
+                if (kept.size() == MAX_THUMBNAILS)
+                {
+                    break;
+                }
+                kept.add(thumbnail);
+            }
+            dirty = false;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(encodedSize(kept) * Integer.BYTES);
+        final IntBuffer ints = buffer.asIntBuffer();
+        ints.put(MAGIC).put(kept.size());
+        for (final Thumbnail thumbnail : kept)
+        {
+            ints.put(thumbnail.kind).put(thumbnail.id).put(thumbnail.width).put(thumbnail.height).put(thumbnail.pixels);
+        }
+
+        // Written next to the file and moved over it, so a crash never leaves half a file
+        final Path target = file.toPath();
+        final Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try
+        {
+            Files.createDirectories(target.getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+
+            try
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.debug("Wrote {} icon thumbnails to {}", kept.size(), file);
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to write icon thumbnails to {}", file, e);
+        }
+    }
+
+    private void put(final int kind, final int id, final BufferedImage image)
+    {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (width > MAX_SIDE || height > MAX_SIDE)
+        {
+            return;
+        }
+
+        final Thumbnail thumbnail = new Thumbnail(kind, id, width, height,
+            image.getRGB(0, 0, width, height, null, 0, width));
+        synchronized (thumbnails)
+        {
+            thumbnails.put(thumbnail.key(), thumbnail);
+            dirty = true;
+        }
+    }
+
+    private static List<Thumbnail> decode(final IntBuffer ints)
+    {
+        if (ints.remaining() < HEADER_INTS || ints.get() != MAGIC)
+        {
+            throw new IllegalStateException("Not a thumbnail file");
+        }
+
+        final int count = ints.get();
+        if (count < 0 || count > MAX_THUMBNAILS)
+        {
+            throw new IllegalStateException("Bad thumbnail count " + count);
+        }
+
+        final List<Thumbnail> thumbnails = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final int kind = ints.get();
+            final int id = ints.get();
+            final int width = ints.get();
+            final int height = ints.get();
+            if ((kind != KIND_SPRITE && kind != KIND_ITEM) || width <= 0 || height <= 0 || width > MAX_SIDE
+                || height > MAX_SIDE)
+            {
+                throw new IllegalStateException("Bad thumbnail record " + i);
+            }
+
+            final int[] pixels = new int[width * height];
+            ints.get(pixels);
+            thumbnails.add(new Thumbnail(kind, id, width, height, pixels));
+        }
+        return thumbnails;
+    }
+
+    private static int encodedSize(final List<Thumbnail> thumbnails)
+    {
+        int size = HEADER_INTS;
+        for (final Thumbnail thumbnail : thumbnails)
+        {
+            size += RECORD_HEADER_INTS + thumbnail.pixels.length;
+        }
+        return size;
+    }
+}
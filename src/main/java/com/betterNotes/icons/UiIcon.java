@@ -0,0 +1,89 @@
+package com.betterNotes.icons;
+
+import javax.swing.ImageIcon;
+
+/**
+ * The plugin's own button icons, each a resource image with an optional size, opacity, alpha or luminance change.
+ * Icons are made the first time they are asked for, see {@link UiIconRegistry}.
+ */
+public enum UiIcon
+{
+    ADD("/new.png"),
+    ADD_HOVER("/new.png", 0, 1f, -100, 0),
+    ADD_PRESSED("/new.png", 0, 1f, -50, 0),
+    ADD_NOTE("/new.png", 16, 0.5f),
+    ADD_NOTE_HOVER("/new.png", 16, 1f),
+
+    REORDER_MODE("/drag.png", 16, 0.5f),
+    REORDER_MODE_HOVER("/drag.png", 16, 1f),
+
+    MINIMIZE("/chevron_down.png"),
+    MINIMIZE_HOVER("/chevron_down.png", 0, 1f, 0, -150),
+    MAXIMIZE("/chevron_right.png"),
+    MAXIMIZE_HOVER("/chevron_right.png", 0, 1f, 0, -150),
+
+    MORE_OPTIONS("/more_options.png", 16, 0.5f),
+    MORE_OPTIONS_HOVER("/more_options.png", 16, 1f),
+    FULL_SCREEN("/expand.png", 16, 0.5f),
+    FULL_SCREEN_HOVER("/expand.png", 16, 1f),
+
+    COLOR_PICKER("/color_picker.png", 16, 1f),
+    TEXT_SIZE("/text_size.png", 18, 1f);
+
+    private final String resource;
+    // Width and height to scale to, or 0 to keep the image's own
+    private final int size;
+    private final float opacity;
+    private final int alphaOffset;
+    private final int luminanceOffset;
+
+    UiIcon(final String resource)
+    {
+        this(resource, 0, 1f);
+    }
+
+    UiIcon(final String resource, final int size, final float opacity)
+    {
+        this(resource, size, opacity, 0, 0);
+    }
+
+    UiIcon(final String resource, final int size, final float opacity, final int alphaOffset,
+        final int luminanceOffset)
+    {
+        this.resource = resource;
+        this.size = size;
+        this.opacity = opacity;
+        this.alphaOffset = alphaOffset;
+        this.luminanceOffset = luminanceOffset;
+    }
+
+    public ImageIcon get()
+    {
+        return UiIconRegistry.get(this);
+    }
+
+    String getResource()
+    {
+        return resource;
+    }
+
+    int getSize()
+    {
+        return size;
+    }
+
+    float getOpacity()
+    {
+        return opacity;
+    }
+
+    int getAlphaOffset()
+    {
+        return alphaOffset;
+    }
+
+    int getLuminanceOffset()
+    {
+        return luminanceOffset;
+    }
+}
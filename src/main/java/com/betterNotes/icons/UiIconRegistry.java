@@ -0,0 +1,96 @@
+package com.betterNotes.icons;
+
+import com.betterNotes.BetterNotesPlugin;
+import net.runelite.client.util.ImageUtil;
+
+import javax.swing.ImageIcon;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes and keeps the {@link UiIcon}s. Every resource image is read once however many icons are made from it, and every
+ * icon is made once however many panels show it, the first time one of them does rather than when a panel class is
+ * loaded. The time spent on both is kept so sidebar start-up can be measured.
+ */
+public final class UiIconRegistry
+{
+    // Guarded by the class
+    private static final Map<String, BufferedImage> resources = new HashMap<>();
+    private static final Map<UiIcon, ImageIcon> icons = new EnumMap<>(UiIcon.class);
+
+    private static long resourceNanos;
+    private static long iconNanos;
+
+    private UiIconRegistry()
+    {
+    }
+
+    static synchronized ImageIcon get(final UiIcon uiIcon)
+    {
+        final ImageIcon cached = icons.get(uiIcon);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        final BufferedImage resource = getResource(uiIcon.getResource());
+
+        final long start = System.nanoTime();
+        BufferedImage image = resource;
+        if (uiIcon.getSize() > 0)
+        {
+            image = ImageUtil.resizeImage(image, uiIcon.getSize(), uiIcon.getSize());
+        }
+        if (uiIcon.getOpacity() < 1f)
+        {
+            image = setImageOpacity(image, uiIcon.getOpacity());
+        }
+        if (uiIcon.getAlphaOffset() != 0)
+        {
+            image = ImageUtil.alphaOffset(image, uiIcon.getAlphaOffset());
+        }
+        if (uiIcon.getLuminanceOffset() != 0)
+        {
+            image = ImageUtil.luminanceOffset(image, uiIcon.getLuminanceOffset());
+        }
+
+        final ImageIcon icon = new ImageIcon(image);
+        icons.put(uiIcon, icon);
+        iconNanos += System.nanoTime() - start;
+        return icon;
+    }
+
+    public static synchronized String describe()
+    {
+        return String.format("%d resources read in %.1fms, %d icons made from them in %.1fms", resources.size(),
+            resourceNanos / 1_000_000.0, icons.size(), iconNanos / 1_000_000.0);
+    }
+
+    private static BufferedImage getResource(final String path)
+    {
+        BufferedImage resource = resources.get(path);
+        if (resource == null)
+        {
+            final long start = System.nanoTime();
+            resource = ImageUtil.loadImageResource(BetterNotesPlugin.class, path);
+            resources.put(path, resource);
+            resourceNanos += System.nanoTime() - start;
+        }
+        return resource;
+    }
+
+    private static BufferedImage setImageOpacity(final BufferedImage image, final float opacity)
+    {
+        final BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(),
+            BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g2d = newImage.createGraphics();
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return newImage;
+    }
+}
@@ -0,0 +1,96 @@
+package com.betterNotes.search;
+
+/**
+ * Extracts the searchable text from a note body, which is the HTML produced by the content editor.
+ */
+public final class HtmlText
+{
+    private HtmlText()
+    {
+    }
+
+    /**
+     * Drops tags (block and line breaks become spaces) and decodes the common entities. Not a full HTML parser, the
+     * editor only ever produces simple markup.
+     */
+    public static String toPlainText(final String html)
+    {
+        if (html == null || html.isEmpty())
+        {
+            return "";
+        }
+
+        final StringBuilder text = new StringBuilder(html.length());
+        int i = 0;
+        while (i < html.length())
+        {
+            final char c = html.charAt(i);
+            if (c == '<')
+            {
+                final int end = html.indexOf('>', i);
+                if (end < 0)
+                {
+                    break;
+                }
+                text.append(' ');
+                i = end + 1;
+            }
+            else if (c == '&')
+            {
+                final int end = html.indexOf(';', i);
+                if (end < 0 || end - i > 10)
+                {
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+                text.append(decodeEntity(html.substring(i + 1, end)));
+                i = end + 1;
+            }
+            else
+            {
+                text.append(c);
+                i++;
+            }
+        }
+        return text.toString();
+    }
+
+    private static String decodeEntity(final String entity)
+    {
+        switch (entity)
+        {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return " ";
+            default:
+                break;
+        }
+
+        try
+        {
+            if (entity.startsWith("#x") || entity.startsWith("#X"))
+            {
+                return new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+            }
+            if (entity.startsWith("#"))
+            {
+                return new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Not a valid character reference, fall through
+        }
+        return " ";
+    }
+}
@@ -0,0 +1,800 @@
+package com.betterNotes.search;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.storage.NotesSnapshot;
+import com.betterNotes.storage.SectionShard;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * In-memory inverted index over note names, note bodies (as plain text) and section names.
+ * <p>
+ * Documents are updated one at a time as notes change, never rebuilt wholesale. Terms live in a sorted dictionary so a
+ * prefix query is a range scan, and a term no document uses any more is dropped from it. Each document also keeps its
+ * term sequence for verifying phrase queries, but not the body itself: the content version of the body it indexed is
+ * enough to tell whether it changed. Queries score into arrays indexed by a dense document number, so they allocate
+ * almost nothing. All methods are synchronized; the plugin feeds and queries the index on the search thread.
+ */
+@Slf4j
+public class NotesSearchIndex
+{
+    private static final float NAME_WEIGHT = 3f;
+    private static final float SECTION_WEIGHT = 2f;
+    private static final float CONTENT_WEIGHT = 1f;
+
+    // Prefix matches rank below whole-term matches, phrases above loose terms
+    private static final float PREFIX_FACTOR = 0.6f;
+    private static final float PHRASE_BONUS = 1.5f;
+
+    // A single letter would expand to a large part of the dictionary, so it only matches whole words
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    // Bounds the work for short prefixes
+    private static final int MAX_PREFIX_TERMS = 256;
+
+    private static final int[] NO_TERMS = new int[0];
+
+    private static final class Doc
+    {
+        final String id;
+        final boolean isSection;
+        int slot;
+
+        String name;
+        int[] nameTerms = NO_TERMS;
+        int[] contentTerms = NO_TERMS;
+
+        // Content version of the body last tokenized, 0 if none was, so unchanged bodies are skipped
+        long indexedVersion;
+
+        // Notes: the section doc they belong to, null for unassigned notes. Sections: their notes.
+        Doc owner;
+        final Set<Doc> members = new HashSet<>();
+
+        long generation;
+
+        Doc(final String id, final boolean isSection)
+        {
+            this.id = id;
+            this.isSection = isSection;
+        }
+    }
+
+    private static final class Clause
+    {
+        final String[] words;
+        final boolean isPhrase;
+
+        Clause(final String[] words, final boolean isPhrase)
+        {
+            this.words = words;
+            this.isPhrase = isPhrase;
+        }
+    }
+
+    // Term dictionary: term -> document -> weighted term frequency
+    private final TreeMap<String, Map<Doc, Float>> postings = new TreeMap<>();
+
+    // Documents store term ids rather than strings, so repeated words cost four bytes each. Ids of terms no document
+    // uses any more, e.g. partial words saved while typing, are freed and reused
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private final Deque<Integer> freeTermIds = new ArrayDeque<>();
+
+    // Terms whose postings emptied during the current update, freed once the update is done
+    private final List<Integer> emptiedTerms = new ArrayList<>();
+
+    private final Map<String, Doc> notes = new HashMap<>();
+    private final Map<String, Doc> sections = new HashMap<>();
+    private long generation;
+
+    // Dense document numbering, freed numbers are reused
+    private Doc[] slots = new Doc[64];
+    private int slotCount;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    // Query scratch space indexed by slot; every entry is back to zero between queries
+    private float[] termScores = new float[64];
+    private float[] clauseScores = new float[64];
+    private float[] totalScores = new float[64];
+    private int[] touched = new int[64];
+    private int[] clauseNotes = new int[64];
+    private int[] candidates = new int[64];
+
+    /**
+     * Brings the index in line with the model: adds and removes notes and sections, and re-indexes the ones whose name
+     * or body changed. Bodies that are not in memory keep their indexed terms unless a loader is given.
+     *
+     * @param notesOf each section's notes, e.g. from a cache snapshot
+     * @param contentLoader reads bodies that are not in memory and were never indexed; may be null
+     */
+    public synchronized void reconcile(final List<BetterNotesSection> sectionList, final BetterNotesSection unassigned,
+                                       final Function<BetterNotesSection, List<BetterNotesNote>> notesOf,
+                                       final Function<BetterNotesNote, String> contentLoader)
+    {
+        final long start = System.nanoTime();
+        generation++;
+
+        for (final BetterNotesSection section : sectionList)
+        {
+            final Doc sectionDoc = reconcileSection(section.getId(), section.getName());
+            for (final BetterNotesNote note : notesOf.apply(section))
+            {
+                reconcileNote(note, sectionDoc, contentLoader);
+            }
+        }
+
+        if (unassigned != null)
+        {
+            for (final BetterNotesNote note : notesOf.apply(unassigned))
+            {
+                reconcileNote(note, null, contentLoader);
+            }
+        }
+
+        finishReconcile(start);
+    }
+
+    /**
+     * Same as {@link #reconcile(List, BetterNotesSection, Function, Function)}, from a snapshot taken for a save.
+     */
+    public synchronized void reconcile(final NotesSnapshot snapshot, final Function<BetterNotesNote, String> contentLoader)
+    {
+        final long start = System.nanoTime();
+        generation++;
+
+        final Map<String, BetterNotesNote> notesById = new HashMap<>();
+        for (final BetterNotesNote note : snapshot.getNotes())
+        {
+            notesById.put(note.getId(), note);
+        }
+
+        for (final SectionShard section : snapshot.getSections())
+        {
+            final Doc sectionDoc = reconcileSection(section.getId(), section.getName());
+            reconcileNotes(section.getNoteIds(), notesById, sectionDoc, contentLoader);
+        }
+        reconcileNotes(snapshot.getUnassignedSection().getNoteIds(), notesById, null, contentLoader);
+
+        finishReconcile(start);
+    }
+
+    /**
+     * Re-indexes a single note after its name or body was edited.
+     */
+    public synchronized void updateNote(final BetterNotesNote note)
+    {
+        final Doc doc = notes.get(note.getId());
+        if (doc != null)
+        {
+            reindex(doc, note.getName(), changedContent(note, doc), note.getContentVersion());
+        }
+    }
+
+    /**
+     * True if the note is indexed without its body, e.g. because the body was not in memory at startup.
+     */
+    public synchronized boolean needsContent(final String noteId)
+    {
+        final Doc doc = notes.get(noteId);
+        return doc != null && doc.indexedVersion == 0;
+    }
+
+    /**
+     * Indexes a body read from storage, unless the note is gone or its body was indexed in the meantime.
+     */
+    public synchronized void indexContent(final BetterNotesNote note, final String content)
+    {
+        final Doc doc = notes.get(note.getId());
+        if (doc != null && doc.indexedVersion == 0 && content != null)
+        {
+            reindex(doc, doc.name, content, note.getContentVersion());
+        }
+    }
+
+    /**
+     * Notes matching every word of the query, best first. Words match as prefixes, quoted words as a phrase.
+     */
+    public synchronized List<SearchHit> search(final String query, final int limit)
+    {
+        final List<Clause> clauses = parse(query);
+        if (clauses.isEmpty() || limit <= 0)
+        {
+            return Collections.emptyList();
+        }
+
+        int candidateCount = -1;
+        for (final Clause clause : clauses)
+        {
+            final int matched = scoreClause(clause);
+            if (candidateCount < 0)
+            {
+                System.arraycopy(clauseNotes, 0, candidates, 0, matched);
+                for (int i = 0; i < matched; i++)
+                {
+                    totalScores[candidates[i]] = clauseScores[candidates[i]];
+                }
+                candidateCount = matched;
+            }
+            else
+            {
+                // Every clause has to match
+                int kept = 0;
+                for (int i = 0; i < candidateCount; i++)
+                {
+                    final int slot = candidates[i];
+                    final float score = clauseScores[slot];
+                    if (score > 0)
+                    {
+                        totalScores[slot] += score;
+                        candidates[kept++] = slot;
+                    }
+                    else
+                    {
+                        totalScores[slot] = 0;
+                    }
+                }
+                candidateCount = kept;
+            }
+
+            for (int i = 0; i < matched; i++)
+            {
+                clauseScores[clauseNotes[i]] = 0;
+            }
+            if (candidateCount == 0)
+            {
+                return Collections.emptyList();
+            }
+        }
+
+        // Top k with a min-heap over the candidate slots, then reset the totals
+        final int size = Math.min(limit, candidateCount);
+        final int[] heap = new int[size];
+        int heapSize = 0;
+        for (int i = 0; i < candidateCount; i++)
+        {
+            final int slot = candidates[i];
+            if (heapSize < size)
+            {
+                heap[heapSize++] = slot;
+                siftUp(heap, heapSize - 1);
+            }
+            else if (totalScores[slot] > totalScores[heap[0]])
+            {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        final SearchHit[] hits = new SearchHit[heapSize];
+        while (heapSize > 0)
+        {
+            final int slot = heap[0];
+            hits[--heapSize] = new SearchHit(slots[slot].id, totalScores[slot]);
+            heap[0] = heap[heapSize];
+            siftDown(heap, heapSize);
+        }
+        for (int i = 0; i < candidateCount; i++)
+        {
+            totalScores[candidates[i]] = 0;
+        }
+        return Arrays.asList(hits);
+    }
+
+    public synchronized int getNoteCount()
+    {
+        return notes.size();
+    }
+
+    public synchronized int getTermCount()
+    {
+        return termIds.size();
+    }
+
+    public synchronized void clear()
+    {
+        postings.clear();
+        termIds.clear();
+        terms.clear();
+        freeTermIds.clear();
+        notes.clear();
+        sections.clear();
+        Arrays.fill(slots, 0, slotCount, null);
+        slotCount = 0;
+        freeSlots.clear();
+    }
+
+    private Doc newDoc(final String id, final boolean isSection)
+    {
+        final Doc doc = new Doc(id, isSection);
+        if (!freeSlots.isEmpty())
+        {
+            doc.slot = freeSlots.pop();
+        }
+        else
+        {
+            if (slotCount == slots.length)
+            {
+                final int capacity = slots.length * 2;
+                slots = Arrays.copyOf(slots, capacity);
+                termScores = Arrays.copyOf(termScores, capacity);
+                clauseScores = Arrays.copyOf(clauseScores, capacity);
+                totalScores = Arrays.copyOf(totalScores, capacity);
+                touched = Arrays.copyOf(touched, capacity);
+                clauseNotes = Arrays.copyOf(clauseNotes, capacity);
+                candidates = Arrays.copyOf(candidates, capacity);
+            }
+            doc.slot = slotCount++;
+        }
+        slots[doc.slot] = doc;
+        return doc;
+    }
+
+    private Doc reconcileSection(final String id, final String name)
+    {
+        final Doc sectionDoc = sections.computeIfAbsent(id, key -> newDoc(key, true));
+        sectionDoc.generation = generation;
+        if (!name.equals(sectionDoc.name))
+        {
+            reindex(sectionDoc, name, null, 0);
+        }
+        return sectionDoc;
+    }
+
+    private void reconcileNotes(final List<String> noteIds, final Map<String, BetterNotesNote> notesById,
+                                final Doc sectionDoc, final Function<BetterNotesNote, String> contentLoader)
+    {
+        if (noteIds == null)
+        {
+            return;
+        }
+        for (final String noteId : noteIds)
+        {
+            final BetterNotesNote note = notesById.get(noteId);
+            if (note != null)
+            {
+                reconcileNote(note, sectionDoc, contentLoader);
+            }
+        }
+    }
+
+    private void finishReconcile(final long start)
+    {
+        removeStale(notes);
+        removeStale(sections);
+        releaseEmptiedTerms();
+
+        log.debug("Search index reconciled in {}ms: {} notes, {} sections, {} terms",
+            (System.nanoTime() - start) / 1_000_000.0, notes.size(), sections.size(), termIds.size());
+    }
+
+    private void reconcileNote(final BetterNotesNote note, final Doc sectionDoc, final Function<BetterNotesNote, String> contentLoader)
+    {
+        Doc doc = notes.get(note.getId());
+        final boolean isNew = doc == null;
+        if (isNew)
+        {
+            doc = newDoc(note.getId(), false);
+            notes.put(note.getId(), doc);
+        }
+        doc.generation = generation;
+
+        if (doc.owner != sectionDoc)
+        {
+            if (doc.owner != null)
+            {
+                doc.owner.members.remove(doc);
+            }
+            if (sectionDoc != null)
+            {
+                sectionDoc.members.add(doc);
+            }
+            doc.owner = sectionDoc;
+        }
+
+        String content = changedContent(note, doc);
+        if (content == null && contentLoader != null && doc.indexedVersion == 0 && !note.isContentLoaded())
+        {
+            content = contentLoader.apply(note);
+        }
+
+        reindex(doc, note.getName(), content, note.getContentVersion());
+    }
+
+    // Body of a note if it is in memory and not the version already indexed, inflating a compressed one
+    private static String changedContent(final BetterNotesNote note, final Doc doc)
+    {
+        if (!note.isContentLoaded() || note.getContentVersion() == doc.indexedVersion)
+        {
+            return null;
+        }
+        return note.getContent() == null ? "" : note.getContent();
+    }
+
+    /**
+     * @param content the new body, or null to keep the indexed one
+     * @param version content version of the new body
+     */
+    private void reindex(final Doc doc, final String name, final String content, final long version)
+    {
+        if (name.equals(doc.name) && content == null)
+        {
+            return;
+        }
+
+        unindex(doc);
+        // Ids of the old terms are still taken here, so unchanged words and kept body terms keep theirs
+        doc.name = name;
+        doc.nameTerms = termIds(name);
+        if (content != null)
+        {
+            doc.contentTerms = termIds(HtmlText.toPlainText(content));
+            doc.indexedVersion = version;
+        }
+        index(doc);
+        releaseEmptiedTerms();
+    }
+
+    private void index(final Doc doc)
+    {
+        final Map<Integer, Float> frequencies = new HashMap<>();
+        final float nameWeight = doc.isSection ? SECTION_WEIGHT : NAME_WEIGHT;
+        for (final int term : doc.nameTerms)
+        {
+            frequencies.merge(term, nameWeight, Float::sum);
+        }
+        for (final int term : doc.contentTerms)
+        {
+            frequencies.merge(term, CONTENT_WEIGHT, Float::sum);
+        }
+
+        for (final Map.Entry<Integer, Float> entry : frequencies.entrySet())
+        {
+            postings.computeIfAbsent(terms.get(entry.getKey()), term -> new HashMap<>()).put(doc, entry.getValue());
+        }
+    }
+
+    private void unindex(final Doc doc)
+    {
+        unindexTerms(doc, doc.nameTerms);
+        unindexTerms(doc, doc.contentTerms);
+    }
+
+    private void unindexTerms(final Doc doc, final int[] docTerms)
+    {
+        for (final int term : docTerms)
+        {
+            final String text = terms.get(term);
+            final Map<Doc, Float> docs = postings.get(text);
+            if (docs != null && docs.remove(doc) != null && docs.isEmpty())
+            {
+                postings.remove(text);
+                emptiedTerms.add(term);
+            }
+        }
+    }
+
+    // Frees the ids of terms that no document uses any more
+    private void releaseEmptiedTerms()
+    {
+        for (final int term : emptiedTerms)
+        {
+            final String text = terms.get(term);
+            if (text != null && !postings.containsKey(text))
+            {
+                termIds.remove(text);
+                terms.set(term, null);
+                freeTermIds.push(term);
+            }
+        }
+        emptiedTerms.clear();
+    }
+
+    private void removeStale(final Map<String, Doc> docs)
+    {
+        final Iterator<Doc> iterator = docs.values().iterator();
+        while (iterator.hasNext())
+        {
+            final Doc doc = iterator.next();
+            if (doc.generation != generation)
+            {
+                unindex(doc);
+                if (doc.owner != null)
+                {
+                    doc.owner.members.remove(doc);
+                }
+                slots[doc.slot] = null;
+                freeSlots.push(doc.slot);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Scores one clause into {@link #clauseScores}, section matches counting for every note in the section.
+     *
+     * @return the number of matching notes, whose slots are listed in {@link #clauseNotes}
+     */
+    private int scoreClause(final Clause clause)
+    {
+        final int touchedCount = clause.isPhrase ? matchPhrase(clause.words) : matchWord(clause.words[0]);
+
+        int matched = 0;
+        for (int i = 0; i < touchedCount; i++)
+        {
+            final int slot = touched[i];
+            final float score = termScores[slot];
+            termScores[slot] = 0;
+
+            final Doc doc = slots[slot];
+            if (doc.isSection)
+            {
+                for (final Doc member : doc.members)
+                {
+                    matched = addClauseScore(member.slot, score, matched);
+                }
+            }
+            else
+            {
+                matched = addClauseScore(slot, score, matched);
+            }
+        }
+        return matched;
+    }
+
+    private int addClauseScore(final int slot, final float score, int matched)
+    {
+        if (clauseScores[slot] == 0)
+        {
+            clauseNotes[matched++] = slot;
+        }
+        clauseScores[slot] += score;
+        return matched;
+    }
+
+    // Fills termScores for the documents containing the word or a word it prefixes, returns the touched count
+    private int matchWord(final String word)
+    {
+        int touchedCount = 0;
+        final Map<Doc, Float> exact = postings.get(word);
+        if (exact != null)
+        {
+            touchedCount = addScores(exact, 1f, touchedCount);
+        }
+        if (word.length() < MIN_PREFIX_LENGTH)
+        {
+            return touchedCount;
+        }
+
+        final NavigableMap<String, Map<Doc, Float>> prefixed = postings.subMap(word, false, word + Character.MAX_VALUE, false);
+        int expanded = 0;
+        for (final Map<Doc, Float> docs : prefixed.values())
+        {
+            if (++expanded > MAX_PREFIX_TERMS)
+            {
+                break;
+            }
+            touchedCount = addScores(docs, PREFIX_FACTOR, touchedCount);
+        }
+        return touchedCount;
+    }
+
+    private int matchPhrase(final String[] words)
+    {
+        final int[] phrase = new int[words.length];
+        final float[] idfs = new float[words.length];
+        @SuppressWarnings("unchecked")
+        final Map<Doc, Float>[] wordDocs = new Map[words.length];
+        Map<Doc, Float> rarest = null;
+        for (int i = 0; i < words.length; i++)
+        {
+            final Integer id = termIds.get(words[i]);
+            final Map<Doc, Float> docs = id == null ? null : postings.get(words[i]);
+            if (docs == null)
+            {
+                return 0;
+            }
+            phrase[i] = id;
+            idfs[i] = idf(docs.size());
+            wordDocs[i] = docs;
+            if (rarest == null || docs.size() < rarest.size())
+            {
+                rarest = docs;
+            }
+        }
+
+        int touchedCount = 0;
+        for (final Doc doc : rarest.keySet())
+        {
+            if (!containsSequence(doc.nameTerms, phrase) && !containsSequence(doc.contentTerms, phrase))
+            {
+                continue;
+            }
+
+            float score = 0;
+            for (int i = 0; i < words.length; i++)
+            {
+                score += (float) Math.sqrt(wordDocs[i].get(doc)) * idfs[i];
+            }
+            touched[touchedCount++] = doc.slot;
+            termScores[doc.slot] = score * PHRASE_BONUS;
+        }
+        return touchedCount;
+    }
+
+    private int addScores(final Map<Doc, Float> docs, final float factor, int touchedCount)
+    {
+        final float weight = idf(docs.size()) * factor;
+        for (final Map.Entry<Doc, Float> entry : docs.entrySet())
+        {
+            final int slot = entry.getKey().slot;
+            final float score = (float) Math.sqrt(entry.getValue()) * weight;
+            final float current = termScores[slot];
+            if (current == 0)
+            {
+                touched[touchedCount++] = slot;
+            }
+            // Best expansion per document, so "dragon" does not outrank itself through "dragons" and "dragonfire"
+            if (score > current)
+            {
+                termScores[slot] = score;
+            }
+        }
+        return touchedCount;
+    }
+
+    private float idf(final int documentFrequency)
+    {
+        return (float) Math.log(1 + (double) (notes.size() + sections.size()) / documentFrequency);
+    }
+
+    private void siftUp(final int[] heap, int index)
+    {
+        while (index > 0)
+        {
+            final int parent = (index - 1) / 2;
+            if (totalScores[heap[index]] >= totalScores[heap[parent]])
+            {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(final int[] heap, final int size)
+    {
+        int index = 0;
+        while (true)
+        {
+            final int left = index * 2 + 1;
+            if (left >= size)
+            {
+                return;
+            }
+            final int right = left + 1;
+            final int smallest = right < size && totalScores[heap[right]] < totalScores[heap[left]] ? right : left;
+            if (totalScores[heap[index]] <= totalScores[heap[smallest]])
+            {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(final int[] heap, final int a, final int b)
+    {
+        final int swap = heap[a];
+        heap[a] = heap[b];
+        heap[b] = swap;
+    }
+
+    private static boolean containsSequence(final int[] docTerms, final int[] phrase)
+    {
+        outer:
+        for (int i = 0; i + phrase.length <= docTerms.length; i++)
+        {
+            for (int j = 0; j < phrase.length; j++)
+            {
+                if (docTerms[i + j] != phrase[j])
+                {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int[] termIds(final String text)
+    {
+        final List<String> words = tokenize(text);
+        final int[] ids = new int[words.size()];
+        for (int i = 0; i < ids.length; i++)
+        {
+            final String word = words.get(i);
+            Integer id = termIds.get(word);
+            if (id == null)
+            {
+                if (freeTermIds.isEmpty())
+                {
+                    id = terms.size();
+                    terms.add(word);
+                }
+                else
+                {
+                    id = freeTermIds.pop();
+                    terms.set(id, word);
+                }
+                termIds.put(word, id);
+            }
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private static List<Clause> parse(final String query)
+    {
+        final List<Clause> clauses = new ArrayList<>();
+        if (query == null)
+        {
+            return clauses;
+        }
+
+        boolean inQuotes = false;
+        for (final String part : query.split("\"", -1))
+        {
+            final List<String> words = tokenize(part);
+            if (inQuotes && words.size() > 1)
+            {
+                clauses.add(new Clause(words.toArray(new String[0]), true));
+            }
+            else
+            {
+                for (final String word : words)
+                {
+                    clauses.add(new Clause(new String[]{word}, false));
+                }
+            }
+            inQuotes = !inQuotes;
+        }
+        return clauses;
+    }
+
+    static List<String> tokenize(final String text)
+    {
+        final List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++)
+        {
+            final boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordChar && start < 0)
+            {
+                start = i;
+            }
+            else if (!isWordChar && start >= 0)
+            {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
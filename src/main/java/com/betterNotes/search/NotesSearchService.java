@@ -0,0 +1,261 @@
+package com.betterNotes.search;
+
+import com.betterNotes.BetterNotesCache;
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.storage.NotesSnapshot;
+import com.betterNotes.utility.LatencyStats;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.swing.SwingUtilities;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs search-as-you-type queries off the EDT. Each query supersedes the previous one: a query still queued is
+ * dropped, one still running stops at its next batch, and batches of a stale query are never delivered.
+ * <p>
+ * Hits are found in one pass over the index, which is fast; building snippets needs the note bodies, so results are
+ * delivered in ranked batches and the best ones show up first.
+ * <p>
+ * The indexes are maintained on the same thread, from the snapshots the saves capture, so neither the EDT nor the
+ * client thread tokenizes bodies, and a query never waits on a lock held by an update.
+ */
+@Slf4j
+public class NotesSearchService
+{
+    public interface ResultListener
+    {
+        /**
+         * Called on the EDT, batches in rank order. The first batch of a query is always delivered, even when empty.
+         */
+        void onResults(List<SearchHit> hits, boolean first, boolean last);
+    }
+
+    private static final int BATCH_SIZE = 8;
+
+    // Stored bodies read and indexed per task of the initial build, so queued searches run in between
+    private static final int CONTENT_BATCH_SIZE = 32;
+
+    private final NotesSearchIndex index;
+    private final TitleTrigramIndex titleIndex;
+    private final BetterNotesCache cache;
+    private final Function<BetterNotesNote, String> contentReader;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "better-notes-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong latestQuery = new AtomicLong();
+    private Future<?> running;
+
+    // Bumped by each rebuild, so the stored body batches of an older one stop
+    private final AtomicLong latestBuild = new AtomicLong();
+
+    // Keystroke to the first batch on screen, and to the last one
+    @Getter
+    private final LatencyStats firstResultsLatency = new LatencyStats();
+
+    @Getter
+    private final LatencyStats allResultsLatency = new LatencyStats();
+
+    /**
+     * @param contentReader reads a note body without keeping it in memory
+     */
+    public NotesSearchService(final NotesSearchIndex index, final TitleTrigramIndex titleIndex, final BetterNotesCache cache,
+                              final Function<BetterNotesNote, String> contentReader)
+    {
+        this.index = index;
+        this.titleIndex = titleIndex;
+        this.cache = cache;
+        this.contentReader = contentReader;
+    }
+
+    /**
+     * Starts a query, cancelling the previous one. Call from the EDT.
+     *
+     * @param startNanos when the user asked for it, e.g. the keystroke, for the latency metrics
+     */
+    public void search(final String query, final int limit, final long startNanos, final ResultListener listener)
+    {
+        final long queryId = cancel();
+        try
+        {
+            running = executor.submit(() -> run(queryId, query, limit, startNanos, listener));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Service already shut down, e.g. a late keystroke during plugin shutdown
+            log.debug("Dropped a search after the search thread was shut down");
+        }
+    }
+
+    /**
+     * Drops the current query, if any. Call from the EDT.
+     *
+     * @return the id the next query will run under
+     */
+    public long cancel()
+    {
+        if (running != null)
+        {
+            running.cancel(false);
+            running = null;
+        }
+        return latestQuery.incrementAndGet();
+    }
+
+    /**
+     * Rebuilds both indexes after a load. Names and the bodies in memory are indexed in one task, stored bodies
+     * follow in batches, so searches meanwhile match names and whatever bodies are done.
+     */
+    public void rebuild(final NotesSnapshot snapshot)
+    {
+        final long build = latestBuild.incrementAndGet();
+        post(() -> {
+            index.clear();
+            titleIndex.clear();
+            index.reconcile(snapshot, null);
+            titleIndex.reconcile(snapshot);
+            indexStoredContent(build, snapshot.getNotes(), 0, System.nanoTime());
+        });
+    }
+
+    /**
+     * Brings both indexes in line with a snapshot taken for a save.
+     */
+    public void reconcile(final NotesSnapshot snapshot)
+    {
+        post(() -> {
+            index.reconcile(snapshot, null);
+            titleIndex.reconcile(snapshot);
+        });
+    }
+
+    /**
+     * Re-indexes a note after an edit.
+     *
+     * @param note a copy taken for the save, which the EDT no longer changes
+     */
+    public void updateNote(final BetterNotesNote note)
+    {
+        post(() -> index.updateNote(note));
+    }
+
+    public void shutDown()
+    {
+        latestQuery.incrementAndGet();
+        latestBuild.incrementAndGet();
+        executor.shutdownNow();
+        log.debug("Search stopped, first results: {}, all results: {}", firstResultsLatency, allResultsLatency);
+    }
+
+    private void post(final Runnable task)
+    {
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.debug("Dropped an index update after the search thread was shut down");
+        }
+    }
+
+    // Runs on the search thread only
+    private void indexStoredContent(final long build, final List<BetterNotesNote> notes, final int from, final long start)
+    {
+        if (latestBuild.get() != build)
+        {
+            return;
+        }
+
+        final int to = Math.min(notes.size(), from + CONTENT_BATCH_SIZE);
+        for (int i = from; i < to; i++)
+        {
+            final BetterNotesNote note = notes.get(i);
+            if (index.needsContent(note.getId()))
+            {
+                index.indexContent(note, contentReader.apply(note));
+            }
+        }
+
+        if (to < notes.size())
+        {
+            post(() -> indexStoredContent(build, notes, to, start));
+        }
+        else
+        {
+            log.debug("Search index built in {}ms: {} notes, {} terms", (System.nanoTime() - start) / 1_000_000.0,
+                index.getNoteCount(), index.getTermCount());
+        }
+    }
+
+    // Runs on the search thread only
+    private void run(final long queryId, final String query, final int limit, final long startNanos,
+                     final ResultListener listener)
+    {
+        final List<SearchHit> hits = index.search(query, limit);
+        if (hits.isEmpty())
+        {
+            deliver(queryId, hits, true, true, startNanos, listener);
+            return;
+        }
+
+        for (int from = 0; from < hits.size(); from += BATCH_SIZE)
+        {
+            if (isStale(queryId))
+            {
+                return;
+            }
+
+            final List<SearchHit> batch = hits.subList(from, Math.min(hits.size(), from + BATCH_SIZE));
+            for (final SearchHit hit : batch)
+            {
+                final BetterNotesNote note = cache.getNote(hit.getNoteId());
+                if (note != null)
+                {
+                    hit.setSnippet(SearchSnippet.build(contentReader.apply(note), query));
+                }
+            }
+            deliver(queryId, batch, from == 0, from + BATCH_SIZE >= hits.size(), startNanos, listener);
+        }
+    }
+
+    private void deliver(final long queryId, final List<SearchHit> batch, final boolean first, final boolean last,
+                         final long startNanos, final ResultListener listener)
+    {
+        SwingUtilities.invokeLater(() -> {
+            // A newer query may have started while this batch was waiting for the EDT
+            if (isStale(queryId))
+            {
+                return;
+            }
+
+            listener.onResults(batch, first, last);
+
+            final long elapsed = System.nanoTime() - startNanos;
+            if (first)
+            {
+                firstResultsLatency.record(elapsed);
+            }
+            if (last)
+            {
+                allResultsLatency.record(elapsed);
+                log.debug("Search results, first: {}, all: {}", firstResultsLatency, allResultsLatency);
+            }
+        });
+    }
+
+    private boolean isStale(final long queryId)
+    {
+        return latestQuery.get() != queryId;
+    }
+}
@@ -0,0 +1,27 @@
+package com.betterNotes.search;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A note matching a search query. Notes are the only results; a matching section name ranks the notes inside it.
+ */
+public class SearchHit
+{
+    @Getter
+    private final String noteId;
+
+    @Getter
+    private final float score;
+
+    // HTML excerpt of the body around the match, filled in by NotesSearchService
+    @Getter
+    @Setter
+    private String snippet = "";
+
+    public SearchHit(final String noteId, final float score)
+    {
+        this.noteId = noteId;
+        this.score = score;
+    }
+}
@@ -0,0 +1,150 @@
+package com.betterNotes.search;
+
+import java.util.List;
+
+/**
+ * Short excerpt of a note body around the first query match, as HTML with the matching words in bold.
+ */
+public final class SearchSnippet
+{
+    // Characters of context before the match, and the snippet length
+    private static final int LEADING_CHARS = 30;
+    private static final int MAX_CHARS = 110;
+
+    private SearchSnippet()
+    {
+    }
+
+    /**
+     * @param body  the note body as stored, i.e. editor HTML
+     * @param query the search query, words are matched as prefixes like the index does
+     * @return an HTML fragment without the html tag, empty for empty bodies
+     */
+    public static String build(final String body, final String query)
+    {
+        final String text = collapseWhitespace(HtmlText.toPlainText(body));
+        if (text.isEmpty())
+        {
+            return "";
+        }
+
+        final List<String> words = NotesSearchIndex.tokenize(query == null ? "" : query);
+
+        // Earliest match of any word, or the start of the body when only the name or section matched
+        int match = -1;
+        for (int i = 0; i < text.length() && match < 0; i++)
+        {
+            if (matchLength(text, i, words) > 0)
+            {
+                match = i;
+            }
+        }
+
+        int start = match <= LEADING_CHARS ? 0 : match - LEADING_CHARS;
+        while (start > 0 && start < match && !Character.isWhitespace(text.charAt(start - 1)))
+        {
+            start++;
+        }
+        int end = Math.min(text.length(), start + MAX_CHARS);
+        while (end < text.length() && end > start + MAX_CHARS / 2 && !Character.isWhitespace(text.charAt(end)))
+        {
+            end--;
+        }
+
+        final StringBuilder html = new StringBuilder(end - start + 32);
+        if (start > 0)
+        {
+            html.append("...");
+        }
+        int i = start;
+        while (i < end)
+        {
+            final int length = matchLength(text, i, words);
+            if (length > 0)
+            {
+                html.append("<b>");
+                escape(html, text, i, Math.min(end, i + length));
+                html.append("</b>");
+                i += length;
+            }
+            else
+            {
+                escape(html, text, i, i + 1);
+                i++;
+            }
+        }
+        if (end < text.length())
+        {
+            html.append("...");
+        }
+        return html.toString();
+    }
+
+    // Length of the longest query word starting at a word boundary at this position, 0 if none does
+    private static int matchLength(final String text, final int position, final List<String> words)
+    {
+        if (position > 0 && Character.isLetterOrDigit(text.charAt(position - 1)))
+        {
+            return 0;
+        }
+
+        int longest = 0;
+        for (final String word : words)
+        {
+            if (word.length() > longest && text.regionMatches(true, position, word, 0, word.length()))
+            {
+                longest = word.length();
+            }
+        }
+        return longest;
+    }
+
+    private static String collapseWhitespace(final String text)
+    {
+        final StringBuilder collapsed = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c))
+            {
+                space = collapsed.length() > 0;
+            }
+            else
+            {
+                if (space)
+                {
+                    collapsed.append(' ');
+                    space = false;
+                }
+                collapsed.append(c);
+            }
+        }
+        return collapsed.toString();
+    }
+
+    private static void escape(final StringBuilder html, final String text, final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final char c = text.charAt(i);
+            switch (c)
+            {
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                case '&':
+                    html.append("&amp;");
+                    break;
+                case '"':
+                    html.append("&quot;");
+                    break;
+                default:
+                    html.append(c);
+            }
+        }
+    }
+}
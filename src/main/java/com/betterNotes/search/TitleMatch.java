@@ -0,0 +1,29 @@
+package com.betterNotes.search;
+
+import lombok.Getter;
+
+/**
+ * A note or section whose title matches a quick switcher query.
+ */
+public class TitleMatch
+{
+    @Getter
+    private final String id;
+
+    @Getter
+    private final boolean isSection;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final float score;
+
+    public TitleMatch(final String id, final boolean isSection, final String name, final float score)
+    {
+        this.id = id;
+        this.isSection = isSection;
+        this.name = name;
+        this.score = score;
+    }
+}
@@ -0,0 +1,324 @@
+package com.betterNotes.search;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.storage.NotesSnapshot;
+import com.betterNotes.storage.SectionShard;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Fuzzy index over note and section titles for the quick switcher. Titles are split into character trigrams, so a
+ * query still finds a title with a typo or a few missing letters. The initials of multi-word titles are indexed as an
+ * extra word, so an abbreviation such as "dhl" finds "Dragon hunter lance".
+ * <p>
+ * Titles are updated one at a time on rename and reconciled against the model on save, so a query never waits for a
+ * build. All methods are synchronized.
+ */
+@Slf4j
+public class TitleTrigramIndex
+{
+    // Share of trigrams (Dice coefficient) a title needs to be listed at all
+    private static final float MIN_SCORE = 0.3f;
+
+    private static final float PREFIX_BONUS = 0.5f;
+    private static final float SUBSTRING_BONUS = 0.25f;
+    private static final float INITIALS_BONUS = 0.4f;
+
+    private static final class Title
+    {
+        final String id;
+        final boolean isSection;
+
+        String name;
+        String normalized;
+        String initials;
+        long[] trigrams;
+        long generation;
+
+        // Query scratch: trigrams shared with the current query
+        int shared;
+
+        Title(final String id, final boolean isSection)
+        {
+            this.id = id;
+            this.isSection = isSection;
+        }
+    }
+
+    private final Map<Long, Set<Title>> postings = new HashMap<>();
+    private final Map<String, Title> titles = new HashMap<>();
+    private long generation;
+
+    /**
+     * Adds, renames and drops titles so the index matches the model.
+     */
+    public synchronized void reconcile(final List<BetterNotesSection> sections, final BetterNotesSection unassigned,
+                                       final Function<BetterNotesSection, List<BetterNotesNote>> notesOf)
+    {
+        final long start = System.nanoTime();
+        generation++;
+
+        for (final BetterNotesSection section : sections)
+        {
+            put(section.getId(), true, section.getName()).generation = generation;
+            for (final BetterNotesNote note : notesOf.apply(section))
+            {
+                put(note.getId(), false, note.getName()).generation = generation;
+            }
+        }
+        if (unassigned != null)
+        {
+            for (final BetterNotesNote note : notesOf.apply(unassigned))
+            {
+                put(note.getId(), false, note.getName()).generation = generation;
+            }
+        }
+
+        removeStale(start);
+    }
+
+    /**
+     * Same as {@link #reconcile(List, BetterNotesSection, Function)}, from a snapshot taken for a save.
+     */
+    public synchronized void reconcile(final NotesSnapshot snapshot)
+    {
+        final long start = System.nanoTime();
+        generation++;
+
+        for (final SectionShard section : snapshot.getSections())
+        {
+            put(section.getId(), true, section.getName()).generation = generation;
+        }
+        for (final BetterNotesNote note : snapshot.getNotes())
+        {
+            put(note.getId(), false, note.getName()).generation = generation;
+        }
+
+        removeStale(start);
+    }
+
+    private void removeStale(final long start)
+    {
+        final Iterator<Title> iterator = titles.values().iterator();
+        while (iterator.hasNext())
+        {
+            final Title title = iterator.next();
+            if (title.generation != generation)
+            {
+                unindex(title);
+                iterator.remove();
+            }
+        }
+
+        log.debug("Title index reconciled in {}ms: {} titles, {} trigrams", (System.nanoTime() - start) / 1_000_000.0,
+            titles.size(), postings.size());
+    }
+
+    /**
+     * Re-indexes one title after a rename.
+     */
+    public synchronized void rename(final String id, final String name)
+    {
+        final Title title = titles.get(id);
+        if (title != null)
+        {
+            put(id, title.isSection, name);
+        }
+    }
+
+    /**
+     * Titles closest to the query, best first.
+     */
+    public synchronized List<TitleMatch> search(final String query, final int limit)
+    {
+        final String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0)
+        {
+            return Collections.emptyList();
+        }
+
+        final long[] queryTrigrams = trigrams(normalized, null);
+        final List<Title> touched = new ArrayList<>();
+        for (final long trigram : queryTrigrams)
+        {
+            final Set<Title> matching = postings.get(trigram);
+            if (matching == null)
+            {
+                continue;
+            }
+            for (final Title title : matching)
+            {
+                if (title.shared++ == 0)
+                {
+                    touched.add(title);
+                }
+            }
+        }
+
+        final String compact = normalized.replace(" ", "");
+        final List<TitleMatch> matches = new ArrayList<>();
+        for (final Title title : touched)
+        {
+            float score = 2f * title.shared / (queryTrigrams.length + title.trigrams.length);
+            title.shared = 0;
+
+            if (title.normalized.startsWith(normalized))
+            {
+                score += PREFIX_BONUS;
+            }
+            else if (title.normalized.contains(normalized))
+            {
+                score += SUBSTRING_BONUS;
+            }
+            if (title.initials != null && compact.length() > 1 && title.initials.startsWith(compact))
+            {
+                score += INITIALS_BONUS;
+            }
+
+            if (score >= MIN_SCORE)
+            {
+                matches.add(new TitleMatch(title.id, title.isSection, title.name, score));
+            }
+        }
+
+        // Best score first, shorter titles first among equals
+        matches.sort((a, b) -> a.getScore() != b.getScore()
+            ? Float.compare(b.getScore(), a.getScore())
+            : Integer.compare(a.getName().length(), b.getName().length()));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    public synchronized int getTitleCount()
+    {
+        return titles.size();
+    }
+
+    public synchronized void clear()
+    {
+        postings.clear();
+        titles.clear();
+    }
+
+    private Title put(final String id, final boolean isSection, final String name)
+    {
+        final Title title = titles.computeIfAbsent(id, key -> new Title(key, isSection));
+        if (name.equals(title.name))
+        {
+            return title;
+        }
+
+        if (title.trigrams != null)
+        {
+            unindex(title);
+        }
+        title.name = name;
+        title.normalized = normalize(name);
+        title.initials = initials(title.normalized);
+        title.trigrams = trigrams(title.normalized, title.initials);
+        for (final long trigram : title.trigrams)
+        {
+            postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(title);
+        }
+        return title;
+    }
+
+    private void unindex(final Title title)
+    {
+        for (final long trigram : title.trigrams)
+        {
+            final Set<Title> matching = postings.get(trigram);
+            if (matching != null && matching.remove(title) && matching.isEmpty())
+            {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    // Lower case words separated by single spaces
+    static String normalize(final String text)
+    {
+        final StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c))
+            {
+                if (space && normalized.length() > 0)
+                {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            }
+            else
+            {
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static String initials(final String normalized)
+    {
+        final String[] words = normalized.split(" ");
+        if (words.length < 2)
+        {
+            return null;
+        }
+
+        final StringBuilder initials = new StringBuilder(words.length);
+        for (final String word : words)
+        {
+            initials.append(word.charAt(0));
+        }
+        return initials.toString();
+    }
+
+    // Distinct trigrams of every word, padded so word starts weigh more and one and two letter words still count
+    private static long[] trigrams(final String normalized, final String initials)
+    {
+        final Set<Long> trigrams = new HashSet<>();
+        for (final String word : normalized.split(" "))
+        {
+            addTrigrams(trigrams, word);
+        }
+        if (initials != null)
+        {
+            addTrigrams(trigrams, initials);
+        }
+
+        final long[] packed = new long[trigrams.size()];
+        int i = 0;
+        for (final long trigram : trigrams)
+        {
+            packed[i++] = trigram;
+        }
+        return packed;
+    }
+
+    private static void addTrigrams(final Set<Long> trigrams, final String word)
+    {
+        if (word.isEmpty())
+        {
+            return;
+        }
+
+        final String padded = "  " + word + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++)
+        {
+            trigrams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.betterNotes.storage;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads a record written by {@link BinaryOutput}. Throws {@link IllegalArgumentException} on malformed input.
+ */
+class BinaryInput
+{
+    private final byte[] data;
+    private int position;
+
+    @Getter
+    private final int version;
+
+    @Getter
+    private final int type;
+
+    private final String[] strings;
+
+    BinaryInput(final byte[] data)
+    {
+        this.data = data;
+        this.version = (int) readVarLong();
+        this.type = (int) readVarLong();
+
+        final int count = readLength();
+        strings = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            final int length = readLength();
+            strings[i] = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+    }
+
+    int readByte()
+    {
+        if (position >= data.length)
+        {
+            throw new IllegalArgumentException("Unexpected end of record");
+        }
+        return data[position++] & 0xFF;
+    }
+
+    boolean readBoolean()
+    {
+        return readByte() != 0;
+    }
+
+    long readVarLong()
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            final int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    int readVarInt()
+    {
+        final int value = (int) readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readLong()
+    {
+        long value = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    String readString()
+    {
+        final long index = readVarLong();
+        if (index == 0)
+        {
+            return null;
+        }
+        if (index > strings.length)
+        {
+            throw new IllegalArgumentException("String reference out of range: " + index);
+        }
+        return strings[(int) index - 1];
+    }
+
+    String readId()
+    {
+        final int encoding = readByte();
+        switch (encoding)
+        {
+            case BinaryOutput.ID_UUID:
+                return new UUID(readLong(), readLong()).toString();
+            case BinaryOutput.ID_STRING:
+                return readString();
+            default:
+                throw new IllegalArgumentException("Unknown id encoding: " + encoding);
+        }
+    }
+
+    int readLength()
+    {
+        final long length = readVarLong();
+        if (length < 0 || length > data.length - position)
+        {
+            throw new IllegalArgumentException("Length out of range: " + length);
+        }
+        return (int) length;
+    }
+}
@@ -0,0 +1,180 @@
+package com.betterNotes.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Growable byte buffer for the binary shard format. Strings are deduplicated into a table that is written in front of
+ * the record, and the buffers are reused between records, so an instance is not thread safe.
+ */
+class BinaryOutput
+{
+    // Id encodings
+    static final int ID_UUID = 0;
+    static final int ID_STRING = 1;
+
+    private byte[] body = new byte[256];
+    private int bodyLength;
+
+    private byte[] record = new byte[256];
+    private int recordLength;
+
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private byte[][] strings = new byte[16][];
+
+    void reset()
+    {
+        bodyLength = 0;
+        stringIndex.clear();
+    }
+
+    void writeByte(final int value)
+    {
+        ensureBody(1);
+        body[bodyLength++] = (byte) value;
+    }
+
+    void writeBoolean(final boolean value)
+    {
+        writeByte(value ? 1 : 0);
+    }
+
+    void writeVarLong(long value)
+    {
+        ensureBody(10);
+        bodyLength = putVarLong(body, bodyLength, value);
+    }
+
+    // Zigzag so the common -1 ("no icon") takes a single byte
+    void writeVarInt(final int value)
+    {
+        writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    void writeLong(final long value)
+    {
+        ensureBody(8);
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            body[bodyLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeString(final String value)
+    {
+        if (value == null)
+        {
+            writeVarLong(0);
+            return;
+        }
+
+        Integer index = stringIndex.get(value);
+        if (index == null)
+        {
+            index = stringIndex.size();
+            if (index == strings.length)
+            {
+                strings = Arrays.copyOf(strings, index * 2);
+            }
+            strings[index] = value.getBytes(StandardCharsets.UTF_8);
+            stringIndex.put(value, index);
+        }
+        // 0 is reserved for null
+        writeVarLong(index + 1);
+    }
+
+    /**
+     * Random UUIDs, i.e. every section and note id, are stored as two longs instead of 36 characters.
+     */
+    void writeId(final String id)
+    {
+        final UUID uuid = parseUuid(id);
+        if (uuid == null)
+        {
+            writeByte(ID_STRING);
+            writeString(id);
+        }
+        else
+        {
+            writeByte(ID_UUID);
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Assembles the record: format version, record type, string table and body.
+     *
+     * @return the record bytes, valid until the next call on this instance
+     */
+    byte[] finish(final int version, final int type)
+    {
+        recordLength = 0;
+        ensureRecord(20);
+        recordLength = putVarLong(record, recordLength, version);
+        recordLength = putVarLong(record, recordLength, type);
+        recordLength = putVarLong(record, recordLength, stringIndex.size());
+        for (int i = 0; i < stringIndex.size(); i++)
+        {
+            final byte[] bytes = strings[i];
+            ensureRecord(10 + bytes.length);
+            recordLength = putVarLong(record, recordLength, bytes.length);
+            System.arraycopy(bytes, 0, record, recordLength, bytes.length);
+            recordLength += bytes.length;
+        }
+
+        ensureRecord(bodyLength);
+        System.arraycopy(body, 0, record, recordLength, bodyLength);
+        recordLength += bodyLength;
+        return Arrays.copyOf(record, recordLength);
+    }
+
+    private static int putVarLong(final byte[] buffer, int position, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static UUID parseUuid(final String id)
+    {
+        if (id == null || id.length() != 36)
+        {
+            return null;
+        }
+
+        try
+        {
+            final UUID uuid = UUID.fromString(id);
+            // Only ids that round-trip exactly, e.g. not upper case
+            return uuid.toString().equals(id) ? uuid : null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private void ensureBody(final int extra)
+    {
+        if (bodyLength + extra > body.length)
+        {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, bodyLength + extra));
+        }
+    }
+
+    private void ensureRecord(final int extra)
+    {
+        if (recordLength + extra > record.length)
+        {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + extra));
+        }
+    }
+}
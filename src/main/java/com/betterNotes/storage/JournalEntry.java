@@ -0,0 +1,194 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A single model mutation in the note journal. Only the fields relevant to the operation are set,
+ * so an entry costs roughly the size of the change it describes.
+ */
+public class JournalEntry
+{
+    public enum Op
+    {
+        ADD_SECTION,
+        DELETE_SECTION,
+        RENAME_SECTION,
+        MOVE_SECTION,
+        SET_SECTION_ICON,
+        SET_SECTION_EXPANDED,
+        ADD_NOTE,
+        DELETE_NOTE,
+        RENAME_NOTE,
+        MOVE_NOTE,
+        SET_NOTE_ICON,
+        SET_NOTE_EXPANDED,
+        PATCH_NOTE_CONTENT
+    }
+
+    @Getter @Setter
+    private long seq;
+
+    @Getter
+    private Op op;
+
+    @Getter
+    private String sectionId;
+
+    @Getter
+    private String noteId;
+
+    @Getter
+    private String name;
+
+    @Getter
+    private Integer index;
+
+    @Getter
+    private Integer itemId;
+
+    @Getter
+    private Integer spriteId;
+
+    @Getter
+    private Boolean expanded;
+
+    // Content patch: replace `length` chars at `start` with `text`, only if the current content hashes to `baseHash`.
+    // For an added note, `text` is its body
+    @Getter
+    private Integer start;
+
+    @Getter
+    private Integer length;
+
+    @Getter
+    private String text;
+
+    @Getter
+    private Integer baseHash;
+
+    @Getter
+    private SectionShard section;
+
+    // Header of an added note; its body is in `text`, since the note may hold it compressed, which is not serialized
+    @Getter
+    private BetterNotesNote note;
+
+    private JournalEntry(final Op op)
+    {
+        this.op = op;
+    }
+
+    public static JournalEntry addSection(final SectionShard section)
+    {
+        JournalEntry entry = new JournalEntry(Op.ADD_SECTION);
+        entry.sectionId = section.getId();
+        entry.section = section;
+        return entry;
+    }
+
+    public static JournalEntry deleteSection(final String sectionId)
+    {
+        JournalEntry entry = new JournalEntry(Op.DELETE_SECTION);
+        entry.sectionId = sectionId;
+        return entry;
+    }
+
+    public static JournalEntry renameSection(final String sectionId, final String name)
+    {
+        JournalEntry entry = new JournalEntry(Op.RENAME_SECTION);
+        entry.sectionId = sectionId;
+        entry.name = name;
+        return entry;
+    }
+
+    public static JournalEntry moveSection(final String sectionId, final int index)
+    {
+        JournalEntry entry = new JournalEntry(Op.MOVE_SECTION);
+        entry.sectionId = sectionId;
+        entry.index = index;
+        return entry;
+    }
+
+    public static JournalEntry setSectionIcon(final String sectionId, final int itemId, final int spriteId)
+    {
+        JournalEntry entry = new JournalEntry(Op.SET_SECTION_ICON);
+        entry.sectionId = sectionId;
+        entry.itemId = itemId;
+        entry.spriteId = spriteId;
+        return entry;
+    }
+
+    public static JournalEntry setSectionExpanded(final String sectionId, final boolean expanded)
+    {
+        JournalEntry entry = new JournalEntry(Op.SET_SECTION_EXPANDED);
+        entry.sectionId = sectionId;
+        entry.expanded = expanded;
+        return entry;
+    }
+
+    public static JournalEntry addNote(final String sectionId, final BetterNotesNote note)
+    {
+        JournalEntry entry = new JournalEntry(Op.ADD_NOTE);
+        entry.sectionId = sectionId;
+        entry.noteId = note.getId();
+        // Null for a body that is not in memory, which is then still under its own key
+        entry.text = note.isContentLoaded() ? note.getContent() : null;
+        entry.note = note.copy();
+        entry.note.unloadContent();
+        return entry;
+    }
+
+    public static JournalEntry deleteNote(final String noteId)
+    {
+        JournalEntry entry = new JournalEntry(Op.DELETE_NOTE);
+        entry.noteId = noteId;
+        return entry;
+    }
+
+    public static JournalEntry renameNote(final String noteId, final String name)
+    {
+        JournalEntry entry = new JournalEntry(Op.RENAME_NOTE);
+        entry.noteId = noteId;
+        entry.name = name;
+        return entry;
+    }
+
+    public static JournalEntry moveNote(final String noteId, final String sectionId, final int index)
+    {
+        JournalEntry entry = new JournalEntry(Op.MOVE_NOTE);
+        entry.noteId = noteId;
+        entry.sectionId = sectionId;
+        entry.index = index;
+        return entry;
+    }
+
+    public static JournalEntry setNoteIcon(final String noteId, final int itemId, final int spriteId)
+    {
+        JournalEntry entry = new JournalEntry(Op.SET_NOTE_ICON);
+        entry.noteId = noteId;
+        entry.itemId = itemId;
+        entry.spriteId = spriteId;
+        return entry;
+    }
+
+    public static JournalEntry setNoteExpanded(final String noteId, final boolean expanded)
+    {
+        JournalEntry entry = new JournalEntry(Op.SET_NOTE_EXPANDED);
+        entry.noteId = noteId;
+        entry.expanded = expanded;
+        return entry;
+    }
+
+    public static JournalEntry patchNoteContent(final String noteId, final int start, final int length, final String text, final int baseHash)
+    {
+        JournalEntry entry = new JournalEntry(Op.PATCH_NOTE_CONTENT);
+        entry.noteId = noteId;
+        entry.start = start;
+        entry.length = length;
+        entry.text = text;
+        entry.baseHash = baseHash;
+        return entry;
+    }
+}
@@ -0,0 +1,61 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Persisted note header. The body is stored under its own key so notes can be listed without reading their content.
+ */
+public class NoteShard
+{
+    @Getter @Setter
+    private String id;
+
+    @Getter @Setter
+    private String name;
+
+    @Getter @Setter
+    private int itemId;
+
+    @Getter @Setter
+    private int spriteId;
+
+    @Getter @Setter
+    private boolean isMaximized;
+
+    // Only present in shards written before bodies were split out
+    @Getter @Setter
+    private String content;
+
+    public static NoteShard of(final BetterNotesNote note)
+    {
+        NoteShard shard = new NoteShard();
+        shard.id = note.getId();
+        shard.name = note.getName();
+        shard.itemId = note.getItemId();
+        shard.spriteId = note.getSpriteId();
+        shard.isMaximized = note.isMaximized();
+        return shard;
+    }
+
+    public BetterNotesNote toNote()
+    {
+        BetterNotesNote note = new BetterNotesNote(name);
+        note.setId(id);
+        note.setItemId(itemId);
+        note.setSpriteId(spriteId);
+        note.setMaximized(isMaximized);
+        note.setNewNote(false);
+
+        if (content != null)
+        {
+            note.setContent(content);
+        }
+        else
+        {
+            note.unloadContent();
+        }
+        return note;
+    }
+}
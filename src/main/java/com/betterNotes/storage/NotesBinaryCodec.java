@@ -0,0 +1,167 @@
+package com.betterNotes.storage;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the stored shards, Base64 wrapped for the config manager.
+ * <p>
+ * Each record is: format version, record type, deduplicated UTF-8 string table, then the fields in a fixed order.
+ * UUID ids are stored as two longs. Values that do not start with {@link #PREFIX} are read as the older JSON shards.
+ * Encoding reuses its buffers, so an instance must only be used from one thread.
+ */
+public class NotesBinaryCodec
+{
+    // Marks a binary shard; JSON shards always start with '{'
+    public static final String PREFIX = "b:";
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int TYPE_INDEX = 1;
+    private static final int TYPE_SECTION = 2;
+    private static final int TYPE_NOTE = 3;
+
+    private final BinaryOutput out = new BinaryOutput();
+
+    public static boolean isBinary(final String value)
+    {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    public String encodeIndex(final NotesIndexShard index)
+    {
+        out.reset();
+        out.writeVarInt(index.getVersion());
+        out.writeVarLong(index.getJournalSequence());
+        writeIds(index.getSectionIds());
+        return wrap(out.finish(FORMAT_VERSION, TYPE_INDEX));
+    }
+
+    public NotesIndexShard decodeIndex(final String value)
+    {
+        final BinaryInput in = unwrap(value, TYPE_INDEX);
+        final int version = in.readVarInt();
+        final long journalSequence = in.readVarLong();
+        final NotesIndexShard index = new NotesIndexShard(readIds(in), journalSequence);
+        index.setVersion(version);
+        return index;
+    }
+
+    public String encodeSection(final SectionShard section)
+    {
+        out.reset();
+        writeSectionFields(section.getId(), section.getName(), section.isMaximized(), section.getItemId(),
+            section.getSpriteId(), section.isUnassignedNotesSection());
+        writeIds(section.getNoteIds());
+        return wrap(out.finish(FORMAT_VERSION, TYPE_SECTION));
+    }
+
+    public SectionShard decodeSection(final String value)
+    {
+        final BinaryInput in = unwrap(value, TYPE_SECTION);
+        final SectionShard section = new SectionShard();
+        section.setId(in.readId());
+        section.setName(in.readString());
+        section.setMaximized(in.readBoolean());
+        section.setItemId(in.readVarInt());
+        section.setSpriteId(in.readVarInt());
+        section.setUnassignedNotesSection(in.readBoolean());
+        section.setNoteIds(readIds(in));
+        return section;
+    }
+
+    public String encodeNote(final NoteShard note)
+    {
+        out.reset();
+        writeNoteFields(note.getId(), note.getName(), note.getItemId(), note.getSpriteId(), note.isMaximized());
+        return wrap(out.finish(FORMAT_VERSION, TYPE_NOTE));
+    }
+
+    public NoteShard decodeNote(final String value)
+    {
+        final BinaryInput in = unwrap(value, TYPE_NOTE);
+        final NoteShard note = new NoteShard();
+        note.setId(in.readId());
+        note.setName(in.readString());
+        note.setItemId(in.readVarInt());
+        note.setSpriteId(in.readVarInt());
+        note.setMaximized(in.readBoolean());
+        return note;
+    }
+
+    private void writeSectionFields(final String id, final String name, final boolean isMaximized, final int itemId,
+                                    final int spriteId, final boolean isUnassignedNotesSection)
+    {
+        out.writeId(id);
+        out.writeString(name);
+        out.writeBoolean(isMaximized);
+        out.writeVarInt(itemId);
+        out.writeVarInt(spriteId);
+        out.writeBoolean(isUnassignedNotesSection);
+    }
+
+    private void writeNoteFields(final String id, final String name, final int itemId, final int spriteId,
+                                 final boolean isMaximized)
+    {
+        out.writeId(id);
+        out.writeString(name);
+        out.writeVarInt(itemId);
+        out.writeVarInt(spriteId);
+        out.writeBoolean(isMaximized);
+    }
+
+    private void writeIds(final List<String> ids)
+    {
+        if (ids == null)
+        {
+            out.writeVarLong(0);
+            return;
+        }
+
+        out.writeVarLong(ids.size());
+        for (final String id : ids)
+        {
+            out.writeId(id);
+        }
+    }
+
+    private static List<String> readIds(final BinaryInput in)
+    {
+        final int count = in.readLength();
+        final List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            ids.add(in.readId());
+        }
+        return ids;
+    }
+
+    private static String wrap(final byte[] data)
+    {
+        return PREFIX + Base64.getEncoder().withoutPadding().encodeToString(data);
+    }
+
+    private static BinaryInput unwrap(final String value, final int type)
+    {
+        if (!isBinary(value))
+        {
+            throw new IllegalArgumentException("Not a binary shard");
+        }
+        return checked(new BinaryInput(Base64.getDecoder().decode(value.substring(PREFIX.length()))), type);
+    }
+
+    private static BinaryInput checked(final BinaryInput in, final int type)
+    {
+        // Newer formats are never guessed at, the shard is quarantined instead
+        if (in.getVersion() != FORMAT_VERSION)
+        {
+            throw new IllegalArgumentException("Unsupported shard format version " + in.getVersion());
+        }
+        if (in.getType() != type)
+        {
+            throw new IllegalArgumentException("Expected record type " + type + " but found " + in.getType());
+        }
+        return in;
+    }
+}
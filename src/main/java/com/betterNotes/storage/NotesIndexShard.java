@@ -0,0 +1,34 @@
+package com.betterNotes.storage;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The small top-level shard: ordered section ids and the journal position. Sections and notes live in their own keys.
+ */
+public class NotesIndexShard
+{
+    // 2: note bodies moved from the note shards into their own keys
+    // 3: shards stored in the binary format, see NotesBinaryCodec
+    public static final int CURRENT_VERSION = 3;
+
+    @Getter @Setter
+    private int version;
+
+    @Getter @Setter
+    private List<String> sectionIds;
+
+    // Last journal entry already folded into the shards; entries up to it are skipped on replay
+    @Getter @Setter
+    private long journalSequence;
+
+    public NotesIndexShard(final List<String> sectionIds, final long journalSequence)
+    {
+        this.version = CURRENT_VERSION;
+        this.sectionIds = new ArrayList<>(sectionIds);
+        this.journalSequence = journalSequence;
+    }
+}
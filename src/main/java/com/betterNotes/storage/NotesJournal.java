@@ -0,0 +1,499 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Turns the difference between two model states into journal entries, and replays entries onto a loaded model.
+ * <p>
+ * Entries are ordered so replay can apply them one by one: new sections, field changes, new notes (appended),
+ * note moves, note deletes, section moves and finally section deletes.
+ */
+@Slf4j
+public final class NotesJournal
+{
+    private NotesJournal()
+    {
+    }
+
+    /**
+     * @param persistedContent reads a note body from storage, used when the base state never had the body in memory
+     */
+    public static List<JournalEntry> diff(final List<SectionShard> baseSections,
+                                          final SectionShard baseUnassigned,
+                                          final Map<String, BetterNotesNote> baseNotes,
+                                          final NotesSnapshot next,
+                                          final Function<String, String> persistedContent)
+    {
+        final List<JournalEntry> entries = new ArrayList<>();
+
+        final Map<String, SectionShard> baseById = indexSections(baseSections, baseUnassigned);
+        final List<SectionShard> nextAll = new ArrayList<>(next.getSections());
+        nextAll.add(next.getUnassignedSection());
+
+        final Map<String, BetterNotesNote> nextNotes = new HashMap<>();
+        for (final BetterNotesNote note : next.getNotes())
+        {
+            nextNotes.put(note.getId(), note);
+        }
+
+        // Simulated note placement, mirrors what replay does with the entries emitted below
+        final Map<String, List<String>> placement = new HashMap<>();
+        final Map<String, String> owner = new HashMap<>();
+        for (final SectionShard base : baseById.values())
+        {
+            placement.put(base.getId(), new ArrayList<>(base.getNoteIds()));
+            for (final String noteId : base.getNoteIds())
+            {
+                owner.put(noteId, base.getId());
+            }
+        }
+
+        // 1) New sections and section field changes
+        for (final SectionShard section : nextAll)
+        {
+            final SectionShard base = baseById.get(section.getId());
+            if (base == null)
+            {
+                entries.add(JournalEntry.addSection(section.withoutNotes()));
+                placement.put(section.getId(), new ArrayList<>());
+            }
+            else
+            {
+                diffSection(base, section, entries);
+            }
+        }
+
+        // 2) New notes (appended to their section) and note field changes
+        for (final SectionShard section : nextAll)
+        {
+            for (final String noteId : section.getNoteIds())
+            {
+                final BetterNotesNote note = nextNotes.get(noteId);
+                final BetterNotesNote base = baseNotes.get(noteId);
+                if (base == null || !owner.containsKey(noteId))
+                {
+                    entries.add(JournalEntry.addNote(section.getId(), note));
+                    placement.get(section.getId()).add(noteId);
+                    owner.put(noteId, section.getId());
+                }
+                else
+                {
+                    diffNote(base, note, entries, persistedContent);
+                }
+            }
+        }
+
+        // 3) Note order, including moves between sections
+        for (final SectionShard section : nextAll)
+        {
+            final List<String> target = section.getNoteIds();
+            final List<String> current = placement.get(section.getId());
+            for (int i = 0; i < target.size(); i++)
+            {
+                final String noteId = target.get(i);
+                if (i < current.size() && current.get(i).equals(noteId))
+                {
+                    continue;
+                }
+
+                entries.add(JournalEntry.moveNote(noteId, section.getId(), i));
+                placement.get(owner.get(noteId)).remove(noteId);
+                current.add(Math.min(i, current.size()), noteId);
+                owner.put(noteId, section.getId());
+            }
+        }
+
+        // 4) Notes left over in the simulation were deleted
+        for (final List<String> noteIds : placement.values())
+        {
+            for (final String noteId : noteIds)
+            {
+                if (!nextNotes.containsKey(noteId))
+                {
+                    entries.add(JournalEntry.deleteNote(noteId));
+                }
+            }
+        }
+
+        // 5) Section order
+        final List<String> order = new ArrayList<>();
+        for (final SectionShard base : baseSections)
+        {
+            order.add(base.getId());
+        }
+        for (final SectionShard section : next.getSections())
+        {
+            if (!baseById.containsKey(section.getId()))
+            {
+                order.add(section.getId());
+            }
+        }
+
+        final List<SectionShard> targetOrder = next.getSections();
+        for (int i = 0; i < targetOrder.size(); i++)
+        {
+            final String sectionId = targetOrder.get(i).getId();
+            if (order.get(i).equals(sectionId))
+            {
+                continue;
+            }
+
+            entries.add(JournalEntry.moveSection(sectionId, i));
+            order.remove(sectionId);
+            order.add(i, sectionId);
+        }
+
+        // 6) Sections left over were deleted; their notes were moved or deleted above
+        for (int i = targetOrder.size(); i < order.size(); i++)
+        {
+            entries.add(JournalEntry.deleteSection(order.get(i)));
+        }
+
+        return entries;
+    }
+
+    public static void diffNote(final BetterNotesNote base,
+                                final BetterNotesNote note,
+                                final List<JournalEntry> entries,
+                                final Function<String, String> persistedContent)
+    {
+        if (!Objects.equals(base.getName(), note.getName()))
+        {
+            entries.add(JournalEntry.renameNote(note.getId(), note.getName()));
+        }
+
+        if (base.getItemId() != note.getItemId() || base.getSpriteId() != note.getSpriteId())
+        {
+            entries.add(JournalEntry.setNoteIcon(note.getId(), note.getItemId(), note.getSpriteId()));
+        }
+
+        if (base.isMaximized() != note.isMaximized())
+        {
+            entries.add(JournalEntry.setNoteExpanded(note.getId(), note.isMaximized()));
+        }
+
+        // A body that is not in memory cannot have been edited
+        if (!note.isContentLoaded())
+        {
+            return;
+        }
+
+        // Also covers a base whose body was dropped once it was written to its key
+        if (base.hasSameContentInstance(note) || base.hasSameContentVersion(note))
+        {
+            return;
+        }
+
+        final String baseContent = base.isContentLoaded() ? base.getContent() : persistedContent.apply(base.getId());
+        final String before = baseContent == null ? "" : baseContent;
+        final String after = note.getContent() == null ? "" : note.getContent();
+        if (before != after && !before.equals(after))
+        {
+            entries.add(patch(note.getId(), before, after));
+        }
+    }
+
+    private static void diffSection(final SectionShard base, final SectionShard section, final List<JournalEntry> entries)
+    {
+        if (!Objects.equals(base.getName(), section.getName()))
+        {
+            entries.add(JournalEntry.renameSection(section.getId(), section.getName()));
+        }
+
+        if (base.getItemId() != section.getItemId() || base.getSpriteId() != section.getSpriteId())
+        {
+            entries.add(JournalEntry.setSectionIcon(section.getId(), section.getItemId(), section.getSpriteId()));
+        }
+
+        if (base.isMaximized() != section.isMaximized())
+        {
+            entries.add(JournalEntry.setSectionExpanded(section.getId(), section.isMaximized()));
+        }
+    }
+
+    /**
+     * Smallest single replacement turning before into after: everything between the common prefix and suffix.
+     */
+    private static JournalEntry patch(final String noteId, final String before, final String after)
+    {
+        final int max = Math.min(before.length(), after.length());
+
+        int prefix = 0;
+        while (prefix < max && before.charAt(prefix) == after.charAt(prefix))
+        {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < max - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix))
+        {
+            suffix++;
+        }
+
+        return JournalEntry.patchNoteContent(noteId,
+                prefix,
+                before.length() - prefix - suffix,
+                after.substring(prefix, after.length() - suffix),
+                before.hashCode());
+    }
+
+    /**
+     * Applies the entries, in order, to the loaded sections. Entries that no longer match the model are skipped.
+     *
+     * @param contentLoader loads a note body that is not in memory yet, before a patch is applied to it
+     * @return the number of entries applied
+     */
+    public static int replay(final List<JournalEntry> entries,
+                             final List<BetterNotesSection> sections,
+                             final BetterNotesSection unassignedNotesSection,
+                             final Consumer<BetterNotesNote> contentLoader)
+    {
+        final Map<String, BetterNotesSection> sectionsById = new LinkedHashMap<>();
+        final Map<String, BetterNotesNote> notesById = new HashMap<>();
+        final Map<String, BetterNotesSection> owners = new HashMap<>();
+
+        sectionsById.put(NotesSnapshot.UNASSIGNED_SECTION_ID, unassignedNotesSection);
+        for (final BetterNotesSection section : sections)
+        {
+            sectionsById.put(section.getId(), section);
+        }
+        for (final BetterNotesSection section : sectionsById.values())
+        {
+            for (final BetterNotesNote note : section.getNotes())
+            {
+                notesById.put(note.getId(), note);
+                owners.put(note.getId(), section);
+            }
+        }
+
+        int applied = 0;
+        for (final JournalEntry entry : entries)
+        {
+            try
+            {
+                if (apply(entry, sections, sectionsById, notesById, owners, contentLoader))
+                {
+                    applied++;
+                }
+                else
+                {
+                    log.warn("Skipped journal entry {} ({}), it no longer matches the notes", entry.getSeq(), entry.getOp());
+                }
+            }
+            catch (Exception e)
+            {
+                log.error("Exception occurred while replaying journal entry {}", entry.getSeq(), e);
+            }
+        }
+        return applied;
+    }
+
+    private static boolean apply(final JournalEntry entry,
+                                 final List<BetterNotesSection> sections,
+                                 final Map<String, BetterNotesSection> sectionsById,
+                                 final Map<String, BetterNotesNote> notesById,
+                                 final Map<String, BetterNotesSection> owners,
+                                 final Consumer<BetterNotesNote> contentLoader)
+    {
+        final BetterNotesSection section = entry.getSectionId() == null ? null : sectionsById.get(entry.getSectionId());
+        final BetterNotesNote note = entry.getNoteId() == null ? null : notesById.get(entry.getNoteId());
+
+        switch (entry.getOp())
+        {
+            case ADD_SECTION:
+            {
+                if (section != null)
+                {
+                    // Already folded into the shards by an interrupted compaction
+                    return true;
+                }
+                final BetterNotesSection added = entry.getSection().toSection(new ArrayList<>());
+                sections.add(added);
+                sectionsById.put(added.getId(), added);
+                return true;
+            }
+            case DELETE_SECTION:
+                if (section == null)
+                {
+                    return true;
+                }
+                sections.remove(section);
+                sectionsById.remove(section.getId());
+                return true;
+            case RENAME_SECTION:
+                if (section == null)
+                {
+                    return false;
+                }
+                section.setName(entry.getName());
+                return true;
+            case MOVE_SECTION:
+                if (section == null)
+                {
+                    return false;
+                }
+                sections.remove(section);
+                sections.add(Math.min(entry.getIndex(), sections.size()), section);
+                return true;
+            case SET_SECTION_ICON:
+                if (section == null)
+                {
+                    return false;
+                }
+                section.setItemId(entry.getItemId());
+                section.setSpriteId(entry.getSpriteId());
+                return true;
+            case SET_SECTION_EXPANDED:
+                if (section == null)
+                {
+                    return false;
+                }
+                section.setMaximized(entry.getExpanded());
+                return true;
+            case ADD_NOTE:
+            {
+                if (note != null || section == null)
+                {
+                    return note != null;
+                }
+                final BetterNotesNote added = entry.getNote();
+                added.setNewNote(false);
+                // Entries written before the body had its own field carry it inside the note
+                final String body = entry.getText() != null ? entry.getText() : added.getContent();
+                if (body != null)
+                {
+                    added.setContent(body);
+                }
+                else
+                {
+                    // Read from its body key when it is opened
+                    added.unloadContent();
+                }
+                section.getNotes().add(added);
+                notesById.put(added.getId(), added);
+                owners.put(added.getId(), section);
+                return true;
+            }
+            case DELETE_NOTE:
+                if (note == null)
+                {
+                    return true;
+                }
+                owners.remove(note.getId()).getNotes().remove(note);
+                notesById.remove(note.getId());
+                return true;
+            case RENAME_NOTE:
+                if (note == null)
+                {
+                    return false;
+                }
+                note.setName(entry.getName());
+                return true;
+            case MOVE_NOTE:
+                if (note == null || section == null)
+                {
+                    return false;
+                }
+                owners.get(note.getId()).getNotes().remove(note);
+                section.getNotes().add(Math.min(entry.getIndex(), section.getNotes().size()), note);
+                owners.put(note.getId(), section);
+                return true;
+            case SET_NOTE_ICON:
+                if (note == null)
+                {
+                    return false;
+                }
+                note.setItemId(entry.getItemId());
+                note.setSpriteId(entry.getSpriteId());
+                return true;
+            case SET_NOTE_EXPANDED:
+                if (note == null)
+                {
+                    return false;
+                }
+                note.setMaximized(entry.getExpanded());
+                return true;
+            case PATCH_NOTE_CONTENT:
+            {
+                if (note == null)
+                {
+                    return false;
+                }
+                contentLoader.accept(note);
+                final String content = note.getContent() == null ? "" : note.getContent();
+                final int end = entry.getStart() + entry.getLength();
+                if (content.hashCode() != entry.getBaseHash() || end > content.length())
+                {
+                    return false;
+                }
+                note.setContent(content.substring(0, entry.getStart()) + entry.getText() + content.substring(end));
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    public static String encode(final Gson gson, final List<JournalEntry> entries)
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (final JournalEntry entry : entries)
+        {
+            builder.append(gson.toJson(entry)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses one entry per line. Lines that cannot be parsed are logged and skipped.
+     */
+    public static List<JournalEntry> decode(final Gson gson, final String journal)
+    {
+        final List<JournalEntry> entries = new ArrayList<>();
+        for (final String line : journal.split("\n"))
+        {
+            if (line.isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                final JournalEntry entry = gson.fromJson(line, JournalEntry.class);
+                if (entry != null && entry.getOp() != null)
+                {
+                    entries.add(entry);
+                }
+            }
+            catch (Exception e)
+            {
+                log.warn("Skipping unreadable journal entry: {}", e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, SectionShard> indexSections(final List<SectionShard> sections, final SectionShard unassigned)
+    {
+        final Map<String, SectionShard> byId = new LinkedHashMap<>();
+        for (final SectionShard section : sections)
+        {
+            byId.put(section.getId(), section);
+        }
+        byId.put(unassigned.getId(), unassigned);
+        return byId;
+    }
+}
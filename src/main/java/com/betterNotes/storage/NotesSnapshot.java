@@ -0,0 +1,68 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Immutable copy of the notes model taken on the mutating thread, so it can be serialized on the writer thread
+ * while the UI keeps editing the live objects. Note contents are shared, not copied, since strings are immutable.
+ */
+public final class NotesSnapshot
+{
+    // The unassigned section gets a fresh UUID every session, so persisted state refers to it by this fixed id
+    public static final String UNASSIGNED_SECTION_ID = "unassigned";
+
+    @Getter
+    private final List<SectionShard> sections;
+
+    @Getter
+    private final SectionShard unassignedSection;
+
+    @Getter
+    private final List<BetterNotesNote> notes;
+
+    private NotesSnapshot(final List<SectionShard> sections, final SectionShard unassignedSection, final List<BetterNotesNote> notes)
+    {
+        this.sections = Collections.unmodifiableList(sections);
+        this.unassignedSection = unassignedSection;
+        this.notes = Collections.unmodifiableList(notes);
+    }
+
+    /**
+     * @param notesOf each section's notes, e.g. from a cache snapshot
+     */
+    public static NotesSnapshot capture(final List<BetterNotesSection> sections, final BetterNotesSection unassignedNotesSection,
+                                        final Function<BetterNotesSection, List<BetterNotesNote>> notesOf)
+    {
+        final List<SectionShard> sectionShards = new ArrayList<>(sections.size());
+        final List<BetterNotesNote> notes = new ArrayList<>();
+
+        for (final BetterNotesSection section : sections)
+        {
+            final List<BetterNotesNote> sectionNotes = notesOf.apply(section);
+            sectionShards.add(SectionShard.of(section, sectionNotes));
+            copyNotes(sectionNotes, notes);
+        }
+        final List<BetterNotesNote> unassignedNotes = notesOf.apply(unassignedNotesSection);
+        copyNotes(unassignedNotes, notes);
+
+        final SectionShard unassignedShard = SectionShard.of(unassignedNotesSection, unassignedNotes);
+        unassignedShard.setId(UNASSIGNED_SECTION_ID);
+
+        return new NotesSnapshot(sectionShards, unassignedShard, notes);
+    }
+
+    private static void copyNotes(final List<BetterNotesNote> notes, final List<BetterNotesNote> into)
+    {
+        for (final BetterNotesNote note : notes)
+        {
+            into.add(note.copy());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persisted form of a section without its notes. Notes are stored in their own shards and referenced by id.
+ */
+public class SectionShard
+{
+    @Getter @Setter
+    private String id;
+
+    @Getter @Setter
+    private String name;
+
+    @Getter @Setter
+    private boolean isMaximized;
+
+    @Getter @Setter
+    private int itemId;
+
+    @Getter @Setter
+    private int spriteId;
+
+    @Getter @Setter
+    private boolean isUnassignedNotesSection;
+
+    @Getter @Setter
+    private List<String> noteIds;
+
+    public static SectionShard of(final BetterNotesSection section)
+    {
+        return of(section, section.getNotes());
+    }
+
+    /**
+     * Shard of the section holding the given notes, e.g. its notes in a cache snapshot rather than its current ones.
+     */
+    public static SectionShard of(final BetterNotesSection section, final List<BetterNotesNote> notes)
+    {
+        SectionShard shard = new SectionShard();
+        shard.id = section.getId();
+        shard.name = section.getName();
+        shard.isMaximized = section.isMaximized();
+        shard.itemId = section.getItemId();
+        shard.spriteId = section.getSpriteId();
+        shard.isUnassignedNotesSection = section.isUnassignedNotesSection();
+        shard.noteIds = new ArrayList<>();
+        for (final BetterNotesNote note : notes)
+        {
+            shard.noteIds.add(note.getId());
+        }
+        return shard;
+    }
+
+    /**
+     * Copy of this shard without note references, for journal entries that add the notes separately.
+     */
+    public SectionShard withoutNotes()
+    {
+        SectionShard shard = new SectionShard();
+        shard.id = id;
+        shard.name = name;
+        shard.isMaximized = isMaximized;
+        shard.itemId = itemId;
+        shard.spriteId = spriteId;
+        shard.isUnassignedNotesSection = isUnassignedNotesSection;
+        shard.noteIds = new ArrayList<>();
+        return shard;
+    }
+
+    /**
+     * Copies the persisted fields onto an existing section and replaces its notes.
+     */
+    public void applyTo(final BetterNotesSection section, final List<BetterNotesNote> notes)
+    {
+        section.setId(id);
+        section.setName(name);
+        section.setMaximized(isMaximized);
+        section.setItemId(itemId);
+        section.setSpriteId(spriteId);
+        section.setNewSection(false);
+        section.setNotes(notes);
+    }
+
+    public BetterNotesSection toSection(final List<BetterNotesNote> notes)
+    {
+        BetterNotesSection section = new BetterNotesSection(name);
+        applyTo(section, notes);
+        section.setUnassignedNotesSection(isUnassignedNotesSection);
+        return section;
+    }
+}
@@ -0,0 +1,173 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads stored sections one record at a time, so a malformed section or note is skipped and quarantined
+ * instead of failing the whole load. Only one section's JSON tree is held in memory at a time.
+ */
+@Slf4j
+public final class SectionStreamReader
+{
+    private SectionStreamReader()
+    {
+    }
+
+    public static class Result
+    {
+        @Getter
+        private final List<BetterNotesSection> sections = new ArrayList<>();
+
+        // Raw JSON of every record that could not be read
+        @Getter
+        private final List<String> quarantined = new ArrayList<>();
+
+        @Getter
+        private int recoveredNotes;
+
+        // Set when the input ended in unreadable JSON, so everything after the last good record was lost
+        @Getter
+        private boolean truncated;
+
+        public boolean isClean()
+        {
+            return quarantined.isEmpty() && !truncated;
+        }
+    }
+
+    /**
+     * Reads a JSON array of sections.
+     */
+    public static Result readSections(final Gson gson, final String json)
+    {
+        final Result result = new Result();
+        try (JsonReader reader = new JsonReader(new StringReader(json)))
+        {
+            reader.setLenient(true);
+            reader.beginArray();
+            while (reader.hasNext())
+            {
+                readSection(gson, gson.fromJson(reader, JsonElement.class), result);
+            }
+            reader.endArray();
+        }
+        catch (Exception e)
+        {
+            result.truncated = true;
+            log.warn("Stopped reading sections after {} records: {}", result.sections.size(), e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Reads a single section object, e.g. the unassigned notes section.
+     */
+    public static Result readSection(final Gson gson, final String json)
+    {
+        final Result result = new Result();
+        try (JsonReader reader = new JsonReader(new StringReader(json)))
+        {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+            {
+                readSection(gson, gson.fromJson(reader, JsonElement.class), result);
+            }
+        }
+        catch (Exception e)
+        {
+            result.truncated = true;
+            log.warn("Could not read section: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private static void readSection(final Gson gson, final JsonElement element, final Result result)
+    {
+        if (element == null || !element.isJsonObject())
+        {
+            quarantine(element, result);
+            return;
+        }
+
+        // Notes are read separately so one bad note does not take its section down with it
+        final JsonObject object = element.getAsJsonObject();
+        final JsonElement notes = object.remove("notes");
+
+        final BetterNotesSection section;
+        try
+        {
+            section = gson.fromJson(object, BetterNotesSection.class);
+        }
+        catch (Exception e)
+        {
+            if (notes != null)
+            {
+                object.add("notes", notes);
+            }
+            quarantine(object, result);
+            return;
+        }
+
+        final List<BetterNotesNote> loadedNotes = new ArrayList<>();
+        if (notes != null && notes.isJsonArray())
+        {
+            final JsonArray noteArray = notes.getAsJsonArray();
+            for (final JsonElement noteElement : noteArray)
+            {
+                final BetterNotesNote note = readNote(gson, noteElement);
+                if (note == null)
+                {
+                    quarantine(noteElement, result);
+                    continue;
+                }
+                loadedNotes.add(note);
+                result.recoveredNotes++;
+            }
+        }
+        else if (notes != null && !notes.isJsonNull())
+        {
+            quarantine(notes, result);
+        }
+
+        section.setNotes(loadedNotes);
+        result.sections.add(section);
+    }
+
+    private static BetterNotesNote readNote(final Gson gson, final JsonElement element)
+    {
+        if (element == null || !element.isJsonObject())
+        {
+            return null;
+        }
+
+        try
+        {
+            final BetterNotesNote note = gson.fromJson(element, BetterNotesNote.class);
+            return note != null && note.getId() != null ? note : null;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private static void quarantine(final JsonElement element, final Result result)
+    {
+        final String raw = element == null ? "null" : element.toString();
+        result.quarantined.add(raw);
+        log.warn("Quarantined unreadable record ({} chars)", raw.length());
+    }
+}
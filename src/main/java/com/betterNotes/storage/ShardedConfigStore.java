@@ -0,0 +1,116 @@
+package com.betterNotes.storage;
+
+import com.google.common.hash.Hashing;
+import net.runelite.client.config.ConfigManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Thin layer over {@link ConfigManager} that remembers the last value written (or read) for every shard key,
+ * so a save only touches the keys whose serialized value actually changed. Long values, e.g. note bodies, are
+ * remembered by a digest rather than kept in memory.
+ */
+public class ShardedConfigStore
+{
+    private final ConfigManager configManager;
+    private final String group;
+
+    // Values longer than this (chars) are remembered by their digest
+    private static final int MAX_REMEMBERED_CHARS = 256;
+
+    // Last known persisted value (or its digest) per key, null if the key exists but its value was never read
+    private final Map<String, Object> persisted = new HashMap<>();
+
+    public ShardedConfigStore(final ConfigManager configManager, final String group)
+    {
+        this.configManager = configManager;
+        this.group = group;
+    }
+
+    public String read(final String key)
+    {
+        final String value = configManager.getConfiguration(group, key);
+        if (value != null)
+        {
+            persisted.put(key, remembered(value));
+        }
+        return value;
+    }
+
+    /**
+     * Records that a key exists without reading its value, e.g. a note body that is loaded lazily.
+     * The next write to it is never skipped.
+     */
+    public void track(final String key)
+    {
+        persisted.putIfAbsent(key, null);
+    }
+
+    /**
+     * Writes the value only if it differs from what was last persisted under the key.
+     *
+     * @return true if the key was written
+     */
+    public boolean write(final String key, final String value)
+    {
+        final Object remembered = remembered(value);
+        if (Objects.equals(persisted.get(key), remembered))
+        {
+            return false;
+        }
+
+        configManager.setConfiguration(group, key, value);
+        persisted.put(key, remembered);
+        return true;
+    }
+
+    private static Object remembered(final String value)
+    {
+        if (value == null || value.length() <= MAX_REMEMBERED_CHARS)
+        {
+            return value;
+        }
+        // A HashCode never equals a String, so a short value cannot be mistaken for a digest
+        return Hashing.sha256().hashString(value, StandardCharsets.UTF_8);
+    }
+
+    public void unset(final String key)
+    {
+        configManager.unsetConfiguration(group, key);
+        persisted.remove(key);
+    }
+
+    /**
+     * Unsets every known key that is not part of the live set, e.g. shards of deleted sections or notes.
+     *
+     * @return the number of keys removed
+     */
+    public int retainOnly(final Set<String> liveKeys)
+    {
+        final List<String> stale = new ArrayList<>();
+        for (final String key : persisted.keySet())
+        {
+            if (!liveKeys.contains(key))
+            {
+                stale.add(key);
+            }
+        }
+
+        for (final String key : stale)
+        {
+            unset(key);
+        }
+        return stale.size();
+    }
+
+    public void clear()
+    {
+        persisted.clear();
+    }
+}
@@ -2,10 +2,11 @@ package com.betterNotes.ui;
 
 import com.betterNotes.BetterNotesPlugin;
 import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.icons.UiIcon;
 import com.betterNotes.utility.Helper;
+import com.betterNotes.utility.HtmlBodyWriter;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.ui.JagexColors;
-import net.runelite.client.util.ImageUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -18,30 +19,51 @@ import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
-import java.awt.image.BufferedImage;
 import java.io.StringReader;
-import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ContentEditorPanel extends JPanel
 {
     private final BetterNotesNote note;
     private final BetterNotesPlugin plugin;
     private final JTextPane contentTextPane = new JTextPane();
+    private final JScrollPane contentScrollPane = new JScrollPane(contentTextPane);
 
-    private static final ImageIcon COLOR_PICKER_ICON;
+    // Shared by all editors, so its buffers are reused across saves
+    private static final HtmlBodyWriter BODY_WRITER = new HtmlBodyWriter();
 
-    private static final ImageIcon TEXT_SIZE_ICON;
-    private Timer saveTimer;
+    // Parsing takes about half a millisecond per KB, so bodies this large are parsed and saved off the EDT
+    private static final int LARGE_NOTE_CHARS = 32 * 1024;
 
-    static
+    // Counts edits, so a background save can tell it was overtaken by a newer one
+    private final AtomicLong edits = new AtomicLong();
+
+    // Editors created and not yet disposed, across all panels
+    private static final AtomicInteger LIVE_EDITORS = new AtomicInteger();
+    private boolean disposed;
+
+    // Removed again on dispose, since the document may outlive this editor in the document cache
+    private final DocumentListener documentListener = new DocumentListener()
     {
-        final BufferedImage colorPickerIcon = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/color_picker.png");
-        COLOR_PICKER_ICON = new ImageIcon(ImageUtil.resizeImage(colorPickerIcon, 16, 16));
+        @Override
+        public void insertUpdate(DocumentEvent e)
+        {
+            onTextChanged();
+        }
 
-        final BufferedImage textSizeIcon = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/text_size.png");
-        TEXT_SIZE_ICON = new ImageIcon(ImageUtil.resizeImage(textSizeIcon, 18, 18));
-    }
+        @Override
+        public void removeUpdate(DocumentEvent e)
+        {
+            onTextChanged();
+        }
 
+        @Override
+        public void changedUpdate(DocumentEvent e)
+        {
+            onTextChanged();
+        }
+    };
 
     public ContentEditorPanel(final BetterNotesNote note, final BetterNotesPlugin plugin)
     {
@@ -52,15 +74,36 @@ public class ContentEditorPanel extends JPanel
         setLayout(new BorderLayout());
 
         setupContentTextPane();
-        setupSaveDebounce();
 
-        JScrollPane contentScrollPane = new JScrollPane(contentTextPane);
         contentScrollPane.setBorder(BorderFactory.createEmptyBorder());
         contentScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
         add(contentScrollPane, BorderLayout.CENTER);
 
         JPanel stylePanel = createStylePanel();
         add(stylePanel, BorderLayout.NORTH);
+
+        LIVE_EDITORS.incrementAndGet();
+    }
+
+    public static int getLiveCount()
+    {
+        return LIVE_EDITORS.get();
+    }
+
+    /**
+     * Saves a pending edit right away and stops counting this editor as live. The editor must not be used afterwards.
+     */
+    public void dispose()
+    {
+        if (disposed)
+        {
+            return;
+        }
+        disposed = true;
+
+        plugin.getSaveScheduler().flush(note.getId());
+        contentTextPane.getDocument().removeDocumentListener(documentListener);
+        LIVE_EDITORS.decrementAndGet();
     }
 
     private JPanel createStylePanel()
@@ -83,7 +126,7 @@ public class ContentEditorPanel extends JPanel
         italicButton.addActionListener(e -> toggleStyle(StyleConstants.Italic));
 
         // Button for size options
-        JButton sizeButton = new JButton(TEXT_SIZE_ICON); // Replace with appropriate size icon
+        JButton sizeButton = new JButton(UiIcon.TEXT_SIZE.get()); // Replace with appropriate size icon
         sizeButton.setToolTipText("Text Size");
         sizeButton.setPreferredSize(new Dimension(24, 24));
 
@@ -100,7 +143,7 @@ public class ContentEditorPanel extends JPanel
         // Show the popup menu when the size button is clicked
         sizeButton.addActionListener(e -> sizeMenu.show(sizeButton, 0, sizeButton.getHeight()));
 
-        JButton colorButton = new JButton(COLOR_PICKER_ICON);
+        JButton colorButton = new JButton(UiIcon.COLOR_PICKER.get());
         colorButton.setPreferredSize(new Dimension(24, 24));
         colorButton.setToolTipText("Pick color");
         colorButton.addActionListener(e -> changeTextColor());
@@ -219,28 +262,7 @@ public class ContentEditorPanel extends JPanel
         contentTextPane.setCaretColor(Color.WHITE);
         contentTextPane.setBorder(new EmptyBorder(8, 0, 8, 0));
 
-        loadHtmlContent(note.getContent());
-
-        contentTextPane.getDocument().addDocumentListener(new DocumentListener()
-        {
-            @Override
-            public void insertUpdate(DocumentEvent e)
-            {
-                onTextChanged();
-            }
-
-            @Override
-            public void removeUpdate(DocumentEvent e)
-            {
-                onTextChanged();
-            }
-
-            @Override
-            public void changedUpdate(DocumentEvent e)
-            {
-                onTextChanged();
-            }
-        });
+        loadHtmlContent();
 
         // Define the custom paste action
         Action pastePlainTextAction = new AbstractAction()
@@ -272,49 +294,88 @@ public class ContentEditorPanel extends JPanel
         contentTextPane.getActionMap().put("paste-plain-text", pastePlainTextAction);
     }
 
-    private void loadHtmlContent(String htmlContent)
+    private void loadHtmlContent()
     {
         HTMLEditorKit kit = new HTMLEditorKit();
-        HTMLDocument doc = new HTMLDocument();
         contentTextPane.setEditorKit(kit);
-        contentTextPane.setDocument(doc);
 
-        try
+        // A note opened before at the same version takes its parsed document, and its body need not even be loaded
+        final HTMLDocument cached = plugin.getDocumentCache().get(note);
+        if (cached != null)
         {
-            kit.read(new StringReader(htmlContent), doc, 0);
+            installDocument(cached);
+            return;
         }
-        catch (Exception e)
+
+        if (note.isContentLoaded() && !note.isContentCompressed() && note.getResidentContentSize() < LARGE_NOTE_CHARS)
         {
-            e.printStackTrace();
+            HTMLDocument doc = new HTMLDocument();
+            try
+            {
+                // Parsed before it is attached, so the editor does not lay out every inserted piece
+                kit.read(new StringReader(plugin.getDataManager().loadContent(note)), doc, 0);
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+            plugin.getDocumentCache().put(note, doc);
+            installDocument(doc);
+            return;
         }
+
+        // Large, or still to be read and inflated: done on the worker while a placeholder shows
+        final long contentVersion = note.getContentVersion();
+        contentScrollPane.setViewportView(createLoadingLabel());
+        plugin.getDocumentWorker().parse(note, plugin.getDataManager().captureContent(note), (body, doc) -> {
+            if (note.getContentVersion() != contentVersion)
+            {
+                // Edited elsewhere while parsing, so the document does not match the note's body any more
+                if (!disposed)
+                {
+                    loadHtmlContent();
+                }
+                return;
+            }
+
+            plugin.getDataManager().restoreContent(note, body);
+            plugin.getDocumentCache().put(note, doc);
+            if (!disposed)
+            {
+                installDocument(doc);
+                contentScrollPane.setViewportView(contentTextPane);
+            }
+        });
+    }
+
+    private void installDocument(HTMLDocument doc)
+    {
+        contentTextPane.setDocument(doc);
+        doc.addDocumentListener(documentListener);
+    }
+
+    private JLabel createLoadingLabel()
+    {
+        JLabel loadingLabel = new JLabel("Loading note...");
+        loadingLabel.setFont(FontManager.getRunescapeSmallFont());
+        loadingLabel.setForeground(Color.GRAY);
+        loadingLabel.setBorder(new EmptyBorder(8, 0, 8, 0));
+        loadingLabel.setVerticalAlignment(SwingConstants.TOP);
+        loadingLabel.setOpaque(true);
+        loadingLabel.setBackground(Helper.DARK_GREY_COLOR);
+        return loadingLabel;
     }
 
     private String getHtmlContent()
     {
-        HTMLEditorKit kit = new HTMLEditorKit();
         HTMLDocument doc = (HTMLDocument) contentTextPane.getDocument();
 
         try
         {
-            StringWriter writer = new StringWriter();
-            kit.write(writer, doc, 0, doc.getLength());
-            String fullContent = writer.toString();
-
-            // Extract the content inside the <body> tags
-            String bodyContent = fullContent.replaceAll("(?s).*<body.*?>(.*?)</body>.*", "$1");
-
-            // Convert newlines back to <br> tags for storage
-            bodyContent = bodyContent
-                    .replaceAll("\r?\n", "<br>") // Convert newlines to <br>
-                    .trim(); // Remove surrounding whitespace
-
-            // Remove leading <br> tag if it exists
-            if (bodyContent.startsWith("<br>"))
+            synchronized (BODY_WRITER)
             {
-                bodyContent = bodyContent.substring(4).trim();
+                return BODY_WRITER.write(doc);
             }
-
-            return bodyContent;
         }
         catch (Exception e)
         {
@@ -323,28 +384,37 @@ public class ContentEditorPanel extends JPanel
         }
     }
 
-    private void setupSaveDebounce()
+    private void onTextChanged()
     {
-        saveTimer = new Timer(500, e -> saveNoteContent());
-        saveTimer.setRepeats(false);
+        edits.incrementAndGet();
+        plugin.getSaveScheduler().markDirty(note.getId(), this);
     }
 
-    private void onTextChanged()
+    /**
+     * Saves the document into the note, called by the save scheduler.
+     */
+    void saveNoteContent()
     {
-        if (saveTimer.isRunning())
-        {
-            saveTimer.restart();
-        }
-        else
+        final HTMLDocument doc = (HTMLDocument) contentTextPane.getDocument();
+        final NoteDocumentWorker worker = plugin.getDocumentWorker();
+
+        // Once a save is on the worker, later ones follow it there so they cannot overtake it
+        if (doc.getLength() < LARGE_NOTE_CHARS && !worker.isSaving(note))
         {
-            saveTimer.start();
+            applySavedContent(doc, getHtmlContent());
+            return;
         }
+
+        // An edit made before the worker gets to it schedules another save, so this one gives way to it
+        final long editsAtSave = edits.get();
+        worker.serialize(note, doc, () -> edits.get() != editsAtSave, content -> applySavedContent(doc, content));
     }
 
-    private void saveNoteContent()
+    private void applySavedContent(HTMLDocument doc, String htmlContent)
     {
-        String htmlContent = getHtmlContent();
         note.setContent(htmlContent);
-        plugin.getDataManager().updateConfigNoRedraw();
+        // The document is the new body, so it stays valid for the new content version
+        plugin.getDocumentCache().put(note, doc);
+        plugin.getDataManager().updateNote(note);
     }
 }
@@ -3,35 +3,59 @@ package com.betterNotes.ui;
 import com.betterNotes.BetterNotesPlugin;
 import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.icons.IconCatalog;
+import com.betterNotes.icons.SpriteAtlas;
 import com.betterNotes.utility.Helper;
-import com.google.common.collect.ImmutableList;
 import net.runelite.client.game.SpriteManager;
-import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.components.IconTextField;
 import net.runelite.client.util.ImageUtil;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.List;
-
-import static net.runelite.client.hiscore.HiscoreSkill.*;
-
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Icon picker, kept by the plugin and shown again for every pick. The catalog screen is built the first time it is
+ * opened and only makes cells for the icons matching its filter; sprites are requested for the cells in view, and come
+ * from an atlas that outlives the screen.
+ */
 public class GridDialog extends JDialog
 {
-    private HiscoreSkill selectedSkill;
+    private static final String MAIN_SCREEN = "MainScreen";
+    private static final String CATALOG_SCREEN = "CatalogScreen";
+    private static final String ALL_GROUPS = "All";
+
+    // Sprites are shown centered in cells of this size
+    private static final int SPRITE_CELL_SIZE = 35;
+    private static final int CATALOG_COLUMNS = 8;
+
+    private IconCatalog.Entry selectedEntry;
     private BetterNotesPlugin plugin;
     private BetterNotesNote note;
     private BetterNotesSection section;
-    private final SpriteManager spriteManager;
+    private final SpriteAtlas spriteAtlas;
     private final CardLayout cardLayout;
     private final JPanel mainPanel;
-    private final JPanel bossIconPanel;  // Holds the current implementation
-    private final JPanel skillIconPanel; // Placeholder for Skill Icon selection
+
+    // Catalog screen, built on first use
+    private IconCatalog catalog;
+    private JPanel catalogPanel;
+    private JScrollPane catalogScrollPane;
+    private final JComboBox<Object> groupBox = new JComboBox<>();
+    private final IconTextField searchField = new IconTextField();
+    private final JPanel catalogGrid = new JPanel(new GridLayout(0, CATALOG_COLUMNS, 4, 4));
+    private final Map<IconCatalog.Entry, CatalogCell> catalogCells = new HashMap<>();
+    private boolean updatingFilter;
 
     // Paths to the normal and hover images for each selection type
     private final String ITEM_ICON_NORMAL = "/item_icon_selection.png";
@@ -43,33 +67,67 @@ public class GridDialog extends JDialog
     // Path to the background image for the main panel
     private final String MAIN_PANEL_BG = "/select_icon_type_bg.png";
 
-    public GridDialog(Frame owner, SpriteManager spriteManager, BetterNotesPlugin plugin, BetterNotesNote note, BetterNotesSection section)
+    public GridDialog(Frame owner, SpriteManager spriteManager, BetterNotesPlugin plugin)
     {
         super(owner, "Please select icon type", true);
-        this.spriteManager = spriteManager;
+        this.spriteAtlas = new SpriteAtlas(spriteManager, SPRITE_CELL_SIZE);
         this.cardLayout = new CardLayout();
         this.plugin = plugin;
-        this.note = note;
-        this.section = section;
         this.mainPanel = new JPanel(cardLayout);
 
         setLayout(new BorderLayout());
-        setSize(230, 410); // Updated size
         setResizable(false);
-        setLocationRelativeTo(owner);
-
-        // Initialize screens
-        JPanel mainScreen = createMainScreen();
-        this.bossIconPanel = createBossIconScreen();
-        this.skillIconPanel = createSkillsIconScreen();
+        // Kept for the next pick instead of being disposed
+        setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
 
-        // Add all screens to the card layout
-        mainPanel.add(mainScreen, "MainScreen");
-        mainPanel.add(bossIconPanel, "BossIconScreen");
-        mainPanel.add(skillIconPanel, "SkillIconScreen");
+        // Only the main screen is built up front
+        mainPanel.add(createMainScreen(), MAIN_SCREEN);
 
         add(mainPanel, BorderLayout.CENTER);
-        cardLayout.show(mainPanel, "MainScreen"); // Start with the main screen
+    }
+
+    /**
+     * Shows the picker for the note or section and waits until it is closed.
+     *
+     * @return the picked catalog icon, or null if an item icon was chosen or nothing was
+     */
+    public IconCatalog.Entry pick(BetterNotesNote note, BetterNotesSection section)
+    {
+        this.note = note;
+        this.section = section;
+        this.selectedEntry = null;
+
+        cardLayout.show(mainPanel, MAIN_SCREEN); // Start with the main screen
+        setSize(230, 410);
+        setLocationRelativeTo(getOwner());
+        setVisible(true);
+
+        // Dropped so the kept dialog does not hold on to them
+        this.note = null;
+        this.section = null;
+        return selectedEntry;
+    }
+
+    /**
+     * Shows the catalog screen with the group selected and an empty search.
+     */
+    private void showCatalogScreen(IconCatalog.Group group)
+    {
+        // Filled in one go below rather than by every filter change
+        updatingFilter = true;
+        if (catalogPanel == null)
+        {
+            catalog = IconCatalog.build();
+            catalogPanel = createCatalogScreen();
+            mainPanel.add(catalogPanel, CATALOG_SCREEN);
+        }
+        searchField.setText("");
+        groupBox.setSelectedItem(group);
+        updatingFilter = false;
+
+        refreshCatalogGrid();
+        cardLayout.show(mainPanel, CATALOG_SCREEN);
+        searchField.requestFocusInWindow();
     }
 
     /**
@@ -113,7 +171,7 @@ public class GridDialog extends JDialog
                     } else if (note != null) {
                         plugin.setNoteIconFromSearch(note);
                     }
-                    dispose();
+                    setVisible(false);
                 }
         );
         itemIconLabel.setBorder(BorderFactory.createEmptyBorder(0, 6, 0, 0));
@@ -126,7 +184,7 @@ public class GridDialog extends JDialog
                 BOSS_ICON_HOVER,
                 e ->
                 {
-                    cardLayout.show(mainPanel, "BossIconScreen");
+                    showCatalogScreen(IconCatalog.Group.BOSSES);
                     setSize(550, 550); // Ensure size remains consistent
                 }
         );
@@ -140,8 +198,8 @@ public class GridDialog extends JDialog
                 SKILL_ICON_HOVER,
                 e ->
                 {
-                    cardLayout.show(mainPanel, "SkillIconScreen");
-                    setSize(300, 600); // Ensure size remains consistent
+                    showCatalogScreen(IconCatalog.Group.SKILLS);
+                    setSize(550, 550); // Ensure size remains consistent
                 }
         );
         skillIconLabel.setBorder(BorderFactory.createEmptyBorder(0, 6, 0, 0));
@@ -186,6 +244,8 @@ public class GridDialog extends JDialog
             @Override
             public void mouseClicked(MouseEvent e)
             {
+                // The dialog is kept, so it must not open again with the hover image
+                label.setIcon(normalIcon);
                 action.actionPerformed(null);
             }
         });
@@ -224,42 +284,64 @@ public class GridDialog extends JDialog
     }
 
     /**
-     * Creates the Boss Icon selection screen (Uses the current boss icon implementation).
+     * Creates the catalog screen: a group to browse, a search field filtering it as you type, and the matching icons.
      */
-    private JPanel createBossIconScreen()
+    private JPanel createCatalogScreen()
     {
         JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(Helper.DARK_GREY_COLOR);
 
-        List<HiscoreSkill> bossesList = ImmutableList.of(
-                ABYSSAL_SIRE, ALCHEMICAL_HYDRA, AMOXLIATL,
-                ARAXXOR, ARTIO, BARROWS_CHESTS,
-                BRYOPHYTA, CALLISTO, CALVARION,
-                CERBERUS, CHAMBERS_OF_XERIC, CHAMBERS_OF_XERIC_CHALLENGE_MODE,
-                CHAOS_ELEMENTAL, CHAOS_FANATIC, COMMANDER_ZILYANA,
-                CORPOREAL_BEAST, CRAZY_ARCHAEOLOGIST, DAGANNOTH_PRIME,
-                DAGANNOTH_REX, DAGANNOTH_SUPREME, DERANGED_ARCHAEOLOGIST,
-                DUKE_SUCELLUS, GENERAL_GRAARDOR, GIANT_MOLE,
-                GROTESQUE_GUARDIANS, HESPORI, KALPHITE_QUEEN,
-                KING_BLACK_DRAGON, KRAKEN, KREEARRA,
-                KRIL_TSUTSAROTH, LUNAR_CHESTS, MIMIC,
-                NEX, NIGHTMARE, PHOSANIS_NIGHTMARE,
-                OBOR, PHANTOM_MUSPAH, SARACHNIS,
-                SCORPIA, SCURRIUS, SKOTIZO,
-                SOL_HEREDIT, SPINDEL, TEMPOROSS,
-                THE_GAUNTLET, THE_CORRUPTED_GAUNTLET, THE_HUEYCOATL,
-                THE_LEVIATHAN, THE_WHISPERER, THEATRE_OF_BLOOD,
-                THEATRE_OF_BLOOD_HARD_MODE, THERMONUCLEAR_SMOKE_DEVIL, TOMBS_OF_AMASCUT,
-                TOMBS_OF_AMASCUT_EXPERT, TZKAL_ZUK, TZTOK_JAD,
-                VARDORVIS, VENENATIS, VETION,
-                VORKATH, WINTERTODT, ZALCANO,
-                ZULRAH
-        );
-        // Grid panel for boss selection
-        JPanel gridPanel = createSpriteGridScreen(bossesList, 8);
+        JPanel filterPanel = new JPanel(new BorderLayout(5, 0));
+        filterPanel.setBackground(Helper.DARK_GREY_COLOR);
+        filterPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
-        JScrollPane scrollPane = new JScrollPane(gridPanel);
-        scrollPane.setBorder(null);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        groupBox.addItem(ALL_GROUPS);
+        for (IconCatalog.Group group : IconCatalog.Group.values())
+        {
+            groupBox.addItem(group);
+        }
+        groupBox.addActionListener(e -> refreshCatalogGrid());
+        filterPanel.add(groupBox, BorderLayout.WEST);
+
+        searchField.setIcon(IconTextField.Icon.SEARCH);
+        searchField.setPreferredSize(new Dimension(0, 30));
+        searchField.setBackground(Helper.DARKER_GREY_COLOR);
+        searchField.setHoverBackgroundColor(ColorScheme.DARK_GRAY_HOVER_COLOR);
+        searchField.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e)
+            {
+                refreshCatalogGrid();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                refreshCatalogGrid();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e)
+            {
+                refreshCatalogGrid();
+            }
+        });
+        filterPanel.add(searchField, BorderLayout.CENTER);
+        panel.add(filterPanel, BorderLayout.NORTH);
+
+        catalogGrid.setBackground(Helper.DARK_GREY_COLOR);
+        // Kept at the top instead of stretched over the viewport when only a few icons match
+        JPanel gridWrapper = new JPanel(new BorderLayout());
+        gridWrapper.setBackground(Helper.DARK_GREY_COLOR);
+        gridWrapper.add(catalogGrid, BorderLayout.NORTH);
+
+        catalogScrollPane = new JScrollPane(gridWrapper);
+        catalogScrollPane.setBorder(null);
+        catalogScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        // Sprites are requested as their cells scroll into view
+        catalogScrollPane.getViewport().addChangeListener(e -> prefetchVisibleSprites());
+        panel.add(catalogScrollPane, BorderLayout.CENTER);
 
         // Back button
         panel.add(createBackButton(), BorderLayout.SOUTH);
@@ -268,69 +350,78 @@ public class GridDialog extends JDialog
     }
 
     /**
-     * Creates the Skill Icon selection screen.
+     * Shows the catalog entries matching the group and search, reusing the cells made for earlier matches.
      */
-    private JPanel createSkillsIconScreen()
+    private void refreshCatalogGrid()
     {
-        JPanel panel = new JPanel(new BorderLayout());
-
-        List<HiscoreSkill> skillsList = ImmutableList.of(
-                ATTACK, HITPOINTS, MINING,
-                STRENGTH, AGILITY, SMITHING,
-                DEFENCE, HERBLORE, FISHING,
-                RANGED, THIEVING, COOKING,
-                PRAYER, CRAFTING, FIREMAKING,
-                MAGIC, FLETCHING, WOODCUTTING,
-                RUNECRAFT, SLAYER, FARMING,
-                CONSTRUCTION, HUNTER
-        );
-        // Grid panel for skill selection
-        JPanel gridPanel = createSpriteGridScreen(skillsList, 3);
+        if (updatingFilter)
+        {
+            return;
+        }
 
-        JScrollPane scrollPane = new JScrollPane(gridPanel);
-        scrollPane.setBorder(null);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        Object selected = groupBox.getSelectedItem();
+        IconCatalog.Group group = selected instanceof IconCatalog.Group ? (IconCatalog.Group) selected : null;
 
-        // Back button
-        panel.add(createBackButton(), BorderLayout.SOUTH);
+        catalogGrid.removeAll();
+        for (IconCatalog.Entry entry : catalog.search(group, searchField.getText()))
+        {
+            catalogGrid.add(catalogCells.computeIfAbsent(entry, CatalogCell::new));
+        }
 
-        return panel;
+        catalogScrollPane.getViewport().setViewPosition(new Point(0, 0));
+        catalogScrollPane.validate();
+        catalogGrid.repaint();
+        prefetchVisibleSprites();
     }
 
     /**
-     * Creates a grid screen for displaying sprites.
+     * Requests the sprites of the cells in view and of the page below it, so scrolling down finds them ready. The
+     * others are only requested once they come close to the view.
      */
-    private JPanel createSpriteGridScreen(List<HiscoreSkill> skills, int cols)
+    private void prefetchVisibleSprites()
     {
-        JPanel panel = new JPanel(new BorderLayout());
+        if (catalogScrollPane == null)
+        {
+            return;
+        }
+
+        JViewport viewport = catalogScrollPane.getViewport();
+        Rectangle view = SwingUtilities.convertRectangle(viewport.getView(), viewport.getViewRect(), catalogGrid);
+        view.height *= 2;
+
+        for (Component component : catalogGrid.getComponents())
+        {
+            if (component.getBounds().intersects(view))
+            {
+                ((CatalogCell) component).prefetch();
+            }
+        }
+    }
 
-        // Grid panel for skills selection
-        JPanel gridPanel = new JPanel(new GridLayout(0, cols, 4, 4)); // 8 columns, unlimited rows, 4px gap
-        gridPanel.setBackground(Helper.DARK_GREY_COLOR);
+    /**
+     * A pickable catalog icon, painted from the atlas once its sprite is loaded.
+     */
+    private class CatalogCell extends JPanel
+    {
+        private final IconCatalog.Entry entry;
+        private final JLabel box = new JLabel();
 
-        // Add grid items
-        for (HiscoreSkill skill : skills)
+        CatalogCell(IconCatalog.Entry entry)
         {
-            JPanel container = new JPanel(new BorderLayout());
-            container.setPreferredSize(new Dimension(50, 50)); // Adjusted size to fit grid
-            container.setBackground(Helper.DARKER_GREY_COLOR);
-            container.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-            container.setOpaque(true);
+            super(new BorderLayout());
+            this.entry = entry;
+
+            setPreferredSize(new Dimension(50, 50));
+            setBackground(Helper.DARKER_GREY_COLOR);
+            setBorder(BorderFactory.createLineBorder(Color.BLACK));
+            setOpaque(true);
 
-            JLabel box = new JLabel();
             box.setOpaque(false);
             box.setPreferredSize(new Dimension(40, 40));
             box.setHorizontalAlignment(SwingConstants.CENTER);
             box.setVerticalAlignment(SwingConstants.CENTER);
-
-            // Load sprite asynchronously
-            spriteManager.getSpriteAsync(skill.getSpriteId(), 0, (sprite) ->
-                    SwingUtilities.invokeLater(() -> {
-                        final BufferedImage scaledSprite = ImageUtil.resizeCanvas(sprite, 35, 35);
-                        box.setIcon(new ImageIcon(scaledSprite));
-                        box.setToolTipText(skill.getName());
-                    })
-            );
+            box.setIcon(spriteAtlas.getIcon(entry.getSpriteId()));
+            box.setToolTipText(entry.getName());
 
             // Mouse events for selection and hover effects
             MouseAdapter hoverEffect = new MouseAdapter()
@@ -338,37 +429,36 @@ public class GridDialog extends JDialog
                 @Override
                 public void mouseClicked(MouseEvent e)
                 {
-                    selectedSkill = skill;
-                    dispose();
+                    selectedEntry = entry;
+                    setBackground(Helper.DARKER_GREY_COLOR);
+                    GridDialog.this.setVisible(false);
                 }
 
                 @Override
                 public void mouseEntered(MouseEvent e)
                 {
-                    container.setBackground(Helper.DARK_GREY_COLOR);
-                    container.repaint();
+                    setBackground(Helper.DARK_GREY_COLOR);
+                    repaint();
                 }
 
                 @Override
                 public void mouseExited(MouseEvent e)
                 {
-                    container.setBackground(Helper.DARKER_GREY_COLOR);
-                    container.repaint();
+                    setBackground(Helper.DARKER_GREY_COLOR);
+                    repaint();
                 }
             };
 
-            container.addMouseListener(hoverEffect);
+            addMouseListener(hoverEffect);
             box.addMouseListener(hoverEffect);
 
-            container.add(box, BorderLayout.CENTER);
-            gridPanel.add(container);
+            add(box, BorderLayout.CENTER);
         }
 
-        JScrollPane scrollPane = new JScrollPane(gridPanel);
-        scrollPane.setBorder(null);
-        panel.add(scrollPane, BorderLayout.CENTER);
-
-        return panel;
+        void prefetch()
+        {
+            spriteAtlas.load(entry.getSpriteId(), box::repaint);
+        }
     }
 
     /**
@@ -382,16 +472,16 @@ public class GridDialog extends JDialog
         backButton.setFocusPainted(false);
         backButton.addActionListener(e ->
         {
-            cardLayout.show(mainPanel, "MainScreen");
+            cardLayout.show(mainPanel, MAIN_SCREEN);
             setSize(230, 410);
         });
         panel.add(backButton);
         return panel;
     }
 
-    public HiscoreSkill getSelectedSkill()
+    public IconCatalog.Entry getSelectedEntry()
     {
-        return selectedSkill;
+        return selectedEntry;
     }
 
     /**
@@ -3,61 +3,114 @@ package com.betterNotes.ui;
 import com.betterNotes.BetterNotesPlugin;
 import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.icons.UiIcon;
+import com.betterNotes.search.SearchHit;
+import com.betterNotes.search.TitleMatch;
+import com.betterNotes.icons.UiIconRegistry;
 import com.betterNotes.utility.Helper;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.ui.PluginPanel;
-import net.runelite.client.util.ImageUtil;
+import net.runelite.client.ui.components.IconTextField;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+@Slf4j
 public class MainPanel extends PluginPanel
 {
-    private static final ImageIcon ADD_ICON;
-    private static final ImageIcon ADD_HOVER_ICON;
-    private static final ImageIcon ADD_PRESSED_ICON;
-
-    // -- Added icons for 'more options' --
-    private static final ImageIcon REORDER_MODE_ICON;
-    private static final ImageIcon REORDER_MODE_ICON_HOVER;
-    private static final ImageIcon REORDER_MODE_ICON_ACTIVE;
+    private static final int MAX_SEARCH_RESULTS = 50;
 
     private final JLabel title = new JLabel();
     private final BetterNotesPlugin plugin;
 
     private final JPanel sectionsView = new JPanel(new GridBagLayout());
 
+    // Kept across rebuilds so the query survives opening a note and coming back
+    private final IconTextField searchBar = new IconTextField();
+
+    // When the pending query was typed, for the keystroke to results latency; 0 for rebuilds after a save
+    private long searchStartNanos;
+    private int searchResultsY;
+
+    // Section panels outside reorder mode, built only near the visible area and reused across rebuilds by section id
+    private final VirtualListPanel<BetterNotesSection, SectionPanel> sectionsList;
+
     public boolean isReorderMode = false;
     public boolean isSectionReorder = false;
     public boolean isNoteReorder = false;
 
-    static
-    {
-        // Existing add button icons
-        final BufferedImage addIcon = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/new.png");
-        ADD_ICON = new ImageIcon(addIcon);
-        ADD_HOVER_ICON = new ImageIcon(ImageUtil.alphaOffset(addIcon, -100));
-        ADD_PRESSED_ICON = new ImageIcon(ImageUtil.alphaOffset(addIcon, -50));
-
-        // More-options icons from SectionNotePanel logic
-        final BufferedImage reorderModeImg = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/drag.png");
-        // Resize to 16x16, then apply different opacities for default vs. hover
-        REORDER_MODE_ICON = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(reorderModeImg, 16, 16), 0.5f));
-        REORDER_MODE_ICON_HOVER = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(reorderModeImg, 16, 16), 1.0f));
-        REORDER_MODE_ICON_ACTIVE = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(reorderModeImg, 16, 16), 1.0f));
-   }
+    // Cold start, logged once the sidebar is first painted: when the panel was created and how long building it took
+    private final long createdNanos = System.nanoTime();
+    private long buildNanos;
+    private boolean painted;
 
     public MainPanel(BetterNotesPlugin plugin)
     {
         this.plugin = plugin;
 
+        sectionsList = new VirtualListPanel<>(10, BetterNotesSection::getId,
+                section -> {
+                    SectionPanel panel = new SectionPanel(plugin, section, null);
+                    panel.setBackground(Helper.DARKER_GREY_COLOR);
+                    return panel;
+                },
+                (section, panel) -> panel.getSection() == section && panel.refresh(),
+                SectionPanel::estimateHeight,
+                SectionPanel::release);
+        sectionsList.setBackground(Helper.DARK_GREY_COLOR);
+
         setLayout(new BorderLayout());
         setBorder(new EmptyBorder(10, 10, 10, 10));
 
+        searchBar.setIcon(IconTextField.Icon.SEARCH);
+        searchBar.setPreferredSize(new Dimension(PluginPanel.PANEL_WIDTH - 20, 30));
+        searchBar.setBackground(Helper.DARKER_GREY_COLOR);
+        searchBar.setHoverBackgroundColor(ColorScheme.DARK_GRAY_HOVER_COLOR);
+        searchBar.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e)
+            {
+                onSearchChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                onSearchChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e)
+            {
+                onSearchChanged();
+            }
+        });
+        searchBar.addClearListener(this::onSearchChanged);
+
         buildMainUI();
+        buildNanos = System.nanoTime() - createdNanos;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
+        if (!painted)
+        {
+            painted = true;
+            log.debug("Sidebar built in {}ms and first painted {}ms after it was created; {}", buildNanos / 1_000_000,
+                (System.nanoTime() - createdNanos) / 1_000_000, UiIconRegistry.describe());
+        }
     }
 
     public void rebuild()
@@ -67,6 +120,32 @@ public class MainPanel extends PluginPanel
         constraints.weightx = 1;
         constraints.gridy = 0;
 
+        // Results replace the sections once the first batch arrives, so typing does not flash an empty list
+        final String query = searchBar.getText();
+        if (!isReorderMode && query != null && !query.trim().isEmpty())
+        {
+            final long startNanos = searchStartNanos != 0 ? searchStartNanos : System.nanoTime();
+            searchStartNanos = 0;
+            plugin.getSearchService().search(query, MAX_SEARCH_RESULTS, startNanos, this::showSearchResults);
+            return;
+        }
+        plugin.getSearchService().cancel();
+
+        if (!isReorderMode && !(plugin.getSections().isEmpty() && plugin.getUnassignedNotesSection() == null))
+        {
+            reconcileSections();
+            return;
+        }
+
+        // Reorder mode builds its own panels, which must not be reused once it ends
+        sectionsList.clear();
+        for (Component component : sectionsView.getComponents())
+        {
+            if (component instanceof SectionPanel)
+            {
+                ((SectionPanel) component).release();
+            }
+        }
         sectionsView.removeAll();
 
         // If no sections and no unassigned notes, show placeholder
@@ -113,8 +192,231 @@ public class MainPanel extends PluginPanel
         revalidate();
     }
 
+    /**
+     * Updates the sections view in place: panels of sections and notes still in the model are refreshed and moved
+     * where needed, so open editors keep their document, caret and scroll position. Panels are only built for rows
+     * near the visible area, so a large library costs about as much as the part of it on screen.
+     */
+    private void reconcileSections()
+    {
+        final List<BetterNotesSection> rows = new ArrayList<>(plugin.getSections());
+        BetterNotesSection unassignedNotesSection = plugin.getUnassignedNotesSection();
+        if (unassignedNotesSection != null && !unassignedNotesSection.getNotes().isEmpty())
+        {
+            rows.add(unassignedNotesSection);
+        }
+        sectionsList.setRows(rows);
+
+        if (Helper.syncChildren(sectionsView, Collections.singletonList(sectionsList)))
+        {
+            GridBagConstraints constraints = new GridBagConstraints();
+            constraints.fill = GridBagConstraints.HORIZONTAL;
+            constraints.weightx = 1;
+            constraints.gridy = 0;
+            ((GridBagLayout) sectionsView.getLayout()).setConstraints(sectionsList, constraints);
+            sectionsView.revalidate();
+        }
+        sectionsView.repaint();
+    }
+
+    /**
+     * Note editors alive in the sections view, open or collapsed and waiting to be freed.
+     */
+    public int getLiveEditorCount()
+    {
+        return ContentEditorPanel.getLiveCount();
+    }
+
+    private void onSearchChanged()
+    {
+        searchStartNanos = System.nanoTime();
+        rebuild();
+    }
+
+    private void showSearchResults(List<SearchHit> hits, boolean first, boolean last)
+    {
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.weightx = 1;
+
+        if (first)
+        {
+            sectionsView.removeAll();
+            searchResultsY = 0;
+            if (hits.isEmpty())
+            {
+                constraints.gridy = searchResultsY++;
+                JLabel noResultsLabel = new JLabel("No matching notes.");
+                noResultsLabel.setForeground(Color.LIGHT_GRAY);
+                noResultsLabel.setHorizontalAlignment(SwingConstants.CENTER);
+                sectionsView.add(noResultsLabel, constraints);
+            }
+        }
+
+        for (final SearchHit hit : hits)
+        {
+            final BetterNotesNote note = plugin.getCache().getNote(hit.getNoteId());
+            if (note == null)
+            {
+                continue;
+            }
+
+            constraints.gridy = searchResultsY++;
+            sectionsView.add(buildSearchResultRow(note, plugin.getCache().getOwner(note.getId()), hit.getSnippet()), constraints);
+
+            JPanel spacer = new JPanel();
+            spacer.setBackground(Helper.DARKER_GREY_COLOR);
+            spacer.setPreferredSize(new Dimension(0, 5));
+            constraints.gridy = searchResultsY++;
+            sectionsView.add(spacer, constraints);
+        }
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Leaves search and shows the note expanded in its section.
+     */
+    private void revealNote(BetterNotesNote note, BetterNotesSection owner)
+    {
+        if (owner != null && !owner.isUnassignedNotesSection())
+        {
+            plugin.getCache().changeIsExpanded(true, owner.getId());
+        }
+        plugin.getCache().setNoteExpanded(note.getId(), true);
+
+        // Clearing the query rebuilds the sections view
+        searchBar.setText("");
+        plugin.getDataManager().updateConfig();
+
+        // The section is scrolled to first, since neither panel may have been built yet
+        SwingUtilities.invokeLater(() -> {
+            final SectionPanel sectionPanel = owner != null ? sectionsList.scrollToRow(owner) : null;
+            if (sectionPanel != null)
+            {
+                sectionPanel.scrollToNote(note);
+            }
+        });
+    }
+
+    public void openQuickSwitcher()
+    {
+        QuickSwitcherDialog switcher = new QuickSwitcherDialog(SwingUtilities.getWindowAncestor(this),
+                plugin.getTitleIndex(), this::openMatch);
+        switcher.open(this);
+    }
+
+    private void openMatch(TitleMatch match)
+    {
+        if (isReorderMode)
+        {
+            exitReorderMode();
+        }
+
+        if (!match.isSection())
+        {
+            final BetterNotesNote note = plugin.getCache().getNote(match.getId());
+            if (note != null)
+            {
+                showNoteOverview(note);
+            }
+            return;
+        }
+
+        final BetterNotesSection section = plugin.getCache().getSection(match.getId());
+        if (section == null)
+        {
+            return;
+        }
+
+        // Back to the sections view with the section expanded and scrolled into view
+        plugin.getCache().changeIsExpanded(true, section.getId());
+        searchBar.setText("");
+        showSectionsView();
+        plugin.getDataManager().updateConfig();
+
+        SwingUtilities.invokeLater(() -> sectionsList.scrollToRow(section));
+    }
+
+    private JPanel buildSearchResultRow(BetterNotesNote note, BetterNotesSection owner, String snippet)
+    {
+        JPanel row = new JPanel(new BorderLayout());
+        row.setBackground(Helper.DARK_GREY_COLOR);
+        row.setBorder(new EmptyBorder(5, 8, 5, 8));
+
+        JPanel titleRow = new JPanel(new BorderLayout());
+        titleRow.setOpaque(false);
+
+        JLabel nameLabel = new JLabel(note.getName());
+        nameLabel.setForeground(Color.WHITE);
+        nameLabel.setFont(FontManager.getRunescapeSmallFont());
+        titleRow.add(nameLabel, BorderLayout.CENTER);
+
+        if (owner != null && !owner.isUnassignedNotesSection())
+        {
+            JLabel sectionLabel = new JLabel(owner.getName());
+            sectionLabel.setForeground(Color.GRAY);
+            sectionLabel.setFont(FontManager.getRunescapeSmallFont());
+            titleRow.add(sectionLabel, BorderLayout.EAST);
+        }
+        row.add(titleRow, BorderLayout.NORTH);
+
+        if (snippet != null && !snippet.isEmpty())
+        {
+            // Fixed width so the HTML label wraps inside the panel
+            JLabel snippetLabel = new JLabel("<html><div style='width: " + (PluginPanel.PANEL_WIDTH - 60) + "px'>" + snippet + "</div></html>");
+            snippetLabel.setForeground(Color.LIGHT_GRAY);
+            snippetLabel.setFont(FontManager.getRunescapeSmallFont());
+            snippetLabel.setBorder(new EmptyBorder(3, 0, 0, 0));
+            row.add(snippetLabel, BorderLayout.CENTER);
+        }
+
+        JPopupMenu resultMenu = new JPopupMenu();
+        JMenuItem openItem = new JMenuItem("Open note");
+        JMenuItem revealItem = new JMenuItem("Show in section");
+        openItem.addActionListener(e -> showNoteOverview(note));
+        revealItem.addActionListener(e -> revealNote(note, owner));
+        resultMenu.add(openItem);
+        resultMenu.add(revealItem);
+        row.setComponentPopupMenu(resultMenu);
+
+        row.addMouseListener(new MouseAdapter()
+        {
+            @Override
+            public void mousePressed(MouseEvent mouseEvent)
+            {
+                if (Helper.checkClick(mouseEvent))
+                {
+                    return;
+                }
+                showNoteOverview(note);
+            }
+
+            @Override
+            public void mouseEntered(MouseEvent mouseEvent)
+            {
+                row.setBackground(ColorScheme.DARK_GRAY_HOVER_COLOR);
+            }
+
+            @Override
+            public void mouseExited(MouseEvent mouseEvent)
+            {
+                row.setBackground(Helper.DARK_GREY_COLOR);
+            }
+        });
+
+        return row;
+    }
+
     public void showNoteOverview(BetterNotesNote note)
     {
+        // The overview edits the body, so an editor for the same note in the sections view would go stale
+        for (SectionPanel sectionPanel : sectionsList.getComponentsKept())
+        {
+            sectionPanel.discardNotePanel(note.getId());
+        }
+
         removeAll();
 
         NoteOverviewPanel notePanel = new NoteOverviewPanel(
@@ -276,11 +578,20 @@ public class MainPanel extends PluginPanel
         JPanel mainRightIconsPanel = buildMainTopBarButtons();
         topBarPanel.add(mainRightIconsPanel, BorderLayout.EAST);
 
+        // Search only applies to the normal view, reorder mode always shows everything
+        if (!isReorderMode)
+        {
+            JPanel searchWrapper = new JPanel(new BorderLayout());
+            searchWrapper.setBorder(new EmptyBorder(10, 0, 0, 0));
+            searchWrapper.add(searchBar, BorderLayout.CENTER);
+            topBarPanel.add(searchWrapper, BorderLayout.SOUTH);
+        }
+
         return topBarPanel;
     }
 
     public JPanel buildMainTopBarButtons () {
-        JLabel toggleReorderModeButton = new JLabel(REORDER_MODE_ICON);
+        JLabel toggleReorderModeButton = new JLabel(UiIcon.REORDER_MODE.get());
         if (isReorderMode) {
             toggleReorderModeButton.setToolTipText("Exit reorder mode");
         } else {
@@ -307,29 +618,33 @@ public class MainPanel extends PluginPanel
             @Override
             public void mouseEntered(MouseEvent mouseEvent)
             {
-                toggleReorderModeButton.setIcon(REORDER_MODE_ICON_HOVER);
+                toggleReorderModeButton.setIcon(UiIcon.REORDER_MODE_HOVER.get());
             }
 
             @Override
             public void mouseExited(MouseEvent mouseEvent)
             {
-                toggleReorderModeButton.setIcon(REORDER_MODE_ICON);
+                toggleReorderModeButton.setIcon(UiIcon.REORDER_MODE.get());
             }
         });
 
         // 2) The add button
-        JLabel addButton = new JLabel(ADD_ICON);
+        JLabel addButton = new JLabel(UiIcon.ADD.get());
         addButton.setToolTipText("Add new section/note");
 
         JPopupMenu addMenu = new JPopupMenu();
         JMenuItem addSectionItem = new JMenuItem("Add Section");
         JMenuItem addNoteItem = new JMenuItem("Add Note");
+        JMenuItem exportItem = new JMenuItem("Copy Notes as JSON");
 
         addSectionItem.addActionListener(e -> plugin.addSection());
         addNoteItem.addActionListener(e -> plugin.addNote());
+        exportItem.addActionListener(e -> plugin.copyNotesToClipboard());
 
         addMenu.add(addSectionItem);
         addMenu.add(addNoteItem);
+        addMenu.addSeparator();
+        addMenu.add(exportItem);
 
         addButton.addMouseListener(new MouseAdapter()
         {
@@ -340,7 +655,7 @@ public class MainPanel extends PluginPanel
                 {
                     return;
                 }
-                addButton.setIcon(ADD_PRESSED_ICON);
+                addButton.setIcon(UiIcon.ADD_PRESSED.get());
             }
 
             @Override
@@ -351,19 +666,19 @@ public class MainPanel extends PluginPanel
                     return;
                 }
                 addMenu.show(addButton, mouseEvent.getX(), mouseEvent.getY());
-                addButton.setIcon(ADD_HOVER_ICON);
+                addButton.setIcon(UiIcon.ADD_HOVER.get());
             }
 
             @Override
             public void mouseEntered(MouseEvent mouseEvent)
             {
-                addButton.setIcon(ADD_HOVER_ICON);
+                addButton.setIcon(UiIcon.ADD_HOVER.get());
             }
 
             @Override
             public void mouseExited(MouseEvent mouseEvent)
             {
-                addButton.setIcon(ADD_ICON);
+                addButton.setIcon(UiIcon.ADD.get());
             }
         });
 
@@ -376,17 +691,4 @@ public class MainPanel extends PluginPanel
         return rightIconsPanel;
     }
 
-    /**
-     * Helper function to set opacity of an image.
-     * Re-implements logic from SectionNotePanel for consistent icons.
-     */
-    private static BufferedImage setImageOpacity(BufferedImage image, float opacity)
-    {
-        BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = newImage.createGraphics();
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-        g2d.drawImage(image, 0, 0, null);
-        g2d.dispose();
-        return newImage;
-    }
 }
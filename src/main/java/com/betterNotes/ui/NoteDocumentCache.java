@@ -0,0 +1,125 @@
+package com.betterNotes.ui;
+
+import com.betterNotes.entities.BetterNotesNote;
+
+import javax.swing.text.html.HTMLDocument;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed note bodies by note id, so an editor built again for the same note takes the existing document instead of
+ * parsing the HTML again. An entry only counts while the note's content version is the one it was parsed or last saved
+ * from. Least recently used documents are dropped once their estimated size goes over the memory budget.
+ */
+public class NoteDocumentCache
+{
+    // Measured on typical notes: a parsed document takes about twelve bytes per char of its text
+    private static final int ESTIMATED_BYTES_PER_CHAR = 12;
+
+    private static final class Entry
+    {
+        final HTMLDocument document;
+        final long contentVersion;
+        final long estimatedBytes;
+
+        Entry(final HTMLDocument document, final long contentVersion, final long estimatedBytes)
+        {
+            this.document = document;
+            this.contentVersion = contentVersion;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long estimatedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public NoteDocumentCache(final long budgetBytes)
+    {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the parsed body of the note at its current content version, or null if it has to be parsed
+     */
+    public synchronized HTMLDocument get(final BetterNotesNote note)
+    {
+        final Entry entry = entries.get(note.getId());
+        if (entry != null && entry.contentVersion == note.getContentVersion())
+        {
+            hits++;
+            return entry.document;
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores the document as the body of the note at its current content version, e.g. after parsing or saving it.
+     */
+    public synchronized void put(final BetterNotesNote note, final HTMLDocument document)
+    {
+        final Entry entry = new Entry(document, note.getContentVersion(),
+            (long) document.getLength() * ESTIMATED_BYTES_PER_CHAR);
+        final Entry previous = entries.put(note.getId(), entry);
+        if (previous != null)
+        {
+            estimatedBytes -= previous.estimatedBytes;
+        }
+        estimatedBytes += entry.estimatedBytes;
+
+        // The entry just stored is the most recent one and stays even if it alone is over the budget
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (estimatedBytes > budgetBytes && entries.size() > 1)
+        {
+            final Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            estimatedBytes -= eldest.estimatedBytes;
+            evictions++;
+        }
+    }
+
+    public synchronized void remove(final String noteId)
+    {
+        final Entry entry = entries.remove(noteId);
+        if (entry != null)
+        {
+            estimatedBytes -= entry.estimatedBytes;
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        estimatedBytes = 0;
+    }
+
+    public synchronized double getHitRate()
+    {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    public synchronized int getSize()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("%d documents (~%d KB of %d KB), hit rate %.0f%% (%d hits, %d misses), %d evicted",
+            entries.size(), estimatedBytes / 1024, budgetBytes / 1024, getHitRate() * 100, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,224 @@
+package com.betterNotes.ui;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.utility.HtmlBodyWriter;
+import com.betterNotes.utility.HtmlDocumentSnapshot;
+import com.betterNotes.utility.LatencyStats;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Parses and serializes note bodies that are too large to handle on the EDT. Parsing goes into a detached document
+ * that nothing else can see until it is handed back, so it needs no locking. Serializing writes a snapshot of the
+ * editor's document taken on the EDT, so edits are never held up by a save. Neither touches the note itself, whose
+ * body only changes on the EDT.
+ * <p>
+ * Everything runs on one thread and results are handed back on the EDT in the order they were asked for, so an older
+ * save can never overwrite a newer one.
+ */
+@Slf4j
+public class NoteDocumentWorker
+{
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "better-notes-documents");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Results waiting to be handed back, in the order the work was done
+    private final Queue<Runnable> completed = new ConcurrentLinkedQueue<>();
+
+    // Saves asked for and not handed back yet, by note id. EDT only
+    private final Map<String, Integer> savesInFlight = new HashMap<>();
+
+    // Worker thread only, so its buffers need no locking
+    private final HtmlBodyWriter bodyWriter = new HtmlBodyWriter();
+
+    @Getter
+    private final LatencyStats parseLatency = new LatencyStats();
+
+    @Getter
+    private final LatencyStats serializeLatency = new LatencyStats();
+
+    /**
+     * Reads and parses a note body into a new document. Call from the EDT.
+     *
+     * @param body     reads the body on the worker without touching the note, e.g. from storage
+     * @param onParsed called on the EDT with the body and the document, as far as it could be read
+     */
+    public void parse(final BetterNotesNote note, final Supplier<String> body,
+                      final BiConsumer<String, HTMLDocument> onParsed)
+    {
+        final String noteId = note.getId();
+        submit(() -> {
+            final long start = System.nanoTime();
+            final HTMLDocument doc = new HTMLDocument();
+            String content = "";
+            try
+            {
+                content = body.get();
+                new HTMLEditorKit().read(new StringReader(content), doc, 0);
+                parseLatency.record(System.nanoTime() - start);
+            }
+            catch (Exception e)
+            {
+                log.warn("Failed to parse the body of note {}", noteId, e);
+            }
+            final String parsed = content;
+            return () -> onParsed.accept(parsed, doc);
+        }, null);
+    }
+
+    /**
+     * Writes the document in the stored format. Call from the EDT, which is where the document is snapshotted.
+     *
+     * @param superseded checked on the worker before writing and on the EDT before handing back; true skips the save,
+     *                   e.g. because the document was edited again and a newer save is on its way
+     * @param onSaved    called on the EDT with the stored format, unless the save was skipped or failed
+     */
+    public void serialize(final BetterNotesNote note, final HTMLDocument doc, final BooleanSupplier superseded,
+                          final Consumer<String> onSaved)
+    {
+        final String noteId = note.getId();
+        final HtmlDocumentSnapshot snapshot;
+        try
+        {
+            snapshot = HtmlDocumentSnapshot.of(doc);
+        }
+        catch (Exception e)
+        {
+            log.warn("Failed to save the body of note {}", noteId, e);
+            return;
+        }
+
+        savesInFlight.merge(noteId, 1, Integer::sum);
+        submit(() -> {
+            if (superseded.getAsBoolean())
+            {
+                return null;
+            }
+
+            final long start = System.nanoTime();
+            final String content;
+            try
+            {
+                content = bodyWriter.write(snapshot);
+            }
+            catch (Exception e)
+            {
+                log.warn("Failed to save the body of note {}", noteId, e);
+                return null;
+            }
+            serializeLatency.record(System.nanoTime() - start);
+            return () -> {
+                if (!superseded.getAsBoolean())
+                {
+                    onSaved.accept(content);
+                }
+            };
+        }, noteId);
+    }
+
+    /**
+     * True while a save of the note is queued or running, so a later save must go through here too to keep the order.
+     * Call from the EDT.
+     */
+    public boolean isSaving(final BetterNotesNote note)
+    {
+        return savesInFlight.containsKey(note.getId());
+    }
+
+    /**
+     * Finishes the queued work and hands back its results on the calling thread, so pending saves reach the model
+     * before it is flushed. Call from the EDT.
+     */
+    public void shutDown()
+    {
+        executor.shutdown();
+        try
+        {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            {
+                log.warn("Note documents still being worked on after {}s", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        deliverCompleted();
+        log.debug("Note documents stopped, parse: {}, serialize: {}", parseLatency, serializeLatency);
+    }
+
+    /**
+     * @param work     runs on the worker and returns what to run on the EDT, or null for nothing
+     * @param savingId the note whose save this is, or null if it is not a save
+     */
+    private void submit(final Callable<Runnable> work, final String savingId)
+    {
+        try
+        {
+            executor.execute(() -> {
+                Runnable result = null;
+                try
+                {
+                    result = work.call();
+                }
+                catch (Exception e)
+                {
+                    log.warn("Note document work failed", e);
+                }
+
+                final Runnable handBack = result;
+                completed.add(() -> {
+                    if (savingId != null)
+                    {
+                        savesInFlight.computeIfPresent(savingId, (id, count) -> count > 1 ? count - 1 : null);
+                    }
+                    if (handBack != null)
+                    {
+                        handBack.run();
+                    }
+                });
+                SwingUtilities.invokeLater(this::deliverCompleted);
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Shutting down
+            if (savingId != null)
+            {
+                savesInFlight.computeIfPresent(savingId, (id, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    private void deliverCompleted()
+    {
+        Runnable next;
+        while ((next = completed.poll()) != null)
+        {
+            next.run();
+        }
+    }
+}
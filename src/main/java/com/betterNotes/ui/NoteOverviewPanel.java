@@ -158,7 +158,8 @@ public class NoteOverviewPanel extends JPanel
         contentArea.setBackground(ColorScheme.DARK_GRAY_COLOR);
         contentArea.setForeground(Color.WHITE);
         contentArea.setBorder(new EmptyBorder(8, 8, 8, 8));
-        contentArea.setText(note.getContent() != null ? note.getContent() : "");
+        final String content = plugin.getDataManager().loadContent(note);
+        contentArea.setText(content != null ? content : "");
 
         JScrollPane scrollPane = new JScrollPane(contentArea);
         scrollPane.setBorder(null);
@@ -298,8 +299,7 @@ public class NoteOverviewPanel extends JPanel
                 if (SwingUtilities.isLeftMouseButton(e))
                 {
                     // commit title
-                    note.setName(titleInput.getText());
-                    // plugin.dataManager.updateConfig(); (optional)
+                    plugin.renameNote(note, titleInput.getText());
                     titleInput.setEditable(false);
                     updateTitleActions(false);
                 }
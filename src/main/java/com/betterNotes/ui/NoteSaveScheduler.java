@@ -0,0 +1,182 @@
+package com.betterNotes.ui;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Debounces the saves of every open editor on one timer. An edited note is saved once it has been left alone for a
+ * moment, or once its first unsaved edit is as old as the configured bound, so typing without a pause still gets
+ * saved. Notes that come due together are saved together, which the data manager writes as one batch.
+ * <p>
+ * A note is registered until its save, so an editor that is thrown away leaves nothing behind. Only to be used on the
+ * EDT.
+ */
+@Slf4j
+public class NoteSaveScheduler
+{
+    // Pause in typing after which a note is saved
+    private static final int QUIET_PERIOD_MS = 500;
+
+    // Notes due this soon after the earliest one are saved along with it
+    private static final int BATCH_WINDOW_MS = 100;
+
+    private static final class Entry
+    {
+        ContentEditorPanel editor;
+        final long firstEdit;
+        long lastEdit;
+
+        Entry(final ContentEditorPanel editor, final long firstEdit)
+        {
+            this.editor = editor;
+            this.firstEdit = firstEdit;
+            this.lastEdit = firstEdit;
+        }
+    }
+
+    private final IntSupplier maxDelay;
+
+    // Unsaved notes by note id, with the editor to save each one from
+    private final Map<String, Entry> dirty = new LinkedHashMap<>();
+    private final Timer timer;
+
+    private long batches;
+    private long saves;
+
+    /**
+     * @param maxDelay longest time in milliseconds from an edit to its save, read on every edit so it can change
+     */
+    public NoteSaveScheduler(final IntSupplier maxDelay)
+    {
+        this.maxDelay = maxDelay;
+
+        timer = new Timer(0, e -> flushDue());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Records an edit of the editor's note, pushing its save back unless it has waited for the maximum already.
+     */
+    public void markDirty(final String noteId, final ContentEditorPanel editor)
+    {
+        final long now = System.currentTimeMillis();
+        final Entry entry = dirty.get(noteId);
+        if (entry == null)
+        {
+            dirty.put(noteId, new Entry(editor, now));
+        }
+        else
+        {
+            // A newer editor of the same note holds the document to save from
+            entry.editor = editor;
+            entry.lastEdit = now;
+        }
+        reschedule();
+    }
+
+    /**
+     * Saves the note now if it has unsaved edits, e.g. when its editor is disposed.
+     */
+    public void flush(final String noteId)
+    {
+        final Entry entry = dirty.remove(noteId);
+        if (entry != null)
+        {
+            save(entry);
+            reschedule();
+        }
+    }
+
+    /**
+     * Saves every note with unsaved edits, e.g. on shutdown.
+     */
+    public void flushAll()
+    {
+        timer.stop();
+        saveBatch(new ArrayList<>(dirty.values()));
+        dirty.clear();
+    }
+
+    public int getPendingCount()
+    {
+        return dirty.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d notes saved in %d batches, %d pending", saves, batches, dirty.size());
+    }
+
+    private void flushDue()
+    {
+        final long cutoff = System.currentTimeMillis() + BATCH_WINDOW_MS;
+        final List<Entry> due = new ArrayList<>();
+        final Iterator<Entry> iterator = dirty.values().iterator();
+        while (iterator.hasNext())
+        {
+            final Entry entry = iterator.next();
+            if (dueAt(entry) <= cutoff)
+            {
+                due.add(entry);
+                iterator.remove();
+            }
+        }
+
+        saveBatch(due);
+        reschedule();
+    }
+
+    private void saveBatch(final List<Entry> entries)
+    {
+        if (entries.isEmpty())
+        {
+            return;
+        }
+
+        for (final Entry entry : entries)
+        {
+            save(entry);
+        }
+        batches++;
+        log.debug("Saved {} edited notes together, {}", entries.size(), this);
+    }
+
+    private void save(final Entry entry)
+    {
+        entry.editor.saveNoteContent();
+        saves++;
+    }
+
+    private long dueAt(final Entry entry)
+    {
+        final long quiet = entry.lastEdit + QUIET_PERIOD_MS;
+        final long bound = entry.firstEdit + Math.max(maxDelay.getAsInt(), QUIET_PERIOD_MS);
+        return Math.min(quiet, bound);
+    }
+
+    private void reschedule()
+    {
+        if (dirty.isEmpty())
+        {
+            timer.stop();
+            return;
+        }
+
+        long next = Long.MAX_VALUE;
+        for (final Entry entry : dirty.values())
+        {
+            next = Math.min(next, dueAt(entry));
+        }
+
+        timer.setInitialDelay((int) Math.max(0, next - System.currentTimeMillis()));
+        timer.restart();
+    }
+}
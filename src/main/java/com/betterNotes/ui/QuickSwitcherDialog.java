@@ -0,0 +1,218 @@
+package com.betterNotes.ui;
+
+import com.betterNotes.search.TitleMatch;
+import com.betterNotes.search.TitleTrigramIndex;
+import com.betterNotes.utility.Helper;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.components.IconTextField;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.function.Consumer;
+
+/**
+ * Keyboard driven popup to jump to a note or section by a fuzzy match on its name. Queries go straight to the title
+ * index, which is kept up to date as notes change, so opening and typing cost no model scan.
+ */
+public class QuickSwitcherDialog extends JDialog
+{
+    private static final int MAX_MATCHES = 12;
+
+    private final TitleTrigramIndex titleIndex;
+    private final Consumer<TitleMatch> onSelect;
+
+    private final IconTextField queryField = new IconTextField();
+    private final DefaultListModel<TitleMatch> matches = new DefaultListModel<>();
+    private final JList<TitleMatch> matchList = new JList<>(matches);
+
+    public QuickSwitcherDialog(Window owner, TitleTrigramIndex titleIndex, Consumer<TitleMatch> onSelect)
+    {
+        super(owner);
+        this.titleIndex = titleIndex;
+        this.onSelect = onSelect;
+
+        setUndecorated(true);
+        setLayout(new BorderLayout());
+        setSize(260, 300);
+
+        JPanel content = new JPanel(new BorderLayout(0, 5));
+        content.setBackground(Helper.DARK_GREY_COLOR);
+        content.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(ColorScheme.MEDIUM_GRAY_COLOR),
+                new EmptyBorder(5, 5, 5, 5)));
+
+        queryField.setIcon(IconTextField.Icon.SEARCH);
+        queryField.setPreferredSize(new Dimension(0, 30));
+        queryField.setBackground(Helper.DARKER_GREY_COLOR);
+        queryField.setHoverBackgroundColor(ColorScheme.DARK_GRAY_HOVER_COLOR);
+        queryField.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e)
+            {
+                updateMatches();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                updateMatches();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e)
+            {
+                updateMatches();
+            }
+        });
+        queryField.getTextField().addKeyListener(new KeyAdapter()
+        {
+            @Override
+            public void keyPressed(KeyEvent e)
+            {
+                switch (e.getKeyCode())
+                {
+                    case KeyEvent.VK_DOWN:
+                        moveSelection(1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        moveSelection(-1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        select(matchList.getSelectedValue());
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        dispose();
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+        content.add(queryField, BorderLayout.NORTH);
+
+        matchList.setBackground(Helper.DARK_GREY_COLOR);
+        matchList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        matchList.setFocusable(false);
+        matchList.setCellRenderer(new MatchRenderer());
+        matchList.addMouseListener(new MouseAdapter()
+        {
+            @Override
+            public void mouseClicked(MouseEvent e)
+            {
+                final int index = matchList.locationToIndex(e.getPoint());
+                if (index >= 0)
+                {
+                    select(matches.get(index));
+                }
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(matchList);
+        scrollPane.setBorder(null);
+        scrollPane.getViewport().setBackground(Helper.DARK_GREY_COLOR);
+        content.add(scrollPane, BorderLayout.CENTER);
+
+        add(content, BorderLayout.CENTER);
+
+        // Behaves like a popup: clicking anywhere else closes it
+        addWindowFocusListener(new WindowAdapter()
+        {
+            @Override
+            public void windowLostFocus(WindowEvent e)
+            {
+                dispose();
+            }
+        });
+    }
+
+    /**
+     * Shows the switcher over the given component, with the query field focused.
+     */
+    public void open(Component anchor)
+    {
+        setLocationRelativeTo(anchor);
+        setVisible(true);
+        queryField.getTextField().requestFocusInWindow();
+    }
+
+    private void updateMatches()
+    {
+        matches.clear();
+        for (final TitleMatch match : titleIndex.search(queryField.getText(), MAX_MATCHES))
+        {
+            matches.addElement(match);
+        }
+        if (!matches.isEmpty())
+        {
+            matchList.setSelectedIndex(0);
+        }
+    }
+
+    private void moveSelection(int delta)
+    {
+        if (matches.isEmpty())
+        {
+            return;
+        }
+
+        final int index = Math.floorMod(matchList.getSelectedIndex() + delta, matches.size());
+        matchList.setSelectedIndex(index);
+        matchList.ensureIndexIsVisible(index);
+    }
+
+    private void select(TitleMatch match)
+    {
+        if (match == null)
+        {
+            return;
+        }
+
+        dispose();
+        onSelect.accept(match);
+    }
+
+    private static class MatchRenderer extends JPanel implements ListCellRenderer<TitleMatch>
+    {
+        private final JLabel nameLabel = new JLabel();
+        private final JLabel kindLabel = new JLabel();
+
+        MatchRenderer()
+        {
+            setLayout(new BorderLayout(5, 0));
+            setBorder(new EmptyBorder(4, 5, 4, 5));
+
+            nameLabel.setFont(FontManager.getRunescapeSmallFont());
+            kindLabel.setFont(FontManager.getRunescapeSmallFont());
+            kindLabel.setForeground(Color.GRAY);
+
+            add(nameLabel, BorderLayout.CENTER);
+            add(kindLabel, BorderLayout.EAST);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends TitleMatch> list, TitleMatch match, int index,
+                                                      boolean isSelected, boolean cellHasFocus)
+        {
+            nameLabel.setText(match.getName());
+            nameLabel.setForeground(isSelected ? Color.WHITE : Color.LIGHT_GRAY);
+            kindLabel.setText(match.isSection() ? "Section" : "Note");
+            setBackground(isSelected ? ColorScheme.DARK_GRAY_HOVER_COLOR : Helper.DARK_GREY_COLOR);
+            return this;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.betterNotes.entities.BetterNotesSection;
 import com.betterNotes.utility.Helper;
 
 import javax.swing.*;
+import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.datatransfer.*;
 import java.io.IOException;
@@ -43,32 +44,41 @@ public class ReorderableSectionListPanel extends JPanel
         reorderableList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         reorderableList.setTransferHandler(new ReorderTransferHandler());
 
-        // Custom renderer that respects preferred size
-        reorderableList.setCellRenderer(new ListCellRenderer<BetterNotesSection>() {
+        // One reused summary row per paint instead of a full SectionPanel, with a spacer below as in MainPanel
+        SummaryCellRenderer<BetterNotesSection> renderer = new SummaryCellRenderer<BetterNotesSection>(plugin,
+                Helper.DARKER_GREY_COLOR, BorderFactory.createCompoundBorder(
+                        BorderFactory.createMatteBorder(0, 0, 10, 0, Helper.DARK_GREY_COLOR),
+                        new EmptyBorder(5, 8, 5, 8)))
+        {
             @Override
-            public Component getListCellRendererComponent(JList<? extends BetterNotesSection> list, BetterNotesSection value, int index, boolean isSelected, boolean cellHasFocus) {
-                JPanel wrapper = new JPanel(new BorderLayout());
-                wrapper.setBackground(Helper.DARKER_GREY_COLOR);
-
-                SectionPanel sectionPanel = new SectionPanel(plugin, value, null);
-                sectionPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 5, 0));
-
-                // Ensure the list does not stretch the panel vertically
-                sectionPanel.setMaximumSize(sectionPanel.getPreferredSize());
+            protected String getTitle(BetterNotesSection section)
+            {
+                return section.getName();
+            }
 
-                wrapper.add(sectionPanel, BorderLayout.CENTER);
+            @Override
+            protected String getDetail(BetterNotesSection section)
+            {
+                final int count = section.getNotes().size();
+                return count == 1 ? "1 note" : count + " notes";
+            }
 
-                // Spacer for consistency with MainPanel
-                JPanel spacer = new JPanel();
-                spacer.setPreferredSize(new Dimension(0, 10));
-                spacer.setBackground(Helper.DARKER_GREY_COLOR);
+            @Override
+            protected int getSpriteId(BetterNotesSection section)
+            {
+                return section.getSpriteId();
+            }
 
-                wrapper.add(spacer, BorderLayout.SOUTH);
-                return wrapper;
+            @Override
+            protected int getItemId(BetterNotesSection section)
+            {
+                return section.getItemId();
             }
-        });
+        };
+        reorderableList.setCellRenderer(renderer);
 
-        reorderableList.setFixedCellHeight(-1);  // Dynamic height
+        // Rows all have the same height, so the list does not render every row to measure it
+        reorderableList.setFixedCellHeight(renderer.getRowHeight());
         reorderableList.setBackground(Helper.DARKER_GREY_COLOR);
         reorderableList.setOpaque(true);
 
@@ -91,8 +101,7 @@ public class ReorderableSectionListPanel extends JPanel
             newOrder.add(listModel.getElementAt(i));
         }
 
-        plugin.getSections().clear();
-        plugin.getSections().addAll(newOrder);
+        plugin.getCache().setSectionOrder(newOrder);
         plugin.getDataManager().updateConfig();
         System.out.println("Order saved!");
     }
@@ -3,15 +3,17 @@ package com.betterNotes.ui;
 import com.betterNotes.BetterNotesPlugin;
 import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.icons.UiIcon;
 import com.betterNotes.utility.Helper;
 import com.google.common.collect.ImmutableList;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.game.SpriteManager;
 import net.runelite.client.hiscore.HiscoreSkill;
 import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.ui.components.FlatTextField;
 import net.runelite.client.util.AsyncBufferedImage;
-import net.runelite.client.util.ImageUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -22,23 +24,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 import java.util.List;
 
 import static net.runelite.client.hiscore.HiscoreSkill.*;
 
+@Slf4j
 public class SectionNotePanel extends JPanel {
     private final BetterNotesPlugin plugin;
     private final BetterNotesSection section;
+    @Getter
     private final BetterNotesNote note;
-    private static final ImageIcon MINIMIZE_ICON;
-    private static final ImageIcon MINIMIZE_ICON_HOVER;
-    private static final ImageIcon MAXIMIZE_ICON;
-    private static final ImageIcon MAXIMIZE_ICON_HOVER;
-    private static final ImageIcon MORE_OPTIONS_ICON;
-    private static final ImageIcon MORE_OPTIONS_ICON_HOVER;
-    private static final ImageIcon FULL_SCREEN_ICON;
-    private static final ImageIcon FULL_SCREEN_ICON_HOVER;
+
+    private static final int HEADER_HEIGHT = 40;
+    private static final int EDITOR_HEIGHT = 400;
     private final JLabel minMaxLabel = new JLabel();
     private JPanel nameActions;
     private JLabel expandNote;
@@ -46,30 +44,23 @@ public class SectionNotePanel extends JPanel {
     private JLabel saveButton;
     private JLabel cancelButton;
 
-    private final JPanel expandedContentPanel = new JPanel();
+    private FlatTextField nameField;
 
-    static {
-        BufferedImage downArrow = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/chevron_down.png");
-        MINIMIZE_ICON = new ImageIcon(downArrow);
-        MINIMIZE_ICON_HOVER = new ImageIcon(ImageUtil.luminanceOffset(downArrow, -150));
+    // Icon the header was built with; a different icon needs a new panel
+    private final String renderedIcon;
 
-        BufferedImage rightArrow = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/chevron_right.png");
-        MAXIMIZE_ICON = new ImageIcon(rightArrow);
-        MAXIMIZE_ICON_HOVER = new ImageIcon(ImageUtil.luminanceOffset(rightArrow, -150));
+    private final JPanel expandedContentPanel = new JPanel();
+    private ContentEditorPanel contentEditorPanel;
 
-        BufferedImage moreOptions = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/more_options.png");
-        MORE_OPTIONS_ICON = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(moreOptions, 16, 16), 0.5f));
-        MORE_OPTIONS_ICON_HOVER = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(moreOptions, 16, 16), 1.0f));
-
-        BufferedImage fullScreenImage = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/expand.png");
-        FULL_SCREEN_ICON = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(fullScreenImage, 16, 16), 0.5f));
-        FULL_SCREEN_ICON_HOVER = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(fullScreenImage, 16, 16), 1.0f));
-    }
+    // Frees the editor once the note has stayed collapsed for the configured delay
+    private final Timer editorReleaseTimer = new Timer(0, e -> releaseEditor());
 
     public SectionNotePanel(BetterNotesPlugin plugin, BetterNotesNote note, BetterNotesSection section, final MouseAdapter flatTextFieldMouseAdapter) {
         this.plugin = plugin;
         this.section = section;
         this.note = note;
+        this.renderedIcon = iconKey(note);
+        editorReleaseTimer.setRepeats(false);
 
         setLayout(new BorderLayout());
         setBackground(Helper.DARK_GREY_COLOR);
@@ -115,6 +106,7 @@ public class SectionNotePanel extends JPanel {
 
         FlatTextField nameInput = createNameInput(note.getName(), flatTextFieldMouseAdapter);
         nameInput.setBackground(Helper.DARK_GREY_COLOR);
+        nameField = nameInput;
         JPanel nameActions = createNameActions(nameInput, flatTextFieldMouseAdapter);
         setupMinMaxLabel();
 
@@ -165,13 +157,10 @@ public class SectionNotePanel extends JPanel {
         expandedContentPanel.setBorder(new EmptyBorder(5, 5, 5, 5)); // Uniform padding on all sides
         expandedContentPanel.setVisible(note.isMaximized());
 
-        ContentEditorPanel contentEditorPanel = new ContentEditorPanel(note, plugin);
-        JScrollPane contentScrollPane = new JScrollPane(contentEditorPanel);
-        contentScrollPane.setPreferredSize(new Dimension(0, 400));
-        contentScrollPane.setBorder(BorderFactory.createEmptyBorder());
-        contentScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
-
-        expandedContentPanel.add(contentScrollPane, BorderLayout.CENTER);
+        // Collapsed notes get no editor, so their body is not read until they are expanded
+        if (note.isMaximized()) {
+            createContentEditor();
+        }
         add(expandedContentPanel, BorderLayout.CENTER);
 
         if (note.isNewNote()) {
@@ -181,11 +170,99 @@ public class SectionNotePanel extends JPanel {
     }
 
 
+    /**
+     * Brings the panel in line with its note after a model change, keeping the editor and its state.
+     *
+     * @return false if the panel has to be built again instead, e.g. because the icon changed
+     */
+    public boolean refresh() {
+        if (!iconKey(note).equals(renderedIcon)) {
+            return false;
+        }
+
+        // A rename in progress keeps what the user typed
+        if (!nameField.getTextField().isEditable() && !note.getName().equals(nameField.getText())) {
+            nameField.setText(note.getName());
+        }
+
+        if (note.isMaximized() != expandedContentPanel.isVisible()) {
+            onExpandedChanged();
+            expandedContentPanel.setVisible(note.isMaximized());
+        }
+        updateMinMaxLabel();
+        return true;
+    }
+
+    /**
+     * Height of the panel for a note before it has been laid out: the header, plus the editor when expanded.
+     */
+    public static int estimateHeight(BetterNotesNote note) {
+        return note.isMaximized() ? HEADER_HEIGHT + EDITOR_HEIGHT + 10 : HEADER_HEIGHT;
+    }
+
+    /**
+     * Called when the panel is dropped for good, e.g. once it has scrolled far out of view.
+     */
+    public void release() {
+        editorReleaseTimer.stop();
+        if (contentEditorPanel != null) {
+            contentEditorPanel.dispose();
+            contentEditorPanel = null;
+            plugin.getDataManager().releaseContent(note);
+        }
+    }
+
+    private void onExpandedChanged() {
+        if (note.isMaximized()) {
+            editorReleaseTimer.stop();
+            if (contentEditorPanel == null) {
+                createContentEditor();
+            }
+            return;
+        }
+
+        plugin.getDataManager().releaseContent(note);
+        final int delaySeconds = plugin.getConfig().editorReleaseDelay();
+        if (contentEditorPanel != null && delaySeconds > 0) {
+            editorReleaseTimer.setInitialDelay(delaySeconds * 1000);
+            editorReleaseTimer.restart();
+        }
+    }
+
+    private void releaseEditor() {
+        if (contentEditorPanel == null || note.isMaximized()) {
+            return;
+        }
+
+        contentEditorPanel.dispose();
+        contentEditorPanel = null;
+        expandedContentPanel.removeAll();
+        plugin.getDataManager().releaseContent(note);
+        log.debug("Freed the editor of a collapsed note, {} editors live", ContentEditorPanel.getLiveCount());
+    }
+
+    private static String iconKey(BetterNotesNote note) {
+        if (note.hasSpriteIcon()) {
+            return "sprite:" + note.getSpriteId();
+        }
+        return note.hasItemIcon() ? "item:" + note.getItemId() : "";
+    }
+
+    private void createContentEditor() {
+        contentEditorPanel = new ContentEditorPanel(note, plugin);
+        JScrollPane contentScrollPane = new JScrollPane(contentEditorPanel);
+        contentScrollPane.setPreferredSize(new Dimension(0, EDITOR_HEIGHT));
+        contentScrollPane.setBorder(BorderFactory.createEmptyBorder());
+        contentScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+
+        expandedContentPanel.add(contentScrollPane, BorderLayout.CENTER);
+    }
+
     private JPanel createNameActions(FlatTextField nameInput, MouseAdapter flatTextFieldMouseAdapter) {
         nameActions = new JPanel(new GridBagLayout()) {
             @Override
             public Dimension getPreferredSize() {
-                return new Dimension(super.getPreferredSize().width, 40);
+                return new Dimension(super.getPreferredSize().width, HEADER_HEIGHT);
             }
         };
         nameActions.setBackground(Helper.DARK_GREY_COLOR);
@@ -196,11 +273,11 @@ public class SectionNotePanel extends JPanel {
         saveButton.setForeground(Color.GRAY);
         cancelButton.setForeground(Color.RED);
 
-        moreOptions = new JLabel(MORE_OPTIONS_ICON);
+        moreOptions = new JLabel(UiIcon.MORE_OPTIONS.get());
         moreOptions.setToolTipText("More options");
         moreOptions.setCursor(new Cursor(Cursor.HAND_CURSOR));
 
-        expandNote = new JLabel(FULL_SCREEN_ICON);
+        expandNote = new JLabel(UiIcon.FULL_SCREEN.get());
         expandNote.setToolTipText("Expand note");
         expandNote.setCursor(new Cursor(Cursor.HAND_CURSOR));
         expandNote.addMouseListener(new MouseAdapter() {
@@ -212,12 +289,12 @@ public class SectionNotePanel extends JPanel {
             }
             @Override
             public void mouseEntered(MouseEvent e) {
-                expandNote.setIcon(FULL_SCREEN_ICON_HOVER);
+                expandNote.setIcon(UiIcon.FULL_SCREEN_HOVER.get());
             }
 
             @Override
             public void mouseExited(MouseEvent e) {
-                expandNote.setIcon(FULL_SCREEN_ICON);
+                expandNote.setIcon(UiIcon.FULL_SCREEN.get());
             }
         });
 
@@ -275,12 +352,12 @@ public class SectionNotePanel extends JPanel {
 
             @Override
             public void mouseEntered(MouseEvent e) {
-                moreOptions.setIcon(MORE_OPTIONS_ICON_HOVER);
+                moreOptions.setIcon(UiIcon.MORE_OPTIONS_HOVER.get());
             }
 
             @Override
             public void mouseExited(MouseEvent e) {
-                moreOptions.setIcon(MORE_OPTIONS_ICON);
+                moreOptions.setIcon(UiIcon.MORE_OPTIONS.get());
             }
         });
 
@@ -322,7 +399,7 @@ public class SectionNotePanel extends JPanel {
         minMaxLabel.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseEntered(MouseEvent e) {
-                minMaxLabel.setIcon(note.isMaximized() ? MINIMIZE_ICON_HOVER : MAXIMIZE_ICON_HOVER);
+                minMaxLabel.setIcon(note.isMaximized() ? UiIcon.MINIMIZE_HOVER.get() : UiIcon.MAXIMIZE_HOVER.get());
                 minMaxLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
             }
 
@@ -334,7 +411,8 @@ public class SectionNotePanel extends JPanel {
             @Override
             public void mousePressed(MouseEvent e) {
                 if (SwingUtilities.isLeftMouseButton(e)) {
-                    note.setMaximized(!note.isMaximized());
+                    plugin.getCache().setNoteExpanded(note.getId(), !note.isMaximized());
+                    onExpandedChanged();
                     plugin.getDataManager().updateConfig();
                     updateMinMaxLabel();
 
@@ -351,24 +429,16 @@ public class SectionNotePanel extends JPanel {
 
     private void updateMinMaxLabel() {
         if (note.isMaximized()) {
-            minMaxLabel.setIcon(MINIMIZE_ICON);
+            minMaxLabel.setIcon(UiIcon.MINIMIZE.get());
             minMaxLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
             minMaxLabel.setToolTipText("Click to collapse");
         } else {
-            minMaxLabel.setIcon(MAXIMIZE_ICON);
+            minMaxLabel.setIcon(UiIcon.MAXIMIZE.get());
             minMaxLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
             minMaxLabel.setToolTipText("Click to expand");
         }
     }
 
-    private static BufferedImage setImageOpacity(BufferedImage image, float opacity) {
-        BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = newImage.createGraphics();
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-        g2d.drawImage(image, 0, 0, null);
-        g2d.dispose();
-        return newImage;
-    }
 
     private void startRenaming(FlatTextField nameInput) {
 
@@ -414,12 +484,11 @@ public class SectionNotePanel extends JPanel {
                     String newName = nameInput.getText().trim();
 
                     if (!newName.equals(initialName) && !newName.isEmpty()) {
-                        note.setName(newName);
-                        plugin.getDataManager().updateConfig();
-                        plugin.redrawMainPanel();
+                        plugin.renameNote(note, newName);
+                        endRenaming(nameInput, nameActions, expandNote, moreOptions, saveButton, cancelButton, newName);
+                    } else {
+                        endRenaming(nameInput, nameActions, expandNote, moreOptions, saveButton, cancelButton, initialName);
                     }
-
-                    endRenaming(nameInput, nameActions, expandNote, moreOptions, saveButton, cancelButton, initialName);
                 }
             }
 
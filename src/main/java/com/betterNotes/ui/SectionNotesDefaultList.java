@@ -7,12 +7,17 @@ import com.betterNotes.utility.Helper;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
+import java.util.Collections;
 
 public class SectionNotesDefaultList extends JPanel {
     private final BetterNotesPlugin plugin;
     private final BetterNotesSection section;
 
+    // Only builds panels for notes near the visible area, and keeps them by note id across refreshes so open editors
+    // keep their document, caret and scroll position
+    private final VirtualListPanel<BetterNotesNote, SectionNotePanel> notesList;
+    private JPanel noNotesMessage;
+
     public SectionNotesDefaultList(BetterNotesPlugin plugin, BetterNotesSection section) {
         this.plugin = plugin;
         this.section = section;
@@ -20,23 +25,61 @@ public class SectionNotesDefaultList extends JPanel {
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
         setBackground(Helper.DARKER_GREY_COLOR);
 
+        notesList = new VirtualListPanel<>(5, BetterNotesNote::getId,
+                note -> new SectionNotePanel(plugin, note, section, null),
+                (note, notePanel) -> notePanel.getNote() == note && notePanel.refresh(),
+                SectionNotePanel::estimateHeight,
+                SectionNotePanel::release);
+        notesList.setBackground(Helper.DARKER_GREY_COLOR);
+
+        refresh();
+    }
+
+    /**
+     * Brings the list in line with the section's notes: panels of notes that are still there are refreshed in place,
+     * the others are added or dropped.
+     */
+    public void refresh() {
+        final Component content;
+
         if (section.getNotes().isEmpty() && !plugin.getPanel().isNoteReorder) {
-            add(createNoNotesMessage());
-        } else {
-            List<BetterNotesNote> notes = section.getNotes();
-            int noteCount = notes.size();
-
-            for (int i = 0; i < noteCount; i++) {
-                BetterNotesNote note = notes.get(i);
-                SectionNotePanel notePanel = new SectionNotePanel(plugin, note, section, null);
-                add(notePanel);
-
-                // Add a vertical strut only if this is not the last note
-                if (i < noteCount - 1) {
-                    add(Box.createVerticalStrut(5));
-                }
+            notesList.clear();
+            if (noNotesMessage == null) {
+                noNotesMessage = createNoNotesMessage();
             }
+            content = noNotesMessage;
+        } else {
+            notesList.setRows(section.getNotes());
+            content = notesList;
         }
+
+        if (Helper.syncChildren(this, Collections.singletonList(content))) {
+            revalidate();
+            repaint();
+        }
+    }
+
+    /**
+     * Drops the panel of a note so the next refresh builds it again, e.g. after its body was edited elsewhere.
+     */
+    public void discardNotePanel(String noteId) {
+        notesList.discard(noteId);
+    }
+
+    /**
+     * Frees the editors of every note panel, once the section panel is dropped.
+     */
+    public void release() {
+        notesList.clear();
+    }
+
+    /**
+     * Scrolls the note into view.
+     *
+     * @return the note's panel, or null if the note is not in this list
+     */
+    public SectionNotePanel scrollToNote(BetterNotesNote note) {
+        return notesList.scrollToRow(note);
     }
 
     private JPanel createNoNotesMessage() {
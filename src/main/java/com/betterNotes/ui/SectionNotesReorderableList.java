@@ -4,7 +4,10 @@ import com.betterNotes.BetterNotesPlugin;
 import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
 
+import com.betterNotes.utility.Helper;
+
 import javax.swing.*;
+import javax.swing.border.EmptyBorder;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 import java.awt.*;
@@ -41,19 +44,31 @@ public class SectionNotesReorderableList extends JPanel {
         reorderableList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         reorderableList.setTransferHandler(new ReorderTransferHandler());
 
-        // Use a custom cell renderer to render each note.
-        reorderableList.setCellRenderer(new DefaultListCellRenderer() {
+        // One reused summary row per paint instead of a full SectionNotePanel with its editor.
+        SummaryCellRenderer<BetterNotesNote> renderer = new SummaryCellRenderer<BetterNotesNote>(plugin,
+                Helper.DARK_GREY_COLOR, new EmptyBorder(4, 8, 4, 8)) {
             @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean isSelected, boolean cellHasFocus) {
-                BetterNotesNote note = (BetterNotesNote) value;
-                // SectionNotePanel is assumed to be your custom component to display a note.
-                SectionNotePanel notePanel = new SectionNotePanel(plugin, note, section, null);
-                notePanel.setOpaque(true);
-                notePanel.setBackground(isSelected ? Color.LIGHT_GRAY : Color.DARK_GRAY);
-                return notePanel;
+            protected String getTitle(BetterNotesNote note) {
+                return note.getName();
+            }
+
+            @Override
+            protected String getDetail(BetterNotesNote note) {
+                return null;
             }
-        });
+
+            @Override
+            protected int getSpriteId(BetterNotesNote note) {
+                return note.getSpriteId();
+            }
+
+            @Override
+            protected int getItemId(BetterNotesNote note) {
+                return note.getItemId();
+            }
+        };
+        reorderableList.setCellRenderer(renderer);
+        reorderableList.setFixedCellHeight(renderer.getRowHeight());
 
         // Wrap the JList in a JScrollPane.
         JScrollPane scrollPane = new JScrollPane(reorderableList);
@@ -112,17 +127,8 @@ public class SectionNotesReorderableList extends JPanel {
         for (int i = 0; i < listModel.getSize(); i++) {
             newOrder.add(listModel.getElementAt(i));
         }
-        section.setNotes(newOrder);
-        plugin.getDataManager().updateConfig();
-    }
-
-    /**
-     * Removes the given note from the source section.
-     */
-    public void removeNoteFromSourceSection(BetterNotesNote note, BetterNotesSection sourceSection) {
-        sourceSection.getNotes().remove(note);
+        plugin.getCache().setNoteOrder(section.getId(), newOrder);
         plugin.getDataManager().updateConfig();
-        updateView();
     }
 
     // --- Drag & Drop TransferHandler ---
@@ -166,7 +172,6 @@ public class SectionNotesReorderableList extends JPanel {
                 BetterNotesNoteListTransferable transferable = (BetterNotesNoteListTransferable)
                         info.getTransferable().getTransferData(BetterNotesNoteListTransferable.NOTE_LIST_FLAVOR);
                 List<BetterNotesNote> droppedItems = transferable.getData();
-                BetterNotesSection sourceSection = transferable.getSourceSection();
 
                 if (targetList == sourceList) {
                     // Reordering within the same list.
@@ -190,8 +195,7 @@ public class SectionNotesReorderableList extends JPanel {
                     // Moving between different sections.
                     for (BetterNotesNote item : droppedItems) {
                         targetModel.add(dropIndex++, item);
-                        section.getNotes().add(item);
-                        removeNoteFromSourceSection(item, sourceSection);
+                        plugin.getCache().addNote(section.getId(), item);
                     }
                     saveOrder();
                 }
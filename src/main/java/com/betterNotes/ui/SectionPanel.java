@@ -3,6 +3,7 @@ package com.betterNotes.ui;
 import com.betterNotes.BetterNotesPlugin;
 import com.betterNotes.entities.BetterNotesNote;
 import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.icons.UiIcon;
 import com.betterNotes.utility.Helper;
 import com.google.common.collect.ImmutableList;
 import lombok.Getter;
@@ -12,7 +13,6 @@ import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.ui.components.FlatTextField;
 import net.runelite.client.util.AsyncBufferedImage;
-import net.runelite.client.util.ImageUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -23,7 +23,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 import java.util.List;
 
 import static net.runelite.client.hiscore.HiscoreSkill.*;
@@ -35,44 +34,27 @@ public class SectionPanel extends JPanel {
     private final BetterNotesPlugin plugin;
     @Getter
     public final BetterNotesSection section;
-    private static final ImageIcon MINIMIZE_ICON;
-    private static final ImageIcon MINIMIZE_ICON_HOVER;
-    private static final ImageIcon MAXIMIZE_ICON;
-    private static final ImageIcon MAXIMIZE_ICON_HOVER;
-    private static final ImageIcon MORE_OPTIONS_ICON;
-    private static final ImageIcon MORE_OPTIONS_ICON_HOVER;
-    private static final ImageIcon ADD_NOTE_ICON;
-    private static final ImageIcon ADD_NOTE_ICON_HOVER;
+
+    private static final int HEADER_HEIGHT = 40;
+
     private final JLabel minMaxLabel = new JLabel();
     private JPanel nameActions;
     private JLabel addNote;
     private JLabel moreOptions;
     private JLabel saveButton;
     private JLabel cancelButton;
+    private FlatTextField nameField;
+    private SectionNotesDefaultList notesList;
 
-    private final JPanel expandedContentPanel = new JPanel();
-
-    static {
-        BufferedImage downArrow = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/chevron_down.png");
-        MINIMIZE_ICON = new ImageIcon(downArrow);
-        MINIMIZE_ICON_HOVER = new ImageIcon(ImageUtil.luminanceOffset(downArrow, -150));
-
-        BufferedImage rightArrow = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/chevron_right.png");
-        MAXIMIZE_ICON = new ImageIcon(rightArrow);
-        MAXIMIZE_ICON_HOVER = new ImageIcon(ImageUtil.luminanceOffset(rightArrow, -150));
+    // Icon the header was built with; a different icon needs a new panel
+    private final String renderedIcon;
 
-        BufferedImage moreOptions = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/more_options.png");
-        MORE_OPTIONS_ICON = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(moreOptions, 16, 16), 0.5f));
-        MORE_OPTIONS_ICON_HOVER = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(moreOptions, 16, 16), 1.0f));
-
-        BufferedImage addNote = ImageUtil.loadImageResource(BetterNotesPlugin.class, "/new.png");
-        ADD_NOTE_ICON = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(addNote, 16, 16), 0.5f));
-        ADD_NOTE_ICON_HOVER = new ImageIcon(setImageOpacity(ImageUtil.resizeImage(addNote, 16, 16), 1.0f));
-    }
+    private final JPanel expandedContentPanel = new JPanel();
 
     public SectionPanel(BetterNotesPlugin plugin, BetterNotesSection section, final MouseAdapter flatTextFieldMouseAdapter) {
         this.plugin = plugin;
         this.section = section;
+        this.renderedIcon = iconKey(section);
 
         setLayout(new BorderLayout());
         setBackground(Helper.DARKER_GREY_COLOR);
@@ -118,6 +100,7 @@ public class SectionPanel extends JPanel {
 
         FlatTextField nameInput = createNameInput(section.getName(), flatTextFieldMouseAdapter);
         nameInput.setBackground(Helper.DARKER_GREY_COLOR);
+        nameField = nameInput;
         JPanel nameActions = createNameActions(nameInput, flatTextFieldMouseAdapter);
         setupMinMaxLabel();
 
@@ -177,7 +160,7 @@ public class SectionPanel extends JPanel {
             SectionNotesReorderableList reorderableNotesList = new SectionNotesReorderableList(plugin, section);
             expandedContentPanel.add(reorderableNotesList, BorderLayout.CENTER);
         } else {
-            SectionNotesDefaultList notesList = new SectionNotesDefaultList(plugin, section);
+            notesList = new SectionNotesDefaultList(plugin, section);
             expandedContentPanel.add(notesList, BorderLayout.CENTER);
         }
 
@@ -190,11 +173,86 @@ public class SectionPanel extends JPanel {
     }
 
 
+    /**
+     * Brings the panel in line with its section after a model change, keeping the note panels that are still there.
+     *
+     * @return false if the panel has to be built again instead, e.g. because the icon changed
+     */
+    public boolean refresh() {
+        if (!iconKey(section).equals(renderedIcon)) {
+            return false;
+        }
+
+        // A rename in progress keeps what the user typed
+        if (!nameField.getTextField().isEditable() && !section.getName().equals(nameField.getText())) {
+            nameField.setText(section.getName());
+        }
+
+        updateMinMaxLabel();
+        expandedContentPanel.setVisible(plugin.getPanel().isNoteReorder || section.isMaximized());
+
+        if (notesList != null) {
+            notesList.refresh();
+        }
+        return true;
+    }
+
+    public void discardNotePanel(String noteId) {
+        if (notesList != null) {
+            notesList.discardNotePanel(noteId);
+        }
+    }
+
+    /**
+     * Called when the panel is dropped for good, so the editors of its notes are freed.
+     */
+    public void release() {
+        if (notesList != null) {
+            notesList.release();
+        }
+    }
+
+    /**
+     * Scrolls a note of this section into view.
+     *
+     * @return the note's panel, or null if it is not shown in this section
+     */
+    public SectionNotePanel scrollToNote(BetterNotesNote note) {
+        return notesList != null ? notesList.scrollToNote(note) : null;
+    }
+
+    /**
+     * Height of the panel for a section before it has been laid out, from the estimates of its notes.
+     */
+    public static int estimateHeight(BetterNotesSection section) {
+        if (!section.isMaximized()) {
+            return HEADER_HEIGHT;
+        }
+
+        final List<BetterNotesNote> notes = section.getNotes();
+        if (notes.isEmpty()) {
+            return HEADER_HEIGHT + 10 + HEADER_HEIGHT;
+        }
+
+        int height = HEADER_HEIGHT + 10 + 5 * (notes.size() - 1);
+        for (BetterNotesNote note : notes) {
+            height += SectionNotePanel.estimateHeight(note);
+        }
+        return height;
+    }
+
+    private static String iconKey(BetterNotesSection section) {
+        if (section.hasSpriteIcon()) {
+            return "sprite:" + section.getSpriteId();
+        }
+        return section.hasItemIcon() ? "item:" + section.getItemId() : "";
+    }
+
     private JPanel createNameActions(FlatTextField nameInput, MouseAdapter flatTextFieldMouseAdapter) {
         nameActions = new JPanel(new GridBagLayout()) {
             @Override
             public Dimension getPreferredSize() {
-                return new Dimension(super.getPreferredSize().width, 40);
+                return new Dimension(super.getPreferredSize().width, HEADER_HEIGHT);
             }
         };
         nameActions.setBackground(Helper.DARKER_GREY_COLOR);
@@ -205,10 +263,10 @@ public class SectionPanel extends JPanel {
         saveButton.setForeground(Color.GRAY);
         cancelButton.setForeground(Color.RED);
 
-        moreOptions = new JLabel(MORE_OPTIONS_ICON);
+        moreOptions = new JLabel(UiIcon.MORE_OPTIONS.get());
         moreOptions.setToolTipText("More options");
 
-        addNote = new JLabel(ADD_NOTE_ICON);
+        addNote = new JLabel(UiIcon.ADD_NOTE.get());
         addNote.setToolTipText("Add new note");
         addNote.addMouseListener(new MouseAdapter() {
             @Override
@@ -225,12 +283,12 @@ public class SectionPanel extends JPanel {
 
             @Override
             public void mouseEntered(MouseEvent e) {
-                addNote.setIcon(ADD_NOTE_ICON_HOVER);
+                addNote.setIcon(UiIcon.ADD_NOTE_HOVER.get());
             }
 
             @Override
             public void mouseExited(MouseEvent e) {
-                addNote.setIcon(ADD_NOTE_ICON);
+                addNote.setIcon(UiIcon.ADD_NOTE.get());
             }
         });
 
@@ -288,12 +346,12 @@ public class SectionPanel extends JPanel {
 
             @Override
             public void mouseEntered(MouseEvent e) {
-                moreOptions.setIcon(MORE_OPTIONS_ICON_HOVER);
+                moreOptions.setIcon(UiIcon.MORE_OPTIONS_HOVER.get());
             }
 
             @Override
             public void mouseExited(MouseEvent e) {
-                moreOptions.setIcon(MORE_OPTIONS_ICON);
+                moreOptions.setIcon(UiIcon.MORE_OPTIONS.get());
             }
         });
 
@@ -344,7 +402,7 @@ public class SectionPanel extends JPanel {
         prefixText.setForeground(Color.WHITE);
 
         // Add the icon
-        JLabel addNoteIconLabel = new JLabel(ADD_NOTE_ICON);
+        JLabel addNoteIconLabel = new JLabel(UiIcon.ADD_NOTE.get());
 
         // Add " to create a new one" text
         JLabel suffixText = new JLabel(" to create a new one.");
@@ -387,7 +445,7 @@ public class SectionPanel extends JPanel {
         minMaxLabel.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseEntered(MouseEvent e) {
-                minMaxLabel.setIcon(section.isMaximized() ? MINIMIZE_ICON_HOVER : MAXIMIZE_ICON_HOVER);
+                minMaxLabel.setIcon(section.isMaximized() ? UiIcon.MINIMIZE_HOVER.get() : UiIcon.MAXIMIZE_HOVER.get());
             }
 
             @Override
@@ -398,7 +456,7 @@ public class SectionPanel extends JPanel {
             @Override
             public void mousePressed(MouseEvent e) {
                 if (SwingUtilities.isLeftMouseButton(e)) {
-                    section.setMaximized(!section.isMaximized());
+                    plugin.getCache().changeIsExpanded(!section.isMaximized(), section.getId());
                     plugin.getDataManager().updateConfig();
                     updateMinMaxLabel();
 
@@ -419,22 +477,14 @@ public class SectionPanel extends JPanel {
 
     private void updateMinMaxLabel() {
         if (section.isMaximized()) {
-            minMaxLabel.setIcon(MINIMIZE_ICON);
+            minMaxLabel.setIcon(UiIcon.MINIMIZE.get());
             minMaxLabel.setToolTipText("Click to collapse");
         } else {
-            minMaxLabel.setIcon(MAXIMIZE_ICON);
+            minMaxLabel.setIcon(UiIcon.MAXIMIZE.get());
             minMaxLabel.setToolTipText("Click to expand");
         }
     }
 
-    private static BufferedImage setImageOpacity(BufferedImage image, float opacity) {
-        BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = newImage.createGraphics();
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-        g2d.drawImage(image, 0, 0, null);
-        g2d.dispose();
-        return newImage;
-    }
 
     private void startRenaming(FlatTextField nameInput) {
 
@@ -480,12 +530,11 @@ public class SectionPanel extends JPanel {
                     String newName = nameInput.getText().trim();
 
                     if (!newName.equals(initialName) && !newName.isEmpty()) {
-                        section.setName(newName);
-                        plugin.getDataManager().updateConfig();
-                        plugin.redrawMainPanel();
+                        plugin.changeSectionName(newName, section.getId());
+                        endRenaming(nameInput, nameActions, addNote, moreOptions, saveButton, cancelButton, newName);
+                    } else {
+                        endRenaming(nameInput, nameActions, addNote, moreOptions, saveButton, cancelButton, initialName);
                     }
-
-                    endRenaming(nameInput, nameActions, addNote, moreOptions, saveButton, cancelButton, initialName);
                 }
             }
 
@@ -0,0 +1,130 @@
+package com.betterNotes.ui;
+
+import com.betterNotes.BetterNotesPlugin;
+import com.betterNotes.icons.IconCache;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lightweight list renderer for the reorder lists: one reused row showing an icon, a title and an optional detail
+ * such as a note count. Rendering runs on every paint and drag frame, so it only sets three labels; icons come from the
+ * plugin's image caches and are wrapped once per sprite or item.
+ */
+public abstract class SummaryCellRenderer<T> extends JPanel implements ListCellRenderer<T>
+{
+    private static final int ICON_SIZE = 32;
+
+    private final BetterNotesPlugin plugin;
+    private final Color background;
+
+    private final JLabel iconLabel = new JLabel();
+    private final JLabel titleLabel = new JLabel();
+    private final JLabel detailLabel = new JLabel();
+
+    private final Map<String, Icon> icons = new HashMap<>();
+    // Icons requested from the game and not loaded yet, so each is only requested once
+    private final Set<String> loading = new HashSet<>();
+
+    protected SummaryCellRenderer(BetterNotesPlugin plugin, Color background, Border border)
+    {
+        this.plugin = plugin;
+        this.background = background;
+
+        setLayout(new BorderLayout(8, 0));
+        setBorder(border);
+
+        iconLabel.setPreferredSize(new Dimension(ICON_SIZE, ICON_SIZE));
+        titleLabel.setForeground(Color.WHITE);
+        detailLabel.setFont(FontManager.getRunescapeSmallFont());
+        detailLabel.setForeground(Color.GRAY);
+
+        add(iconLabel, BorderLayout.WEST);
+        add(titleLabel, BorderLayout.CENTER);
+        add(detailLabel, BorderLayout.EAST);
+    }
+
+    protected abstract String getTitle(T value);
+
+    /**
+     * @return text shown on the right of the row, or null for none
+     */
+    protected abstract String getDetail(T value);
+
+    protected abstract int getSpriteId(T value);
+
+    protected abstract int getItemId(T value);
+
+    /**
+     * Height of every row, for {@link JList#setFixedCellHeight}, so the list never has to measure its rows.
+     */
+    public int getRowHeight()
+    {
+        final Insets insets = getInsets();
+        return ICON_SIZE + insets.top + insets.bottom;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends T> list, T value, int index, boolean isSelected,
+                                                  boolean cellHasFocus)
+    {
+        final int spriteId = getSpriteId(value);
+        final int itemId = getItemId(value);
+        iconLabel.setIcon(getIcon(list, spriteId, itemId));
+        // Space is kept for icons that are still loading, so the title does not jump
+        iconLabel.setVisible(spriteId != -1 || itemId != -1);
+        titleLabel.setText(getTitle(value));
+
+        final String detail = getDetail(value);
+        detailLabel.setText(detail);
+        detailLabel.setVisible(detail != null);
+
+        setBackground(isSelected ? ColorScheme.DARK_GRAY_HOVER_COLOR : background);
+        return this;
+    }
+
+    private Icon getIcon(JList<?> list, int spriteId, int itemId)
+    {
+        if (spriteId == -1 && itemId == -1)
+        {
+            return null;
+        }
+
+        final String key = spriteId != -1 ? IconCache.spriteKey(spriteId) : IconCache.itemKey(itemId);
+        final Icon cached = icons.get(key);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        final BufferedImage image = spriteId != -1 ? plugin.getSprite(spriteId) : plugin.getItem(itemId);
+        if (image != null)
+        {
+            final Icon icon = new ImageIcon(image);
+            icons.put(key, icon);
+            return icon;
+        }
+
+        // Not in the plugin's cache yet: load it once and repaint the list when it arrives
+        if (loading.add(key))
+        {
+            if (spriteId != -1)
+            {
+                plugin.getSpriteAsync(spriteId, loaded -> SwingUtilities.invokeLater(list::repaint));
+            }
+            else
+            {
+                plugin.getItemAsync(itemId, loaded -> SwingUtilities.invokeLater(list::repaint));
+            }
+        }
+        return null;
+    }
+}
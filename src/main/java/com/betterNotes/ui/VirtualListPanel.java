@@ -0,0 +1,473 @@
+package com.betterNotes.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyBoundsAdapter;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Vertical list that only holds components for the rows in and near the visible part of the enclosing scroll pane.
+ * Rows further away are stood in for by their height, as measured the last time they were shown or estimated until
+ * then, so the scroll range stays right while thousands of rows cost next to nothing.
+ * <p>
+ * Components are kept by row key. A row scrolled out of view parks its component in a small pool, and bringing the row
+ * back or refreshing the rows reuses it, so editors keep their state. Only to be used on the EDT.
+ */
+public class VirtualListPanel<T, C extends JComponent> extends JPanel
+{
+    // Recently detached components kept for reuse
+    private static final int POOL_SIZE = 16;
+
+    // Rows built ahead of the visible area, as a share of its height
+    private static final float OVERSCAN = 0.5f;
+
+    private static final class Measurement
+    {
+        final int estimate;
+        final int height;
+
+        Measurement(final int estimate, final int height)
+        {
+            this.estimate = estimate;
+            this.height = height;
+        }
+    }
+
+    private final int gap;
+    private final Function<T, String> keyOf;
+    private final Function<T, C> factory;
+    private final BiPredicate<T, C> reuse;
+    private final ToIntFunction<T> estimate;
+    private final Consumer<C> discard;
+
+    private List<T> rows = Collections.emptyList();
+    private final Map<String, Integer> rowIndex = new HashMap<>();
+
+    private final Map<String, C> attached = new HashMap<>();
+    private final LinkedHashMap<String, C> pool = new LinkedHashMap<>(POOL_SIZE, 0.75f, true);
+    // Pooled components that have not been checked against their row since the rows were last set
+    private final Set<String> stale = new HashSet<>();
+
+    // A measurement holds while the row's estimate is unchanged, e.g. until a note is expanded or collapsed
+    private final Map<String, Measurement> heights = new HashMap<>();
+    private int[] offsets = new int[1];
+    private boolean offsetsDirty;
+    private int reportedHeight;
+
+    /**
+     * @param gap      space between rows
+     * @param keyOf    stable key of a row, e.g. its id
+     * @param factory  builds the component of a row
+     * @param reuse    whether a kept component can go on showing the (possibly updated) row, refreshing it if so
+     * @param estimate height of a row before it has been measured
+     * @param discard  called for components that are dropped for good
+     */
+    public VirtualListPanel(int gap, Function<T, String> keyOf, Function<T, C> factory, BiPredicate<T, C> reuse,
+                            ToIntFunction<T> estimate, Consumer<C> discard)
+    {
+        this.gap = gap;
+        this.keyOf = keyOf;
+        this.factory = factory;
+        this.reuse = reuse;
+        this.estimate = estimate;
+        this.discard = discard;
+
+        setLayout(new RowLayout());
+
+        // Scrolling moves an ancestor, so these cover both scrolling and the list itself moving or resizing
+        addHierarchyBoundsListener(new HierarchyBoundsAdapter()
+        {
+            @Override
+            public void ancestorMoved(HierarchyEvent e)
+            {
+                updateWindow();
+            }
+
+            @Override
+            public void ancestorResized(HierarchyEvent e)
+            {
+                updateWindow();
+            }
+        });
+        addComponentListener(new ComponentAdapter()
+        {
+            @Override
+            public void componentResized(ComponentEvent e)
+            {
+                updateWindow();
+            }
+
+            @Override
+            public void componentMoved(ComponentEvent e)
+            {
+                updateWindow();
+            }
+        });
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0)
+            {
+                updateWindow();
+            }
+        });
+    }
+
+    /**
+     * Replaces the rows. Components of rows that are still there are kept and refreshed, the others are dropped.
+     */
+    public void setRows(List<T> newRows)
+    {
+        rows = new ArrayList<>(newRows);
+        rowIndex.clear();
+        final Map<String, T> rowsByKey = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++)
+        {
+            final T row = rows.get(i);
+            final String key = keyOf.apply(row);
+            rowIndex.put(key, i);
+            rowsByKey.put(key, row);
+        }
+
+        // Attached components are on screen, so they are refreshed now; parked ones when they are next shown
+        final Iterator<Map.Entry<String, C>> attachedIterator = attached.entrySet().iterator();
+        while (attachedIterator.hasNext())
+        {
+            final Map.Entry<String, C> entry = attachedIterator.next();
+            final T row = rowsByKey.get(entry.getKey());
+            if (row == null || !reuse.test(row, entry.getValue()))
+            {
+                remove(entry.getValue());
+                attachedIterator.remove();
+                discard.accept(entry.getValue());
+            }
+        }
+
+        final Iterator<Map.Entry<String, C>> poolIterator = pool.entrySet().iterator();
+        while (poolIterator.hasNext())
+        {
+            final Map.Entry<String, C> entry = poolIterator.next();
+            if (rowsByKey.containsKey(entry.getKey()))
+            {
+                stale.add(entry.getKey());
+            }
+            else
+            {
+                poolIterator.remove();
+                discard.accept(entry.getValue());
+            }
+        }
+        stale.retainAll(pool.keySet());
+        heights.keySet().retainAll(rowsByKey.keySet());
+
+        offsetsDirty = true;
+        updateWindow();
+        revalidate();
+        repaint();
+    }
+
+    public void clear()
+    {
+        setRows(Collections.emptyList());
+    }
+
+    /**
+     * Drops the component of a row so it is built again the next time it is shown.
+     */
+    public void discard(String key)
+    {
+        C component = attached.remove(key);
+        if (component != null)
+        {
+            remove(component);
+        }
+        else
+        {
+            component = pool.remove(key);
+            stale.remove(key);
+        }
+
+        if (component != null)
+        {
+            discard.accept(component);
+            updateWindow();
+        }
+    }
+
+    /**
+     * Every component currently kept, shown or parked.
+     */
+    public List<C> getComponentsKept()
+    {
+        final List<C> components = new ArrayList<>(attached.values());
+        components.addAll(pool.values());
+        return components;
+    }
+
+    /**
+     * Scrolls the row into view, building its component if needed.
+     *
+     * @return the row's component, or null if the row is not in the list or the list is not showing
+     */
+    public C scrollToRow(T row)
+    {
+        final String key = keyOf.apply(row);
+        final Integer index = rowIndex.get(key);
+        if (index == null)
+        {
+            return null;
+        }
+
+        if (offsetsDirty)
+        {
+            computeOffsets();
+        }
+        scrollRectToVisible(new Rectangle(0, offsets[index], getWidth(), height(index)));
+        updateWindow();
+        return attached.get(key);
+    }
+
+    @Override
+    public Dimension getMaximumSize()
+    {
+        return new Dimension(Integer.MAX_VALUE, getPreferredSize().height);
+    }
+
+    /**
+     * Attaches the rows near the visible area, parks the others and lays out what is attached.
+     */
+    private void updateWindow()
+    {
+        for (int pass = 0; pass < 3; pass++)
+        {
+            if (offsetsDirty)
+            {
+                computeOffsets();
+            }
+            if (isShowing())
+            {
+                attachVisibleRows();
+            }
+            // Newly measured rows shift the ones below, which may change what is visible
+            if (!measureAttached())
+            {
+                break;
+            }
+        }
+        if (offsetsDirty)
+        {
+            computeOffsets();
+        }
+
+        final int width = getWidth();
+        for (final Map.Entry<String, C> entry : attached.entrySet())
+        {
+            final int index = rowIndex.get(entry.getKey());
+            final C component = entry.getValue();
+            component.setBounds(0, offsets[index], width, height(index));
+            if (!component.isValid())
+            {
+                component.validate();
+            }
+        }
+
+        if (offsets[rows.size()] != reportedHeight)
+        {
+            reportedHeight = offsets[rows.size()];
+            revalidate();
+        }
+        repaint();
+    }
+
+    private void attachVisibleRows()
+    {
+        final Set<String> window = new HashSet<>();
+        final Rectangle visible = getVisibleRect();
+        if (!visible.isEmpty() && !rows.isEmpty())
+        {
+            final int overscan = (int) (visible.height * OVERSCAN);
+            final int last = rowAt(visible.y + visible.height + overscan);
+            for (int i = rowAt(visible.y - overscan); i <= last; i++)
+            {
+                window.add(attach(i));
+            }
+        }
+
+        // The row holding the focus stays, so typing in an editor scrolled out of view is not cut off
+        final Component focusOwner = KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner();
+        final Iterator<Map.Entry<String, C>> iterator = attached.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            final Map.Entry<String, C> entry = iterator.next();
+            final C component = entry.getValue();
+            if (window.contains(entry.getKey())
+                || (focusOwner != null && SwingUtilities.isDescendingFrom(focusOwner, component)))
+            {
+                continue;
+            }
+
+            remove(component);
+            iterator.remove();
+            park(entry.getKey(), component);
+        }
+    }
+
+    private String attach(int index)
+    {
+        final T row = rows.get(index);
+        final String key = keyOf.apply(row);
+        if (attached.containsKey(key))
+        {
+            return key;
+        }
+
+        C component = pool.remove(key);
+        if (component != null && stale.remove(key) && !reuse.test(row, component))
+        {
+            discard.accept(component);
+            component = null;
+        }
+        if (component == null)
+        {
+            component = factory.apply(row);
+        }
+
+        add(component);
+        attached.put(key, component);
+        return key;
+    }
+
+    private void park(String key, C component)
+    {
+        pool.put(key, component);
+        if (pool.size() > POOL_SIZE)
+        {
+            final Iterator<Map.Entry<String, C>> eldest = pool.entrySet().iterator();
+            final Map.Entry<String, C> entry = eldest.next();
+            eldest.remove();
+            stale.remove(entry.getKey());
+            discard.accept(entry.getValue());
+        }
+    }
+
+    /**
+     * Records the preferred height of every attached component.
+     *
+     * @return true if any height changed
+     */
+    private boolean measureAttached()
+    {
+        boolean changed = false;
+        for (final Map.Entry<String, C> entry : attached.entrySet())
+        {
+            final int index = rowIndex.get(entry.getKey());
+            final int measured = entry.getValue().getPreferredSize().height;
+            if (measured != height(index))
+            {
+                heights.put(entry.getKey(), new Measurement(estimate.applyAsInt(rows.get(index)), measured));
+                changed = true;
+            }
+        }
+
+        if (changed)
+        {
+            offsetsDirty = true;
+        }
+        return changed;
+    }
+
+    private int height(int index)
+    {
+        final T row = rows.get(index);
+        final int estimated = estimate.applyAsInt(row);
+        final Measurement measurement = heights.get(keyOf.apply(row));
+        return measurement != null && measurement.estimate == estimated ? measurement.height : estimated;
+    }
+
+    // offsets[i] is the top of row i, offsets[rows.size()] the height of the whole list
+    private void computeOffsets()
+    {
+        final int count = rows.size();
+        if (offsets.length != count + 1)
+        {
+            offsets = new int[count + 1];
+        }
+
+        int y = 0;
+        for (int i = 0; i < count; i++)
+        {
+            offsets[i] = y;
+            y += height(i) + (i < count - 1 ? gap : 0);
+        }
+        offsets[count] = y;
+        offsetsDirty = false;
+    }
+
+    // Row at the given height, clamped to the list
+    private int rowAt(int y)
+    {
+        int low = 0;
+        int high = rows.size() - 1;
+        while (low < high)
+        {
+            final int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= y)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private class RowLayout implements LayoutManager
+    {
+        @Override
+        public void addLayoutComponent(String name, Component comp)
+        {
+        }
+
+        @Override
+        public void removeLayoutComponent(Component comp)
+        {
+        }
+
+        @Override
+        public Dimension preferredLayoutSize(Container parent)
+        {
+            if (offsetsDirty)
+            {
+                computeOffsets();
+            }
+            return new Dimension(0, offsets[rows.size()]);
+        }
+
+        @Override
+        public Dimension minimumLayoutSize(Container parent)
+        {
+            return preferredLayoutSize(parent);
+        }
+
+        @Override
+        public void layoutContainer(Container parent)
+        {
+            updateWindow();
+        }
+    }
+}
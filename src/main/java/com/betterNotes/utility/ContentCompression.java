@@ -0,0 +1,129 @@
+package com.betterNotes.utility;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression for large note bodies, both for the stored body keys and for bodies kept in memory.
+ */
+@Slf4j
+public final class ContentCompression
+{
+    // Bodies shorter than this stay plain, the Deflate and Base64 overhead would outweigh the savings
+    public static final int THRESHOLD_CHARS = 1024;
+
+    // Marks a compressed stored body; plain bodies are stored as is
+    public static final String STORED_PREFIX = "deflate:";
+
+    private ContentCompression()
+    {
+    }
+
+    public static boolean shouldCompress(final String content)
+    {
+        return content != null && content.length() >= THRESHOLD_CHARS;
+    }
+
+    public static byte[] deflate(final String content)
+    {
+        final byte[] input = content.getBytes(StandardCharsets.UTF_8);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(input);
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 16);
+            final byte[] buffer = new byte[4096];
+            while (!deflater.finished())
+            {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    public static String inflate(final byte[] compressed)
+    {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(compressed);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            final byte[] buffer = new byte[4096];
+            while (!inflater.finished())
+            {
+                final int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new IllegalArgumentException("Truncated compressed content");
+                }
+                out.write(buffer, 0, length);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+        catch (DataFormatException e)
+        {
+            throw new IllegalArgumentException("Malformed compressed content", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Stored form of a body: compressed and Base64 wrapped when large, otherwise the body itself.
+     */
+    public static String encode(final String content)
+    {
+        // A plain body that starts with the prefix is always compressed, or it could read back as a compressed one
+        final boolean ambiguous = content != null && content.startsWith(STORED_PREFIX);
+        if (!shouldCompress(content) && !ambiguous)
+        {
+            return content;
+        }
+
+        // Incompressible bodies are cheaper plain than Base64 wrapped
+        final String encoded = encode(deflate(content));
+        return ambiguous || encoded.length() < content.length() ? encoded : content;
+    }
+
+    /**
+     * Stored form of an already compressed body, so bodies compressed in memory are not compressed twice.
+     */
+    public static String encode(final byte[] compressed)
+    {
+        return STORED_PREFIX + Base64.getEncoder().encodeToString(compressed);
+    }
+
+    public static String decode(final String stored)
+    {
+        if (stored == null || !stored.startsWith(STORED_PREFIX))
+        {
+            return stored;
+        }
+
+        try
+        {
+            return inflate(Base64.getDecoder().decode(stored.substring(STORED_PREFIX.length())));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // A plain body that merely starts with the prefix
+            log.debug("Body starts with the compression prefix but is not compressed, reading it as text");
+            return stored;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import net.runelite.client.ui.ColorScheme;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
+import java.util.List;
 
 public class Helper
 {
@@ -26,4 +27,37 @@ public class Helper
         }
         return true;
     }
+
+    /**
+     * Makes the container's children exactly the given components, in order. Components already in the right place are
+     * left alone, so their state (focus aside) survives; only missing or misplaced ones are added or moved.
+     *
+     * @return true if anything was added, moved or removed
+     */
+    public static boolean syncChildren(Container container, List<? extends Component> children)
+    {
+        boolean changed = false;
+        for (int i = 0; i < children.size(); i++)
+        {
+            final Component child = children.get(i);
+            if (i < container.getComponentCount() && container.getComponent(i) == child)
+            {
+                continue;
+            }
+
+            if (child.getParent() == container)
+            {
+                container.remove(child);
+            }
+            container.add(child, i);
+            changed = true;
+        }
+
+        while (container.getComponentCount() > children.size())
+        {
+            container.remove(container.getComponentCount() - 1);
+            changed = true;
+        }
+        return changed;
+    }
 }
\ No newline at end of file
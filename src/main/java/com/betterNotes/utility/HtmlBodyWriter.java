@@ -0,0 +1,253 @@
+package com.betterNotes.utility;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Serializes an editor document into the stored note format: the inside of the body as written by
+ * {@link HTMLWriter}, with line breaks turned into {@code <br>}, trimmed, and without one leading {@code <br>}.
+ * <p>
+ * The output is the same as writing the whole document and running the old regular expressions over it, but the
+ * writer only keeps the body while the document is being written and finishes it in a single pass, reusing its
+ * buffers between calls. Not thread-safe.
+ */
+public class HtmlBodyWriter
+{
+    // Buffers grown past this are dropped after use instead of being kept for the next call
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    private static final String BODY_START = "<body";
+    private static final String BODY_END = "</body>";
+
+    private enum State
+    {
+        BEFORE_BODY,
+        IN_BODY_TAG,
+        IN_BODY,
+        AFTER_BODY
+    }
+
+    private final BodyFilter filter = new BodyFilter();
+    private StringBuilder result = new StringBuilder();
+
+    public String write(final HTMLDocument doc) throws IOException, BadLocationException
+    {
+        filter.reset();
+        new HTMLWriter(filter, doc, 0, doc.getLength()).write();
+
+        final String fragment;
+        if (filter.state == State.AFTER_BODY && !filter.ambiguous)
+        {
+            fragment = toStoredFormat(filter.body);
+        }
+        else
+        {
+            // Not the single body the filter expects, e.g. a body tag inside a comment: take the old path
+            final StringWriter writer = new StringWriter();
+            new HTMLWriter(writer, doc, 0, doc.getLength()).write();
+            fragment = legacyStoredFormat(writer.toString());
+        }
+
+        filter.release();
+        if (result.capacity() > MAX_RETAINED_CAPACITY)
+        {
+            result = new StringBuilder();
+        }
+        return fragment;
+    }
+
+    /**
+     * The stored format as it has always been produced, from the full output of {@link HTMLWriter}.
+     */
+    public static String legacyStoredFormat(final String fullContent)
+    {
+        // Extract the content inside the <body> tags
+        String bodyContent = fullContent.replaceAll("(?s).*<body.*?>(.*?)</body>.*", "$1");
+
+        // Convert newlines back to <br> tags for storage
+        bodyContent = bodyContent
+                .replaceAll("\r?\n", "<br>") // Convert newlines to <br>
+                .trim(); // Remove surrounding whitespace
+
+        // Remove leading <br> tag if it exists
+        if (bodyContent.startsWith("<br>"))
+        {
+            bodyContent = bodyContent.substring(4).trim();
+        }
+
+        return bodyContent;
+    }
+
+    // Same steps as legacyStoredFormat, over the body alone and in one pass
+    private String toStoredFormat(final CharSequence body)
+    {
+        final StringBuilder out = result;
+        out.setLength(0);
+
+        final int length = body.length();
+        int i = 0;
+        while (i < length)
+        {
+            final char c = body.charAt(i);
+            if (c == '\n' || (c == '\r' && i + 1 < length && body.charAt(i + 1) == '\n'))
+            {
+                out.append("<br>");
+                i += c == '\r' ? 2 : 1;
+            }
+            else
+            {
+                // Leading whitespace goes, as with trim(); newlines are not whitespace any more at this point
+                if (c > ' ' || out.length() > 0)
+                {
+                    out.append(c);
+                }
+                i++;
+            }
+        }
+
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) <= ' ')
+        {
+            end--;
+        }
+
+        int start = 0;
+        if (end >= 4 && out.charAt(0) == '<' && out.charAt(1) == 'b' && out.charAt(2) == 'r' && out.charAt(3) == '>')
+        {
+            start = 4;
+            while (start < end && out.charAt(start) <= ' ')
+            {
+                start++;
+            }
+        }
+        return out.substring(start, end);
+    }
+
+    /**
+     * Drops everything {@link HTMLWriter} writes outside the body and keeps what is inside it.
+     */
+    private static final class BodyFilter extends Writer
+    {
+        private StringBuilder body = new StringBuilder();
+        private State state;
+        private int matched;
+        // A second body start tag anywhere, which the old expression would have read differently
+        private boolean ambiguous;
+
+        void reset()
+        {
+            body.setLength(0);
+            state = State.BEFORE_BODY;
+            matched = 0;
+            ambiguous = false;
+        }
+
+        void release()
+        {
+            if (body.capacity() > MAX_RETAINED_CAPACITY)
+            {
+                body = new StringBuilder();
+            }
+            else
+            {
+                body.setLength(0);
+            }
+        }
+
+        @Override
+        public void write(final char[] chars, final int offset, final int length)
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                accept(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(final String text, final int offset, final int length)
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                accept(text.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(final int c)
+        {
+            accept((char) c);
+        }
+
+        private void accept(final char c)
+        {
+            switch (state)
+            {
+                case BEFORE_BODY:
+                    matched = c == BODY_START.charAt(matched) ? matched + 1 : (c == '<' ? 1 : 0);
+                    if (matched == BODY_START.length())
+                    {
+                        state = State.IN_BODY_TAG;
+                    }
+                    break;
+                case IN_BODY_TAG:
+                    if (c == '>')
+                    {
+                        state = State.IN_BODY;
+                    }
+                    break;
+                case IN_BODY:
+                    body.append(c);
+                    if (c == '>' && endsWith(BODY_END))
+                    {
+                        body.setLength(body.length() - BODY_END.length());
+                        state = State.AFTER_BODY;
+                        matched = 0;
+                    }
+                    else if (c == 'y' && endsWith(BODY_START))
+                    {
+                        ambiguous = true;
+                    }
+                    break;
+                default:
+                    matched = c == BODY_START.charAt(matched) ? matched + 1 : (c == '<' ? 1 : 0);
+                    if (matched == BODY_START.length())
+                    {
+                        ambiguous = true;
+                        matched = 0;
+                    }
+                    break;
+            }
+        }
+
+        private boolean endsWith(final String suffix)
+        {
+            final int start = body.length() - suffix.length();
+            if (start < 0)
+            {
+                return false;
+            }
+            for (int i = 0; i < suffix.length(); i++)
+            {
+                if (body.charAt(start + i) != suffix.charAt(i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.betterNotes.utility;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.text.html.HTMLDocument;
+import java.util.Enumeration;
+
+/**
+ * Read-only copy of an editor document's text and element tree, so it can be written out on another thread while the
+ * editor keeps changing the original. Only what {@link javax.swing.text.html.HTMLWriter} reads is copied: the text,
+ * and per element its name, offsets and attributes. Attribute sets are immutable and shared with the original, so a
+ * snapshot costs one small object per element, far less than writing the document out.
+ */
+public final class HtmlDocumentSnapshot extends HTMLDocument
+{
+    // The document's text plus the newline every document ends with
+    private final char[] text;
+    private final SnapshotElement root;
+
+    private HtmlDocumentSnapshot(final HTMLDocument doc) throws BadLocationException
+    {
+        super(doc.getStyleSheet());
+        text = (doc.getText(0, doc.getLength()) + "\n").toCharArray();
+        root = new SnapshotElement(this, null, doc.getDefaultRootElement());
+        putProperty(DefaultEditorKit.EndOfLineStringProperty, doc.getProperty(DefaultEditorKit.EndOfLineStringProperty));
+        putProperty(AdditionalComments, doc.getProperty(AdditionalComments));
+    }
+
+    /**
+     * Copies the document. Call while it cannot change, e.g. on the EDT or under its read lock.
+     */
+    public static HtmlDocumentSnapshot of(final HTMLDocument doc) throws BadLocationException
+    {
+        return new HtmlDocumentSnapshot(doc);
+    }
+
+    @Override
+    public Element getDefaultRootElement()
+    {
+        // Null while the document's own constructor runs
+        return root != null ? root : super.getDefaultRootElement();
+    }
+
+    @Override
+    public int getLength()
+    {
+        return text != null ? text.length - 1 : super.getLength();
+    }
+
+    @Override
+    public String getText(final int offset, final int length) throws BadLocationException
+    {
+        checkRange(offset, length);
+        return new String(text, offset, length);
+    }
+
+    @Override
+    public void getText(final int offset, final int length, final Segment txt) throws BadLocationException
+    {
+        checkRange(offset, length);
+        txt.array = text;
+        txt.offset = offset;
+        txt.count = length;
+    }
+
+    private void checkRange(final int offset, final int length) throws BadLocationException
+    {
+        if (offset < 0 || length < 0 || offset + length > text.length)
+        {
+            throw new BadLocationException("Invalid range", offset);
+        }
+    }
+
+    /**
+     * An element of the snapshot. Like the elements of {@link HTMLDocument} it is its own attribute set, looking up
+     * attributes it does not define in its parent and having no resolve parent.
+     */
+    private static final class SnapshotElement implements Element, AttributeSet
+    {
+        private final HtmlDocumentSnapshot document;
+        private final SnapshotElement parent;
+        private final String name;
+        private final AttributeSet attributes;
+        private final int startOffset;
+        private final int endOffset;
+        private final SnapshotElement[] children;
+
+        SnapshotElement(final HtmlDocumentSnapshot document, final SnapshotElement parent, final Element element)
+        {
+            this.document = document;
+            this.parent = parent;
+            this.name = element.getName();
+            // The original's own attributes, which are immutable, without its parent's
+            this.attributes = element.getAttributes().copyAttributes();
+            this.startOffset = element.getStartOffset();
+            this.endOffset = element.getEndOffset();
+
+            final int count = element.isLeaf() ? 0 : element.getElementCount();
+            this.children = element.isLeaf() ? null : new SnapshotElement[count];
+            for (int i = 0; i < count; i++)
+            {
+                children[i] = new SnapshotElement(document, this, element.getElement(i));
+            }
+        }
+
+        @Override
+        public HtmlDocumentSnapshot getDocument()
+        {
+            return document;
+        }
+
+        @Override
+        public Element getParentElement()
+        {
+            return parent;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public AttributeSet getAttributes()
+        {
+            return this;
+        }
+
+        @Override
+        public int getStartOffset()
+        {
+            return startOffset;
+        }
+
+        @Override
+        public int getEndOffset()
+        {
+            return endOffset;
+        }
+
+        @Override
+        public int getElementIndex(final int offset)
+        {
+            if (children == null || children.length == 0)
+            {
+                return -1;
+            }
+            for (int i = 0; i < children.length; i++)
+            {
+                if (offset < children[i].endOffset)
+                {
+                    return i;
+                }
+            }
+            return children.length - 1;
+        }
+
+        @Override
+        public int getElementCount()
+        {
+            return children == null ? 0 : children.length;
+        }
+
+        @Override
+        public Element getElement(final int index)
+        {
+            return children != null && index >= 0 && index < children.length ? children[index] : null;
+        }
+
+        @Override
+        public boolean isLeaf()
+        {
+            return children == null;
+        }
+
+        @Override
+        public int getAttributeCount()
+        {
+            return attributes.getAttributeCount();
+        }
+
+        @Override
+        public boolean isDefined(final Object attrName)
+        {
+            return attributes.isDefined(attrName);
+        }
+
+        @Override
+        public boolean isEqual(final AttributeSet attr)
+        {
+            return attributes.isEqual(attr);
+        }
+
+        @Override
+        public AttributeSet copyAttributes()
+        {
+            return attributes.copyAttributes();
+        }
+
+        @Override
+        public Object getAttribute(final Object key)
+        {
+            final Object value = attributes.getAttribute(key);
+            return value != null || parent == null ? value : parent.getAttribute(key);
+        }
+
+        @Override
+        public Enumeration<?> getAttributeNames()
+        {
+            return attributes.getAttributeNames();
+        }
+
+        @Override
+        public boolean containsAttribute(final Object attrName, final Object value)
+        {
+            return attributes.containsAttribute(attrName, value);
+        }
+
+        @Override
+        public boolean containsAttributes(final AttributeSet attrs)
+        {
+            return attributes.containsAttributes(attrs);
+        }
+
+        @Override
+        public AttributeSet getResolveParent()
+        {
+            return null;
+        }
+    }
+}
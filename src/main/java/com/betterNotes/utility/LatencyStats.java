@@ -0,0 +1,70 @@
+package com.betterNotes.utility;
+
+import java.util.Arrays;
+
+/**
+ * Small thread-safe latency recorder keeping totals and a ring of recent samples for percentiles.
+ */
+public class LatencyStats
+{
+    private static final int WINDOW = 256;
+
+    private final long[] recentNanos = new long[WINDOW];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+
+    public synchronized void record(final long nanos)
+    {
+        recentNanos[(int) (count % WINDOW)] = nanos;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        lastNanos = nanos;
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    public synchronized double getLastMillis()
+    {
+        return lastNanos / 1_000_000.0;
+    }
+
+    public synchronized double getMaxMillis()
+    {
+        return maxNanos / 1_000_000.0;
+    }
+
+    public synchronized double getAverageMillis()
+    {
+        return count == 0 ? 0 : totalNanos / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Percentile over the most recent samples, e.g. 0.99 for P99.
+     */
+    public synchronized double getPercentileMillis(final double percentile)
+    {
+        final int size = (int) Math.min(count, WINDOW);
+        if (size == 0)
+        {
+            return 0;
+        }
+
+        final long[] sorted = Arrays.copyOf(recentNanos, size);
+        Arrays.sort(sorted);
+        final int index = (int) Math.min(size - 1, Math.ceil(percentile * size) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("n=%d last=%.2fms avg=%.2fms p99=%.2fms max=%.2fms",
+                count, getLastMillis(), getAverageMillis(), getPercentileMillis(0.99), getMaxMillis());
+    }
+}
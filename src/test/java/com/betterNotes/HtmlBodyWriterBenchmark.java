@@ -0,0 +1,97 @@
+package com.betterNotes;
+
+import com.betterNotes.utility.HtmlBodyWriter;
+
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import java.awt.Color;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * Compares saving a note through HtmlBodyWriter against the old full write plus regular expressions, on a generated
+ * 100 KB note with mixed styles. Also checks that both produce the same stored text.
+ */
+public class HtmlBodyWriterBenchmark
+{
+	private static final int NOTE_CHARS = 100_000;
+	private static final int ITERATIONS = 50;
+
+	public static void main(String[] args) throws Exception
+	{
+		final HTMLDocument doc = generate();
+		final HtmlBodyWriter bodyWriter = new HtmlBodyWriter();
+
+		final String legacy = legacy(doc);
+		final String streamed = bodyWriter.write(doc);
+		System.out.printf("Stored note: %d chars, identical: %b%n", legacy.length(), legacy.equals(streamed));
+
+		for (int round = 0; round < 2; round++)
+		{
+			// First round warms up the JIT
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				legacy(doc);
+			}
+			final long legacyNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				bodyWriter.write(doc);
+			}
+			final long streamedNanos = System.nanoTime() - start;
+
+			System.out.printf("Round %d: legacy %.2fms, body writer %.2fms per save%n", round,
+				legacyNanos / 1e6 / ITERATIONS, streamedNanos / 1e6 / ITERATIONS);
+		}
+	}
+
+	private static String legacy(HTMLDocument doc) throws Exception
+	{
+		final StringWriter writer = new StringWriter();
+		new HTMLEditorKit().write(writer, doc, 0, doc.getLength());
+		return HtmlBodyWriter.legacyStoredFormat(writer.toString());
+	}
+
+	private static HTMLDocument generate() throws Exception
+	{
+		final Random random = new Random(42);
+		final StringBuilder html = new StringBuilder();
+		while (html.length() < NOTE_CHARS)
+		{
+			html.append("Kill the dragon with ").append(random.nextInt(1000)).append(" prayer points ");
+			if (random.nextInt(5) == 0)
+			{
+				html.append("<br>");
+			}
+		}
+
+		final HTMLDocument doc = new HTMLDocument();
+		new HTMLEditorKit().read(new StringReader(html.toString()), doc, 0);
+
+		// Styles as applied from the editor toolbar
+		for (int offset = 0; offset + 40 < doc.getLength(); offset += 200 + random.nextInt(200))
+		{
+			final SimpleAttributeSet style = new SimpleAttributeSet();
+			switch (random.nextInt(3))
+			{
+				case 0:
+					StyleConstants.setBold(style, true);
+					break;
+				case 1:
+					StyleConstants.setForeground(style, new Color(random.nextInt(0xFFFFFF)));
+					break;
+				default:
+					StyleConstants.setFontSize(style, 18);
+					break;
+			}
+			doc.setCharacterAttributes(offset, 10 + random.nextInt(30), style, false);
+		}
+		return doc;
+	}
+}
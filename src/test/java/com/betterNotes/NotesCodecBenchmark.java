@@ -0,0 +1,127 @@
+package com.betterNotes;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.storage.NoteShard;
+import com.betterNotes.storage.NotesBinaryCodec;
+import com.betterNotes.storage.SectionShard;
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the binary shard format against Gson on the section and note shards of a generated model: encoded size and
+ * encode/decode time.
+ */
+public class NotesCodecBenchmark
+{
+	private static final int SECTIONS = 20;
+	private static final int NOTES_PER_SECTION = 25;
+	private static final int ITERATIONS = 200;
+
+	public static void main(String[] args)
+	{
+		final Gson gson = new Gson();
+		final NotesBinaryCodec codec = new NotesBinaryCodec();
+		final List<SectionShard> sectionShards = new ArrayList<>();
+		final List<NoteShard> noteShards = new ArrayList<>();
+		for (final BetterNotesSection section : generate())
+		{
+			sectionShards.add(SectionShard.of(section));
+			for (final BetterNotesNote note : section.getNotes())
+			{
+				noteShards.add(NoteShard.of(note));
+			}
+		}
+
+		final List<String> jsonSections = new ArrayList<>();
+		final List<String> jsonNotes = new ArrayList<>();
+		final List<String> binarySections = new ArrayList<>();
+		final List<String> binaryNotes = new ArrayList<>();
+		int jsonChars = 0;
+		int binaryChars = 0;
+		for (final SectionShard section : sectionShards)
+		{
+			jsonSections.add(gson.toJson(section));
+			binarySections.add(codec.encodeSection(section));
+		}
+		for (final NoteShard note : noteShards)
+		{
+			jsonNotes.add(gson.toJson(note));
+			binaryNotes.add(codec.encodeNote(note));
+		}
+		for (int i = 0; i < jsonSections.size(); i++)
+		{
+			jsonChars += jsonSections.get(i).length();
+			binaryChars += binarySections.get(i).length();
+		}
+		for (int i = 0; i < jsonNotes.size(); i++)
+		{
+			jsonChars += jsonNotes.get(i).length();
+			binaryChars += binaryNotes.get(i).length();
+		}
+		System.out.printf("Shards: gson %d chars, binary %d chars%n", jsonChars, binaryChars);
+
+		for (int round = 0; round < 2; round++)
+		{
+			// First round warms up the JIT
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				sectionShards.forEach(gson::toJson);
+				noteShards.forEach(gson::toJson);
+			}
+			final long gsonEncode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				jsonSections.forEach(json -> gson.fromJson(json, SectionShard.class));
+				jsonNotes.forEach(json -> gson.fromJson(json, NoteShard.class));
+			}
+			final long gsonDecode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				sectionShards.forEach(codec::encodeSection);
+				noteShards.forEach(codec::encodeNote);
+			}
+			final long binaryEncode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				binarySections.forEach(codec::decodeSection);
+				binaryNotes.forEach(codec::decodeNote);
+			}
+			final long binaryDecode = System.nanoTime() - start;
+
+			System.out.printf("Round %d: gson encode %.3f ms, decode %.3f ms; binary encode %.3f ms, decode %.3f ms%n",
+				round, millis(gsonEncode), millis(gsonDecode), millis(binaryEncode), millis(binaryDecode));
+		}
+	}
+
+	private static List<BetterNotesSection> generate()
+	{
+		final List<BetterNotesSection> sections = new ArrayList<>();
+		for (int i = 0; i < SECTIONS; i++)
+		{
+			final BetterNotesSection section = new BetterNotesSection("Section " + i);
+			for (int j = 0; j < NOTES_PER_SECTION; j++)
+			{
+				final BetterNotesNote note = new BetterNotesNote("Note " + j);
+				note.setContent("<b>Boss " + j + "</b><br>Bring antifire, stamina and prayer potions.<br>");
+				section.getNotes().add(note);
+			}
+			sections.add(section);
+		}
+		return sections;
+	}
+
+	private static double millis(final long nanos)
+	{
+		return nanos / 1_000_000.0 / ITERATIONS;
+	}
+}
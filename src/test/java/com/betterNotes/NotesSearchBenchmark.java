@@ -0,0 +1,127 @@
+package com.betterNotes;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.search.NotesSearchIndex;
+import com.betterNotes.search.SearchHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the search index over a generated model of 10k notes and times typical queries and single note updates.
+ */
+public class NotesSearchBenchmark
+{
+	private static final int SECTIONS = 100;
+	private static final int NOTES_PER_SECTION = 100;
+	private static final int ITERATIONS = 1000;
+	private static final int VOCABULARY = 5000;
+
+	private static final String[] WORDS = {
+		"vorkath", "zulrah", "antifire", "stamina", "prayer", "potion", "ranging", "magic", "melee", "blowpipe",
+		"dragonfire", "shield", "teleport", "bank", "rune", "pouch", "slayer", "task", "barrows", "gloves",
+		"quest", "diary", "clue", "scroll", "herb", "run", "farming", "contract", "agility", "course",
+	};
+
+	private static final String[] QUERIES = {
+		"vorkath", "anti", "st", "prayer potion", "\"stamina potion\"", "boss 42", "section 7 zulrah",
+	};
+
+	public static void main(String[] args)
+	{
+		final List<BetterNotesSection> sections = generate();
+		final BetterNotesSection unassigned = new BetterNotesSection("Unassigned notes");
+		unassigned.setUnassignedNotesSection(true);
+
+		final NotesSearchIndex index = new NotesSearchIndex();
+		long start = System.nanoTime();
+		index.reconcile(sections, unassigned, BetterNotesSection::getNotes, null);
+		System.out.printf("Built index over %d notes in %.1f ms%n", index.getNoteCount(), (System.nanoTime() - start) / 1_000_000.0);
+
+		for (int round = 0; round < 2; round++)
+		{
+			// First round warms up the JIT
+			for (final String query : QUERIES)
+			{
+				List<SearchHit> hits = null;
+				start = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++)
+				{
+					hits = index.search(query, 50);
+				}
+				System.out.printf("Round %d: %-22s %3d hits, %.3f ms%n", round, query, hits.size(), millis(System.nanoTime() - start));
+			}
+		}
+
+		final BetterNotesNote note = sections.get(SECTIONS / 2).getNotes().get(0);
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			note.setContent("Edit " + i + " " + note.getContent());
+			index.updateNote(note);
+		}
+		System.out.printf("Note update: %.3f ms%n", millis(System.nanoTime() - start));
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			index.reconcile(sections, unassigned, BetterNotesSection::getNotes, null);
+		}
+		System.out.printf("Reconcile without changes: %.3f ms%n", millis(System.nanoTime() - start));
+	}
+
+	private static List<BetterNotesSection> generate()
+	{
+		final Random random = new Random(1);
+		final String[] vocabulary = vocabulary(random);
+		final List<BetterNotesSection> sections = new ArrayList<>();
+		for (int i = 0; i < SECTIONS; i++)
+		{
+			final BetterNotesSection section = new BetterNotesSection("Section " + i);
+			for (int j = 0; j < NOTES_PER_SECTION; j++)
+			{
+				final BetterNotesNote note = new BetterNotesNote("Boss " + j);
+				final StringBuilder content = new StringBuilder();
+				for (int k = 0; k < 60; k++)
+				{
+					// Roughly Zipf distributed: a few words are in most notes, most words in only a few
+					final int word = (int) Math.pow(vocabulary.length, random.nextDouble()) - 1;
+					content.append(k % 12 == 0 ? "<br>" : " ").append(vocabulary[word]);
+				}
+				note.setContent(content.toString());
+				section.getNotes().add(note);
+			}
+			sections.add(section);
+		}
+		return sections;
+	}
+
+	private static String[] vocabulary(final Random random)
+	{
+		final String[] vocabulary = new String[VOCABULARY];
+		for (int i = 0; i < vocabulary.length; i++)
+		{
+			if (i < WORDS.length)
+			{
+				vocabulary[i] = WORDS[i];
+				continue;
+			}
+
+			final StringBuilder word = new StringBuilder();
+			final int length = 4 + random.nextInt(6);
+			for (int j = 0; j < length; j++)
+			{
+				word.append((char) ('a' + random.nextInt(26)));
+			}
+			vocabulary[i] = word.toString();
+		}
+		return vocabulary;
+	}
+
+	private static double millis(final long nanos)
+	{
+		return nanos / 1_000_000.0 / ITERATIONS;
+	}
+}
@@ -0,0 +1,236 @@
+package com.betterNotes.search;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.betterNotes.storage.NotesSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotesSearchIndexTest
+{
+	private NotesSearchIndex index;
+	private List<BetterNotesSection> sections;
+	private BetterNotesSection unassigned;
+
+	private BetterNotesNote vorkath;
+	private BetterNotesNote zulrah;
+	private BetterNotesNote supplies;
+
+	@Before
+	public void setUp()
+	{
+		index = new NotesSearchIndex();
+		sections = new ArrayList<>();
+		unassigned = new BetterNotesSection("Unassigned notes");
+		unassigned.setUnassignedNotesSection(true);
+
+		final BetterNotesSection bosses = new BetterNotesSection("Bosses");
+		vorkath = note(bosses, "Vorkath", "Bring an <b>antifire potion</b> and a ranged weapon.");
+		zulrah = note(bosses, "Zulrah", "Bring a potion of antifire strength? No, <i>antivenom</i>.");
+		sections.add(bosses);
+
+		supplies = note(unassigned, "Supplies", "Vorkath drops dragon bones. Buy prayer potions.");
+
+		reconcile();
+	}
+
+	@Test
+	public void ranksNameMatchesAboveBodyMatches()
+	{
+		assertEquals(ids(vorkath, supplies), search("vorkath"));
+	}
+
+	@Test
+	public void requiresEveryWord()
+	{
+		assertEquals(ids(supplies), search("dragon prayer"));
+		assertTrue(search("dragon antivenom").isEmpty());
+	}
+
+	@Test
+	public void matchesPrefixesBelowWholeWords()
+	{
+		assertEquals(ids(vorkath, supplies), search("vork"));
+
+		final BetterNotesNote prefixed = note(unassigned, "Wyverns", "Bring an elemental shield.");
+		final BetterNotesNote whole = note(unassigned, "Wyvern", "Bring an elemental shield.");
+		reconcile();
+		assertEquals(ids(whole, prefixed), search("wyvern"));
+	}
+
+	@Test
+	public void matchesSingleLettersOnlyAsWholeWords()
+	{
+		assertTrue(search("v").isEmpty());
+		assertEquals(sorted(ids(vorkath, zulrah)), sorted(search("a")));
+	}
+
+	@Test
+	public void matchesPhrasesOnlyInOrder()
+	{
+		assertEquals(2, search("antifire potion").size());
+		assertEquals(ids(vorkath), search("\"antifire potion\""));
+		assertEquals(ids(zulrah), search("\"potion of antifire\" bring"));
+	}
+
+	@Test
+	public void sectionNamesMatchTheirNotes()
+	{
+		assertEquals(sorted(ids(vorkath, zulrah)), sorted(search("bosses")));
+		assertEquals(ids(vorkath), search("bosses ranged"));
+	}
+
+	@Test
+	public void followsEditsMovesAndDeletes()
+	{
+		vorkath.setName("Vorkath guide");
+		vorkath.setContent("Use the crossbow.");
+		index.updateNote(vorkath);
+		assertEquals(ids(vorkath), search("crossbow"));
+		assertEquals(ids(zulrah), search("antifire"));
+
+		sections.get(0).getNotes().remove(zulrah);
+		unassigned.getNotes().add(zulrah);
+		reconcile();
+		assertEquals(ids(vorkath), search("bosses"));
+
+		unassigned.getNotes().remove(supplies);
+		reconcile();
+		assertTrue(search("dragon").isEmpty());
+		assertEquals(2, index.getNoteCount());
+	}
+
+	@Test
+	public void readsBodiesThatAreNotInMemoryThroughTheLoader()
+	{
+		final BetterNotesNote stored = new BetterNotesNote("Stored");
+		stored.unloadContent();
+		unassigned.getNotes().add(stored);
+		index.reconcile(sections, unassigned, BetterNotesSection::getNotes,
+			note -> note == stored ? "Kept under its own key" : null);
+
+		assertEquals(ids(stored), search("key"));
+
+		// Without a loader the indexed body is kept
+		reconcile();
+		assertEquals(ids(stored), search("key"));
+	}
+
+	@Test
+	public void indexesStoredBodiesLater()
+	{
+		final BetterNotesNote stored = new BetterNotesNote("Stored");
+		stored.unloadContent();
+		unassigned.getNotes().add(stored);
+		reconcile();
+
+		assertTrue(index.needsContent(stored.getId()));
+		assertEquals(ids(stored), search("stored"));
+		assertTrue(search("key").isEmpty());
+
+		index.indexContent(stored, "Kept under its own key");
+		assertFalse(index.needsContent(stored.getId()));
+		assertEquals(ids(stored), search("key"));
+
+		// A later read does not replace what was indexed
+		index.indexContent(stored, "Something else");
+		assertEquals(ids(stored), search("key"));
+	}
+
+	@Test
+	public void reconcilesFromSnapshotCopies()
+	{
+		vorkath.setContent("Use the crossbow.");
+		unassigned.getNotes().remove(supplies);
+		index.reconcile(NotesSnapshot.capture(sections, unassigned, BetterNotesSection::getNotes), null);
+
+		assertEquals(ids(vorkath), search("crossbow"));
+		assertTrue(search("dragon").isEmpty());
+		assertEquals(sorted(ids(vorkath, zulrah)), sorted(search("bosses")));
+	}
+
+	@Test
+	public void freesTermsNoNoteUsesAnyMore()
+	{
+		final int terms = index.getTermCount();
+
+		// Saves while typing index every partial word once
+		for (final String partial : new String[]{"c", "cr", "cro", "cros", "cross", "crossb", "crossbo", "crossbow"})
+		{
+			vorkath.setContent("Bring an antifire potion and a ranged weapon. " + partial);
+			index.updateNote(vorkath);
+		}
+		assertEquals(terms + 1, index.getTermCount());
+		assertEquals(ids(vorkath), search("crossbow"));
+		assertEquals(ids(vorkath), search("cros"));
+
+		// Freed ids are reused without mixing up the terms that kept theirs
+		zulrah.setName("Zulrah guide");
+		index.updateNote(zulrah);
+		assertEquals(terms + 2, index.getTermCount());
+		assertEquals(ids(zulrah), search("guide"));
+		assertEquals(ids(zulrah), search("antivenom"));
+		assertEquals(ids(vorkath), search("\"ranged weapon crossbow\""));
+	}
+
+	@Test
+	public void limitsHits()
+	{
+		assertEquals(ids(vorkath), search("vorkath", 1));
+		assertTrue(search("vorkath", 0).isEmpty());
+		assertTrue(search("", 10).isEmpty());
+	}
+
+	private void reconcile()
+	{
+		index.reconcile(sections, unassigned, BetterNotesSection::getNotes, null);
+	}
+
+	private List<String> search(final String query)
+	{
+		return search(query, 10);
+	}
+
+	private List<String> search(final String query, final int limit)
+	{
+		final List<String> ids = new ArrayList<>();
+		for (final SearchHit hit : index.search(query, limit))
+		{
+			ids.add(hit.getNoteId());
+		}
+		return ids;
+	}
+
+	private static BetterNotesNote note(final BetterNotesSection section, final String name, final String content)
+	{
+		final BetterNotesNote note = new BetterNotesNote(name);
+		note.setContent(content);
+		section.getNotes().add(note);
+		return note;
+	}
+
+	private static List<String> ids(final BetterNotesNote... notes)
+	{
+		final List<String> ids = new ArrayList<>();
+		for (final BetterNotesNote note : notes)
+		{
+			ids.add(note.getId());
+		}
+		return ids;
+	}
+
+	private static List<String> sorted(final List<String> ids)
+	{
+		final List<String> copy = new ArrayList<>(ids);
+		Collections.sort(copy);
+		return copy;
+	}
+}
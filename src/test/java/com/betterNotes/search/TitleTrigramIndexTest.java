@@ -0,0 +1,120 @@
+package com.betterNotes.search;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TitleTrigramIndexTest
+{
+	private TitleTrigramIndex index;
+	private List<BetterNotesSection> sections;
+	private BetterNotesSection unassigned;
+	private BetterNotesSection bosses;
+
+	@Before
+	public void setUp()
+	{
+		index = new TitleTrigramIndex();
+		sections = new ArrayList<>();
+		unassigned = new BetterNotesSection("Unassigned notes");
+		unassigned.setUnassignedNotesSection(true);
+
+		bosses = new BetterNotesSection("Bosses");
+		note(bosses, "Vorkath");
+		note(bosses, "Green dragons");
+		sections.add(bosses);
+		note(unassigned, "Dragon hunter lance");
+		note(unassigned, "Bank tags");
+
+		reconcile();
+	}
+
+	@Test
+	public void findsTitlesDespiteTypos()
+	{
+		assertEquals("Vorkath", names("vorkth").get(0));
+		assertEquals("Vorkath", names("VORKAHT").get(0));
+	}
+
+	@Test
+	public void findsTitlesByInitials()
+	{
+		assertEquals("Dragon hunter lance", names("dhl").get(0));
+		assertEquals("Dragon hunter lance", names("d.h.l").get(0));
+	}
+
+	@Test
+	public void ranksPrefixesAboveSubstrings()
+	{
+		assertEquals(Arrays.asList("Dragon hunter lance", "Green dragons"), names("drag").subList(0, 2));
+	}
+
+	@Test
+	public void listsSectionsAsSections()
+	{
+		final List<TitleMatch> matches = index.search("bosses", 10);
+
+		assertEquals(1, matches.size());
+		assertEquals(bosses.getId(), matches.get(0).getId());
+		assertTrue(matches.get(0).isSection());
+		assertFalse(index.search("vorkath", 10).get(0).isSection());
+	}
+
+	@Test
+	public void skipsUnrelatedTitles()
+	{
+		assertTrue(names("zulrah").isEmpty());
+		assertTrue(names("  ").isEmpty());
+		assertFalse(names("vorkath").contains("Bank tags"));
+	}
+
+	@Test
+	public void followsRenamesAndDeletes()
+	{
+		final BetterNotesNote vorkath = bosses.getNotes().get(0);
+		index.rename(vorkath.getId(), "Zulrah");
+		assertEquals("Zulrah", names("zulrah").get(0));
+		assertTrue(names("vorkath").isEmpty());
+
+		bosses.getNotes().remove(vorkath);
+		reconcile();
+		assertTrue(names("zulrah").isEmpty());
+		assertEquals(4, index.getTitleCount());
+	}
+
+	@Test
+	public void limitsMatches()
+	{
+		assertEquals(1, index.search("dragon", 1).size());
+		assertTrue(index.search("dragon", 0).isEmpty());
+	}
+
+	private void reconcile()
+	{
+		index.reconcile(sections, unassigned, BetterNotesSection::getNotes);
+	}
+
+	private List<String> names(final String query)
+	{
+		final List<String> names = new ArrayList<>();
+		for (final TitleMatch match : index.search(query, 10))
+		{
+			names.add(match.getName());
+		}
+		return names;
+	}
+
+	private static void note(final BetterNotesSection section, final String name)
+	{
+		section.getNotes().add(new BetterNotesNote(name));
+	}
+}
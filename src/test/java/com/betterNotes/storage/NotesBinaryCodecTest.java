@@ -0,0 +1,195 @@
+package com.betterNotes.storage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NotesBinaryCodecTest
+{
+	// Version, type and string count of a record without strings
+	private static final int RECORD_HEADER_BYTES = 3;
+
+	private final NotesBinaryCodec codec = new NotesBinaryCodec();
+
+	@Test
+	public void zigzagRoundTripsInts()
+	{
+		final int[] values = {0, 1, -1, 63, -64, 64, 4151, -4151, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		final BinaryOutput out = new BinaryOutput();
+		for (final int value : values)
+		{
+			out.writeVarInt(value);
+		}
+
+		final BinaryInput in = new BinaryInput(out.finish(1, 1));
+		for (final int value : values)
+		{
+			assertEquals(value, in.readVarInt());
+		}
+	}
+
+	@Test
+	public void zigzagKeepsSmallNegativesToOneByte()
+	{
+		for (final int value : new int[]{0, -1, 1, -64, 63})
+		{
+			final BinaryOutput out = new BinaryOutput();
+			out.writeVarInt(value);
+			assertEquals("bytes for " + value, RECORD_HEADER_BYTES + 1, out.finish(1, 1).length);
+		}
+	}
+
+	@Test
+	public void storesRepeatedStringsOnce()
+	{
+		final String name = "Theatre of Blood";
+		final BinaryOutput once = new BinaryOutput();
+		once.writeString(name);
+		final int onceLength = once.finish(1, 1).length;
+
+		final BinaryOutput out = new BinaryOutput();
+		out.writeString(name);
+		out.writeString(null);
+		out.writeString(name);
+		out.writeString("");
+		final byte[] record = out.finish(1, 1);
+
+		// Each repeat only adds a one byte reference
+		assertEquals(onceLength + 1 + 1 + 1 + 1, record.length);
+
+		final BinaryInput in = new BinaryInput(record);
+		assertEquals(name, in.readString());
+		assertNull(in.readString());
+		assertEquals(name, in.readString());
+		assertEquals("", in.readString());
+	}
+
+	@Test
+	public void reusesBuffersBetweenRecords()
+	{
+		final BinaryOutput out = new BinaryOutput();
+		out.writeString("first");
+		out.finish(1, 1);
+		out.reset();
+		out.writeString("second");
+
+		final BinaryInput in = new BinaryInput(out.finish(1, 1));
+		assertEquals("second", in.readString());
+	}
+
+	@Test
+	public void roundTripsIds()
+	{
+		final String uuid = UUID.randomUUID().toString();
+		final String[] ids = {uuid, uuid.toUpperCase(), "unassigned", null};
+		final BinaryOutput out = new BinaryOutput();
+		for (final String id : ids)
+		{
+			out.writeId(id);
+		}
+
+		final BinaryInput in = new BinaryInput(out.finish(1, 1));
+		for (final String id : ids)
+		{
+			assertEquals(id, in.readId());
+		}
+	}
+
+	@Test
+	public void roundTripsShards()
+	{
+		final NotesIndexShard index = new NotesIndexShard(Arrays.asList(UUID.randomUUID().toString(), "legacy"), 42);
+		final NotesIndexShard decodedIndex = codec.decodeIndex(codec.encodeIndex(index));
+		assertEquals(NotesIndexShard.CURRENT_VERSION, decodedIndex.getVersion());
+		assertEquals(42, decodedIndex.getJournalSequence());
+		assertEquals(index.getSectionIds(), decodedIndex.getSectionIds());
+
+		final SectionShard section = new SectionShard();
+		section.setId(UUID.randomUUID().toString());
+		section.setName("Bosses");
+		section.setMaximized(true);
+		section.setItemId(-1);
+		section.setSpriteId(1234);
+		section.setNoteIds(Collections.singletonList(UUID.randomUUID().toString()));
+		final SectionShard decodedSection = codec.decodeSection(codec.encodeSection(section));
+		assertEquals(section.getId(), decodedSection.getId());
+		assertEquals("Bosses", decodedSection.getName());
+		assertTrue(decodedSection.isMaximized());
+		assertEquals(-1, decodedSection.getItemId());
+		assertEquals(1234, decodedSection.getSpriteId());
+		assertFalse(decodedSection.isUnassignedNotesSection());
+		assertEquals(section.getNoteIds(), decodedSection.getNoteIds());
+
+		final NoteShard note = new NoteShard();
+		note.setId(UUID.randomUUID().toString());
+		note.setName(null);
+		note.setItemId(4151);
+		note.setSpriteId(-1);
+		final NoteShard decodedNote = codec.decodeNote(codec.encodeNote(note));
+		assertEquals(note.getId(), decodedNote.getId());
+		assertNull(decodedNote.getName());
+		assertEquals(4151, decodedNote.getItemId());
+		assertEquals(-1, decodedNote.getSpriteId());
+		assertFalse(decodedNote.isMaximized());
+	}
+
+	@Test
+	public void tellsBinaryFromJson()
+	{
+		assertTrue(NotesBinaryCodec.isBinary(codec.encodeNote(new NoteShard())));
+		assertFalse(NotesBinaryCodec.isBinary("{\"id\":\"a\"}"));
+		assertFalse(NotesBinaryCodec.isBinary(null));
+	}
+
+	@Test
+	public void rejectsOtherFormatVersions()
+	{
+		final BinaryOutput out = new BinaryOutput();
+		out.writeId("note");
+		final String newer = NotesBinaryCodec.PREFIX
+			+ Base64.getEncoder().encodeToString(out.finish(NotesBinaryCodec.FORMAT_VERSION + 1, 3));
+
+		assertRejected(newer);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherRecordTypes()
+	{
+		final NoteShard note = new NoteShard();
+		note.setId("note");
+
+		codec.decodeSection(codec.encodeNote(note));
+	}
+
+	@Test
+	public void rejectsTruncatedRecords()
+	{
+		final NoteShard note = new NoteShard();
+		note.setId(UUID.randomUUID().toString());
+		final String encoded = codec.encodeNote(note);
+
+		assertRejected(encoded.substring(0, encoded.length() - 8));
+		assertRejected("{\"id\":\"json\"}");
+	}
+
+	private void assertRejected(final String value)
+	{
+		try
+		{
+			codec.decodeNote(value);
+			fail("Decoded " + value);
+		}
+		catch (IllegalArgumentException expected)
+		{
+		}
+	}
+}
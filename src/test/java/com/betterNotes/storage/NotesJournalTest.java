@@ -0,0 +1,302 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesNote;
+import com.betterNotes.entities.BetterNotesSection;
+import com.google.gson.Gson;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NotesJournalTest
+{
+	private final Gson gson = new Gson();
+
+	// The model being edited, and what replaying the journal onto the last loaded state gives
+	private List<BetterNotesSection> live;
+	private BetterNotesSection liveUnassigned;
+	private List<BetterNotesSection> replayed;
+	private BetterNotesSection replayedUnassigned;
+
+	// The writer's base state
+	private NotesSnapshot base;
+	private final Map<String, BetterNotesNote> baseNotes = new HashMap<>();
+
+	@Before
+	public void setUp()
+	{
+		live = new ArrayList<>();
+		liveUnassigned = unassigned();
+		replayed = new ArrayList<>();
+		replayedUnassigned = unassigned();
+		base = NotesSnapshot.capture(live, liveUnassigned, BetterNotesSection::getNotes);
+		baseNotes.clear();
+	}
+
+	@Test
+	public void replaysAddedSectionsAndNotes()
+	{
+		final BetterNotesSection section = new BetterNotesSection("Bosses");
+		section.setItemId(4151);
+		final BetterNotesNote note = new BetterNotesNote("Vorkath");
+		note.setContent("<b>Bring</b> antifire");
+		section.getNotes().add(note);
+		live.add(section);
+		liveUnassigned.getNotes().add(new BetterNotesNote("Loose"));
+
+		assertEquals(3, journal().size());
+		assertReplayMatches();
+	}
+
+	@Test
+	public void replaysFieldChangesMovesAndDeletes()
+	{
+		final BetterNotesSection first = new BetterNotesSection("First");
+		final BetterNotesSection second = new BetterNotesSection("Second");
+		final BetterNotesNote kept = new BetterNotesNote("Kept");
+		final BetterNotesNote removed = new BetterNotesNote("Removed");
+		first.getNotes().add(kept);
+		first.getNotes().add(removed);
+		live.add(first);
+		live.add(second);
+		journal();
+
+		first.setName("Renamed");
+		first.setMaximized(false);
+		kept.setSpriteId(12);
+		kept.setMaximized(true);
+		first.getNotes().remove(kept);
+		second.getNotes().add(kept);
+		first.getNotes().remove(removed);
+		Collections.swap(live, 0, 1);
+		journal();
+		assertReplayMatches();
+
+		live.remove(first);
+		journal();
+		assertReplayMatches();
+	}
+
+	@Test
+	public void editsBodiesWithSmallPatches()
+	{
+		final BetterNotesNote note = new BetterNotesNote("Note");
+		note.setContent("Bring antifire and stamina potions");
+		liveUnassigned.getNotes().add(note);
+		journal();
+
+		note.setContent("Bring antifire, prayer and stamina potions");
+		final List<JournalEntry> entries = journal();
+
+		assertEquals(1, entries.size());
+		final JournalEntry patch = entries.get(0);
+		assertEquals(JournalEntry.Op.PATCH_NOTE_CONTENT, patch.getOp());
+		assertEquals(", prayer", patch.getText());
+		assertEquals(0, (int) patch.getLength());
+		assertReplayMatches();
+	}
+
+	@Test
+	public void skipsPatchesThatNoLongerMatchTheBody()
+	{
+		final BetterNotesNote note = new BetterNotesNote("Note");
+		note.setContent("original");
+		liveUnassigned.getNotes().add(note);
+		journal();
+
+		note.setContent("original, edited");
+		final List<JournalEntry> entries = journal();
+		replayedUnassigned.getNotes().get(0).setContent("changed outside the journal");
+
+		assertEquals(0, NotesJournal.replay(entries, replayed, replayedUnassigned, n -> { }));
+		assertEquals("changed outside the journal", replayedUnassigned.getNotes().get(0).getContent());
+	}
+
+	@Test
+	public void keepsTheBodyOfAnAddedNote()
+	{
+		final BetterNotesNote note = new BetterNotesNote("Note");
+		note.setContent("body");
+		liveUnassigned.getNotes().add(note);
+
+		final JournalEntry added = journal().get(0);
+		assertEquals(JournalEntry.Op.ADD_NOTE, added.getOp());
+		assertEquals("body", added.getText());
+		assertEquals("body", replayedUnassigned.getNotes().get(0).getContent());
+	}
+
+	@Test
+	public void addedNoteWithoutBodyInMemoryLeavesItToItsKey()
+	{
+		final BetterNotesNote note = new BetterNotesNote("Note");
+		note.unloadContent();
+
+		assertNull(JournalEntry.addNote(NotesSnapshot.UNASSIGNED_SECTION_ID, note).getText());
+	}
+
+	@Test
+	public void skipsUnparsableLines()
+	{
+		final BetterNotesNote note = new BetterNotesNote("Note");
+		liveUnassigned.getNotes().add(note);
+		final List<JournalEntry> entries = NotesJournal.diff(base.getSections(), base.getUnassignedSection(), baseNotes,
+			NotesSnapshot.capture(live, liveUnassigned, BetterNotesSection::getNotes), id -> null);
+
+		final String journal = "{not json\n" + NotesJournal.encode(gson, entries) + "\n{\"op\":\"NO_SUCH_OP\"}\n";
+		assertEquals(entries.size(), NotesJournal.decode(gson, journal).size());
+	}
+
+	@Test
+	public void randomEditsRoundTrip()
+	{
+		final Random random = new Random(1);
+		for (int step = 0; step < 500; step++)
+		{
+			for (int i = random.nextInt(4); i >= 0; i--)
+			{
+				mutate(random);
+			}
+			journal();
+			assertReplayMatches();
+		}
+	}
+
+	/**
+	 * Diffs the live model against the base, round-trips the entries through the stored format and replays them.
+	 */
+	private List<JournalEntry> journal()
+	{
+		final NotesSnapshot next = NotesSnapshot.capture(live, liveUnassigned, BetterNotesSection::getNotes);
+		final List<JournalEntry> entries = NotesJournal.diff(base.getSections(), base.getUnassignedSection(), baseNotes,
+			next, id -> null);
+		final List<JournalEntry> decoded = NotesJournal.decode(gson, NotesJournal.encode(gson, entries));
+		assertEquals(entries.size(), decoded.size());
+		assertEquals(decoded.size(), NotesJournal.replay(decoded, replayed, replayedUnassigned, n -> { }));
+
+		base = next;
+		baseNotes.clear();
+		for (final BetterNotesNote note : next.getNotes())
+		{
+			baseNotes.put(note.getId(), note);
+		}
+		return decoded;
+	}
+
+	private void assertReplayMatches()
+	{
+		assertEquals(describe(live, liveUnassigned), describe(replayed, replayedUnassigned));
+	}
+
+	private void mutate(final Random random)
+	{
+		final List<BetterNotesSection> all = new ArrayList<>(live);
+		all.add(liveUnassigned);
+		final BetterNotesSection section = all.get(random.nextInt(all.size()));
+		final List<BetterNotesNote> notes = section.getNotes();
+		switch (random.nextInt(9))
+		{
+			case 0:
+				live.add(random.nextInt(live.size() + 1), new BetterNotesSection("Section " + random.nextInt(100)));
+				break;
+			case 1:
+				if (!section.isUnassignedNotesSection())
+				{
+					live.remove(section);
+					liveUnassigned.getNotes().addAll(notes);
+				}
+				break;
+			case 2:
+				section.setName("Renamed " + random.nextInt(100));
+				section.setMaximized(!section.isMaximized());
+				section.setItemId(random.nextInt(5));
+				break;
+			case 3:
+				final BetterNotesNote added = new BetterNotesNote("Note " + random.nextInt(100));
+				added.setContent("hello world " + random.nextInt(10));
+				notes.add(random.nextInt(notes.size() + 1), added);
+				break;
+			case 4:
+				if (!notes.isEmpty())
+				{
+					notes.remove(random.nextInt(notes.size()));
+				}
+				break;
+			case 5:
+				if (!notes.isEmpty())
+				{
+					final List<BetterNotesNote> target = all.get(random.nextInt(all.size())).getNotes();
+					final BetterNotesNote moved = notes.remove(random.nextInt(notes.size()));
+					target.add(random.nextInt(target.size() + 1), moved);
+				}
+				break;
+			case 6:
+				if (!notes.isEmpty())
+				{
+					final BetterNotesNote edited = notes.get(random.nextInt(notes.size()));
+					final String content = edited.getContent();
+					final int at = random.nextInt(content.length() + 1);
+					edited.setContent(content.substring(0, at) + "xy"
+						+ content.substring(Math.min(content.length(), at + random.nextInt(3))));
+					edited.setMaximized(random.nextBoolean());
+					edited.setSpriteId(random.nextInt(3));
+				}
+				break;
+			case 7:
+				if (live.size() > 1)
+				{
+					final BetterNotesSection moved = live.remove(random.nextInt(live.size()));
+					live.add(random.nextInt(live.size() + 1), moved);
+				}
+				break;
+			default:
+				if (!notes.isEmpty())
+				{
+					notes.get(random.nextInt(notes.size())).setName("Renamed " + random.nextInt(100));
+				}
+				break;
+		}
+	}
+
+	private static BetterNotesSection unassigned()
+	{
+		final BetterNotesSection section = new BetterNotesSection("Unassigned notes");
+		section.setUnassignedNotesSection(true);
+		return section;
+	}
+
+	// The unassigned section gets a new id every session, so it is described by its position only
+	private static String describe(final List<BetterNotesSection> sections, final BetterNotesSection unassigned)
+	{
+		final StringBuilder builder = new StringBuilder();
+		final List<BetterNotesSection> all = new ArrayList<>(sections);
+		all.add(unassigned);
+		for (final BetterNotesSection section : all)
+		{
+			builder.append(section == unassigned ? "unassigned" : section.getId())
+				.append(' ').append(section.getName())
+				.append(' ').append(section.isMaximized())
+				.append(' ').append(section.getItemId())
+				.append(' ').append(section.getSpriteId())
+				.append('\n');
+			for (final BetterNotesNote note : section.getNotes())
+			{
+				builder.append("  ").append(note.getId())
+					.append(' ').append(note.getName())
+					.append(' ').append(note.isMaximized())
+					.append(' ').append(note.getItemId())
+					.append(' ').append(note.getSpriteId())
+					.append(' ').append(note.getContent())
+					.append('\n');
+			}
+		}
+		return builder.toString();
+	}
+}
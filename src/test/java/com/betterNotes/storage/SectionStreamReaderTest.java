@@ -0,0 +1,90 @@
+package com.betterNotes.storage;
+
+import com.betterNotes.entities.BetterNotesSection;
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SectionStreamReaderTest
+{
+	private static final String NOTE_A = "{\"id\":\"a\",\"name\":\"A\",\"content\":\"first\"}";
+	private static final String NOTE_B = "{\"id\":\"b\",\"name\":\"B\",\"content\":\"second\"}";
+
+	private final Gson gson = new Gson();
+
+	@Test
+	public void readsCleanSections()
+	{
+		final SectionStreamReader.Result result = SectionStreamReader.readSections(gson,
+			"[" + section("one", NOTE_A + "," + NOTE_B) + "," + section("two", "") + "]");
+
+		assertTrue(result.isClean());
+		assertEquals(2, result.getSections().size());
+		assertEquals(2, result.getRecoveredNotes());
+		final BetterNotesSection one = result.getSections().get(0);
+		assertEquals("one", one.getId());
+		assertEquals("second", one.getNotes().get(1).getContent());
+		assertTrue(result.getSections().get(1).getNotes().isEmpty());
+	}
+
+	@Test
+	public void quarantinesBadNotesAndKeepsTheRest()
+	{
+		final String badField = "{\"id\":\"c\",\"itemId\":\"not a number\"}";
+		final String noId = "{\"name\":\"No id\"}";
+		final SectionStreamReader.Result result = SectionStreamReader.readSections(gson,
+			"[" + section("one", NOTE_A + "," + badField + "," + noId + ",42," + NOTE_B) + "]");
+
+		assertFalse(result.isClean());
+		assertFalse(result.isTruncated());
+		assertEquals(2, result.getRecoveredNotes());
+		assertEquals(2, result.getSections().get(0).getNotes().size());
+		assertEquals(3, result.getQuarantined().size());
+		assertTrue(result.getQuarantined().get(0).contains("not a number"));
+	}
+
+	@Test
+	public void quarantinesBadSectionsWithTheirNotes()
+	{
+		final String badSection = "{\"id\":\"bad\",\"itemId\":\"not a number\",\"notes\":[" + NOTE_A + "]}";
+		final SectionStreamReader.Result result = SectionStreamReader.readSections(gson,
+			"[" + badSection + ",\"stray\"," + section("two", NOTE_B) + "]");
+
+		assertEquals(1, result.getSections().size());
+		assertEquals("two", result.getSections().get(0).getId());
+		assertEquals(2, result.getQuarantined().size());
+		// The raw record still has its notes, so nothing is lost
+		assertTrue(result.getQuarantined().get(0).contains("\"first\""));
+	}
+
+	@Test
+	public void keepsRecordsBeforeTruncation()
+	{
+		final String json = "[" + section("one", NOTE_A) + "," + section("two", NOTE_B);
+		final SectionStreamReader.Result result = SectionStreamReader.readSections(gson,
+			json.substring(0, json.length() - 10));
+
+		assertTrue(result.isTruncated());
+		assertFalse(result.isClean());
+		assertEquals(1, result.getSections().size());
+		assertEquals("one", result.getSections().get(0).getId());
+	}
+
+	@Test
+	public void readsASingleSection()
+	{
+		final SectionStreamReader.Result result = SectionStreamReader.readSection(gson, section("unassigned", NOTE_A));
+
+		assertTrue(result.isClean());
+		assertEquals(1, result.getSections().size());
+		assertEquals("a", result.getSections().get(0).getNotes().get(0).getId());
+	}
+
+	private static String section(final String id, final String notes)
+	{
+		return "{\"id\":\"" + id + "\",\"name\":\"Section " + id + "\",\"isMaximized\":true,\"notes\":[" + notes + "]}";
+	}
+}
@@ -0,0 +1,101 @@
+package com.betterNotes.utility;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContentCompressionTest
+{
+	@Test
+	public void storesSmallBodiesPlain()
+	{
+		final String body = "<b>Vorkath</b><br>Bring antifire";
+
+		assertSame(body, ContentCompression.encode(body));
+		assertSame(body, ContentCompression.decode(body));
+		assertNull(ContentCompression.encode((String) null));
+		assertNull(ContentCompression.decode(null));
+	}
+
+	@Test
+	public void compressesLargeBodies()
+	{
+		final String body = repeat("Bring antifire, stamina and prayer potions.<br>", 100);
+		final String stored = ContentCompression.encode(body);
+
+		assertTrue(stored.startsWith(ContentCompression.STORED_PREFIX));
+		assertTrue(stored.length() < body.length() / 4);
+		assertEquals(body, ContentCompression.decode(stored));
+	}
+
+	@Test
+	public void storesIncompressibleBodiesPlain()
+	{
+		final Random random = new Random(1);
+		final StringBuilder builder = new StringBuilder();
+		while (builder.length() < ContentCompression.THRESHOLD_CHARS * 2)
+		{
+			builder.append((char) (0x4E00 + random.nextInt(0x5000)));
+		}
+		final String body = builder.toString();
+
+		assertSame(body, ContentCompression.encode(body));
+		assertEquals(body, ContentCompression.decode(body));
+	}
+
+	@Test
+	public void readsPlainBodiesThatStartWithThePrefix()
+	{
+		final String body = ContentCompression.STORED_PREFIX + " is how compressed bodies start";
+
+		assertEquals(body, ContentCompression.decode(body));
+		assertEquals(body, ContentCompression.decode(ContentCompression.encode(body)));
+	}
+
+	@Test
+	public void roundTripsPlainBodiesThatLookCompressed()
+	{
+		// A small body pasted in its stored form would otherwise be read back inflated
+		final String body = ContentCompression.encode(repeat("nested ", 200));
+		assertTrue(body.length() < ContentCompression.THRESHOLD_CHARS);
+
+		final String encoded = ContentCompression.encode(body);
+		assertTrue(encoded.startsWith(ContentCompression.STORED_PREFIX));
+		assertEquals(body, ContentCompression.decode(encoded));
+	}
+
+	@Test
+	public void encodesCompressedBodiesWithoutRecompressing()
+	{
+		final String body = repeat("Theatre of Blood ", 100);
+		final byte[] compressed = ContentCompression.deflate(body);
+
+		assertEquals(ContentCompression.encode(body), ContentCompression.encode(compressed));
+		assertEquals(body, ContentCompression.inflate(compressed));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTruncatedCompressedContent()
+	{
+		final byte[] compressed = ContentCompression.deflate(repeat("Theatre of Blood ", 100));
+		final byte[] truncated = new byte[compressed.length / 2];
+		System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+		ContentCompression.inflate(truncated);
+	}
+
+	private static String repeat(final String text, final int times)
+	{
+		final StringBuilder builder = new StringBuilder(text.length() * times);
+		for (int i = 0; i < times; i++)
+		{
+			builder.append(text);
+		}
+		return builder.toString();
+	}
+}